@@ -1,30 +1,37 @@
 package com.example.server;
 
 import com.example.state.IOUState;
+import com.gmedchain.server.VaultConsumer;
+import com.gmedchain.state.OrderState;
 import net.corda.client.rpc.CordaRPCClient;
 import net.corda.client.rpc.CordaRPCConnection;
+import net.corda.core.contracts.ContractState;
 import net.corda.core.contracts.StateAndRef;
 import net.corda.core.messaging.CordaRPCOps;
-import net.corda.core.messaging.DataFeed;
 import net.corda.core.node.NodeInfo;
-import net.corda.core.node.services.Vault;
 import net.corda.core.utilities.NetworkHostAndPort;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import rx.Observable;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 
 /**
  * Demonstration of using the CordaRPCClient to connect to a Corda Node.
  */
 public class JavaClientRpc {
+    private static final int WORKERS = 4;
+    private static final int PAGE_SIZE = 500;
 
     private static final Logger logger = LoggerFactory.getLogger(JavaClientRpc.class);
 
     public static void main(String[] args) {
         //Get the node address to connect to, rpc username , rpc password via command line
-        if (args.length != 3) throw new IllegalArgumentException("Usage: Client <node address> <rpc username> <rpc password>");
+        if (args.length < 3 || args.length > 4) throw new IllegalArgumentException("Usage: Client <node address> <rpc username> <rpc password> [cursor directory]");
 
         NetworkHostAndPort networkHostAndPort = NetworkHostAndPort.parse(args[0]);
         String rpcUsername = args[1];
@@ -45,27 +52,29 @@ public class JavaClientRpc {
         List<NodeInfo> nodes = proxy.networkMapSnapshot();
         logger.info("All the nodes available in this network", nodes);
 
-        //hit the node to get snapshot and observable for IOUState
-        DataFeed<Vault.Page<IOUState>, Vault.Update<IOUState>> dataFeed = proxy.vaultTrack(IOUState.class);
-
-        //this gives a snapshot of IOUState as of now. so if there are 11 IOUState as of now, this will return 11 IOUState objects
-        Vault.Page<IOUState> snapshot = dataFeed.getSnapshot();
-
-        //this returns an observable on IOUState
-        Observable<Vault.Update<IOUState>> updates = dataFeed.getUpdates();
-
-        // call a method for each IOUState
-        snapshot.getStates().forEach(JavaClientRpc::actionToPerform);
-
-        //perform certain action for each update to IOUState
-        updates.toBlocking().subscribe(update -> update.getProduced().forEach(JavaClientRpc::actionToPerform));
+        // Consume every IOUState and OrderState the vault records, resuming from the cursors of the previous run, so a
+        // restart only catches up on what was recorded meanwhile.
+        Path cursorDir = Paths.get(args.length > 3 ? args[3] : "build/vault-cursors");
+        try {
+            Files.createDirectories(cursorDir);
+            VaultConsumer<IOUState> ious = new VaultConsumer<>(IOUState.class, cursorDir.resolve("iou.cursor"),
+                    WORKERS, PAGE_SIZE, JavaClientRpc::actionToPerform);
+            VaultConsumer<OrderState> orders = new VaultConsumer<>(OrderState.class, cursorDir.resolve("order.cursor"),
+                    WORKERS, PAGE_SIZE, JavaClientRpc::actionToPerform);
+            ious.start(proxy);
+            orders.start(proxy);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the vault cursors in " + cursorDir, e);
+        }
     }
 
     /**
-     * Perform certain action because of any update to Observable IOUState
-     * @param state
+     * Perform certain action because of any update to the consumed states
+     * @param states the states of one linearId lane, in recorded order
      */
-    private static void actionToPerform(StateAndRef<IOUState> state) {
-        logger.info("{}", state.getState().getData());
+    private static <T extends ContractState> void actionToPerform(List<StateAndRef<T>> states) {
+        for (StateAndRef<T> state : states) {
+            logger.info("{}", state.getState().getData());
+        }
     }
 }
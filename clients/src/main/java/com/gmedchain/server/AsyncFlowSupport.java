@@ -0,0 +1,306 @@
+package com.gmedchain.server;
+
+import net.corda.client.rpc.RPCException;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.flows.StateMachineRunId;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.DataFeed;
+import net.corda.core.messaging.FlowHandle;
+import net.corda.core.messaging.StateMachineInfo;
+import net.corda.core.messaging.StateMachineUpdate;
+import net.corda.core.utilities.Try;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import rx.Subscription;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bridges flow return values to Spring MVC async request processing, so a request waiting on a flow does not hold a
+ * servlet worker thread.
+ *
+ * A request that waits longer than the flow timeout is answered with the timeout result. The flow itself keeps
+ * running unless kill-on-timeout is enabled; killing a flow that may already be in finality is rarely what is wanted.
+ *
+ * Flows whose result is lost with the node connection are re-attached once the node is back: a flow that is still
+ * running is followed through `stateMachinesFeed` to its real outcome, and one that finished in the meantime is
+ * resolved from the vault, by a lookup on the order it worked on (see [OrderOutcomes]).
+ */
+@Component
+public class AsyncFlowSupport {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncFlowSupport.class);
+
+    private final NodeRPCConnection rpc;
+    private final long timeoutMillis;
+    private final boolean killOnTimeout;
+    private final Map<StateMachineRunId, Pending<?, ?>> inFlight = new ConcurrentHashMap<>();
+    private final Set<NodeRPCConnection> watched = ConcurrentHashMap.newKeySet();
+
+    public AsyncFlowSupport(
+            NodeRPCConnection rpc,
+            @Value("${" + CONSTANTS.FLOW_TIMEOUT_MS + ":60000}") long timeoutMillis,
+            @Value("${" + CONSTANTS.FLOW_KILL_ON_TIMEOUT + ":false}") boolean killOnTimeout) {
+        this.rpc = rpc;
+        this.timeoutMillis = timeoutMillis;
+        this.killOnTimeout = killOnTimeout;
+    }
+
+    @PostConstruct
+    public void start() {
+        watch(rpc);
+    }
+
+    /**
+     * Re-attaches the in-flight flows of `node` whenever it reconnects.
+     */
+    private void watch(NodeRPCConnection node) {
+        if (!watched.add(node)) {
+            return;
+        }
+        node.onConnected(proxy -> {
+            List<StateMachineRunId> ids = inFlight.entrySet().stream()
+                    .filter(entry -> entry.getValue().node == node)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            if (!ids.isEmpty()) {
+                CompletableFuture.runAsync(() -> reattach(proxy, ids));
+            }
+        });
+    }
+
+    /**
+     * Adapts a [CordaFuture] without blocking; the returned future completes on the RPC client's callback thread.
+     */
+    public static <V> CompletableFuture<V> toCompletableFuture(CordaFuture<V> future) {
+        CompletableFuture<V> result = new CompletableFuture<>();
+        future.then(done -> {
+            try {
+                result.complete(done.get());
+            } catch (ExecutionException e) {
+                result.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+            return null;
+        });
+        return result;
+    }
+
+    /**
+     * Cancels `sources` once `dependent` is cancelled, e.g. by a request timeout, and returns `dependent`. A future
+     * derived with thenApply, handle or allOf does not pass its cancellation back to the futures it was derived from.
+     */
+    public static <T> CompletableFuture<T> cancelling(CompletableFuture<T> dependent, CompletableFuture<?>... sources) {
+        dependent.whenComplete((value, error) -> {
+            if (dependent.isCancelled()) {
+                for (CompletableFuture<?> source : sources) {
+                    source.cancel(false);
+                }
+            }
+        });
+        return dependent;
+    }
+
+    /**
+     * Returns the flow's result, mapped by `fromResult`, as a future. Cancelling the future kills the flow if
+     * kill-on-timeout is enabled; either way [FlowResult.ended] tells when the flow has really ended.
+     *
+     * @param fromVault reads the same value back from the vault, for a flow that finished while the node was
+     * unreachable; null if the flow left no outcome there.
+     */
+    public <T, V> FlowResult<V> result(FlowHandle<T> handle, Function<T, V> fromResult,
+                                       Function<CordaRPCOps, V> fromVault) {
+        return result(rpc, handle, fromResult, fromVault);
+    }
+
+    /**
+     * Like [result], for a flow started through `node` rather than the server's own connection, e.g. on a gateway
+     * node; the flow is killed and re-attached through that connection.
+     */
+    public <T, V> FlowResult<V> result(NodeRPCConnection node, FlowHandle<T> handle, Function<T, V> fromResult,
+                                       Function<CordaRPCOps, V> fromVault) {
+        watch(node);
+        StateMachineRunId id = handle.getId();
+        FlowResult<V> result = new FlowResult<>();
+        inFlight.put(id, new Pending<>(node, result, fromResult, fromVault));
+        // A cancelled result stays in flight, so that its end is still learnt after a reconnection.
+        result.ended.whenComplete((value, error) -> inFlight.remove(id));
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled() && killOnTimeout) {
+                logger.warn("Killing flow {} after the request timed out", id);
+                node.getProxy().killFlow(id);
+            }
+        });
+        toCompletableFuture(handle.getReturnValue()).whenComplete((value, error) -> {
+            if (error == null) {
+                try {
+                    result.complete(fromResult.apply(value));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+                result.ended.complete(null);
+            } else if (error instanceof RPCException) {
+                // The connection dropped; the flow itself may well have finished. Reconnection re-attaches it.
+                logger.info("Lost the result of flow {} with the node connection; re-attaching", id);
+                if (node.isConnected()) {
+                    reattach(node.getProxy(), Collections.singletonList(id));
+                }
+            } else {
+                result.completeExceptionally(error);
+                result.ended.complete(null);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Completes the given in-flight flows from their real outcome on the node.
+     */
+    private void reattach(CordaRPCOps proxy, Collection<StateMachineRunId> ids) {
+        Map<StateMachineRunId, Pending<?, ?>> waiting = new ConcurrentHashMap<>();
+        for (StateMachineRunId id : ids) {
+            Pending<?, ?> pending = inFlight.get(id);
+            if (pending != null) {
+                waiting.put(id, pending);
+            }
+        }
+        if (waiting.isEmpty()) {
+            return;
+        }
+        List<CompletableFuture<?>> ends = waiting.values().stream().map(it -> it.result.ended).collect(Collectors.toList());
+        try {
+            DataFeed<List<StateMachineInfo>, StateMachineUpdate> feed = proxy.stateMachinesFeed();
+            Subscription subscription = feed.getUpdates().subscribe(update -> {
+                if (update instanceof StateMachineUpdate.Removed) {
+                    Pending<?, ?> pending = waiting.remove(update.getId());
+                    if (pending != null) {
+                        pending.complete(((StateMachineUpdate.Removed) update).getResult());
+                    }
+                }
+            }, error -> logger.warn("Lost the state machine feed while re-attaching flows", error));
+            CompletableFuture.allOf(ends.toArray(new CompletableFuture[0])).whenComplete((done, error) -> subscription.unsubscribe());
+
+            Set<StateMachineRunId> running = feed.getSnapshot().stream().map(StateMachineInfo::getId).collect(Collectors.toSet());
+            for (StateMachineRunId id : new ArrayList<>(waiting.keySet())) {
+                if (running.contains(id)) {
+                    continue;
+                }
+                Pending<?, ?> pending = waiting.remove(id);
+                if (pending != null) {
+                    pending.completeFromVault(id, proxy);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Could not re-attach {} flow(s); retrying on the next reconnection", waiting.size(), e);
+        }
+    }
+
+    /**
+     * Completes an async response from the future. Errors are mapped by `onError`, with [CompletionException]s
+     * unwrapped; a timeout or a dropped connection cancels the future.
+     */
+    public <T, R> DeferredResult<R> defer(CompletableFuture<T> future, Function<T, R> onSuccess,
+                                          Function<Throwable, R> onError, R onTimeout) {
+        DeferredResult<R> response = new DeferredResult<>(timeoutMillis, onTimeout);
+        response.onTimeout(() -> future.cancel(false));
+        response.onError(error -> future.cancel(false));
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                response.setResult(onSuccess.apply(value));
+            } else if (!future.isCancelled()) {
+                response.setResult(onError.apply(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error));
+            }
+        });
+        return response;
+    }
+
+    /**
+     * The result of a flow, which a request may cancel, e.g. on timeout, and [ended], which completes only once the
+     * flow has really ended on the node, whatever became of the request.
+     */
+    public static class FlowResult<V> extends CompletableFuture<V> {
+        private final CompletableFuture<Void> ended = new CompletableFuture<>();
+
+        public CompletableFuture<Void> ended() {
+            return ended;
+        }
+    }
+
+    private static class Pending<T, V> {
+        final NodeRPCConnection node;
+        final FlowResult<V> result;
+        final Function<T, V> fromResult;
+        final Function<CordaRPCOps, V> fromVault;
+
+        Pending(NodeRPCConnection node, FlowResult<V> result, Function<T, V> fromResult, Function<CordaRPCOps, V> fromVault) {
+            this.node = node;
+            this.result = result;
+            this.fromResult = fromResult;
+            this.fromVault = fromVault;
+        }
+
+        @SuppressWarnings("unchecked")
+        void complete(Try<?> outcome) {
+            try {
+                result.complete(fromResult.apply((T) outcome.getOrThrow()));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+            result.ended.complete(null);
+        }
+
+        /**
+         * Completes the flow `id` from the vault. A failing lookup is thrown, and the flow stays in flight for the
+         * next reconnection.
+         */
+        void completeFromVault(StateMachineRunId id, CordaRPCOps proxy) {
+            V value = fromVault.apply(proxy);
+            if (value != null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(new IllegalStateException("Flow " + id.getUuid()
+                        + " ended while the node was unreachable, and its outcome is not in the vault."));
+            }
+            result.ended.complete(null);
+        }
+    }
+
+    /**
+     * Completes an already known result, e.g. a validation failure, through the same async path.
+     */
+    public static <R> DeferredResult<R> immediate(R result) {
+        DeferredResult<R> response = new DeferredResult<>();
+        response.setResult(result);
+        return response;
+    }
+
+    /**
+     * Sets the async timeout of the current request alone, e.g. for a streamed export that may outlast any flow; 0 or
+     * less means none. Call it from the handler before returning the [StreamingResponseBody].
+     */
+    public static void setAsyncTimeout(HttpServletRequest request, HttpServletResponse response, long timeoutMillis) {
+        AsyncWebRequest asyncRequest = WebAsyncUtils.createAsyncWebRequest(request, response);
+        asyncRequest.setTimeout(timeoutMillis);
+        WebAsyncUtils.getAsyncManager(request).setAsyncWebRequest(asyncRequest);
+    }
+}
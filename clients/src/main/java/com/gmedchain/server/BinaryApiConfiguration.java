@@ -0,0 +1,21 @@
+package com.gmedchain.server;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import net.corda.client.jackson.JacksonSupport;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+
+/**
+ * Registers CBOR as an alternative to JSON on both request and response paths. The same Corda Jackson module is used,
+ * so a CBOR body has exactly the structure of its JSON counterpart.
+ */
+@Configuration
+public class BinaryApiConfiguration {
+    public static final String APPLICATION_CBOR_VALUE = "application/cbor";
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter() {
+        return new MappingJackson2CborHttpMessageConverter(JacksonSupport.createNonRpcMapper(new CBORFactory()));
+    }
+}
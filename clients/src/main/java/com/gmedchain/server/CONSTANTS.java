@@ -5,4 +5,34 @@ public interface CONSTANTS {
     String CORDA_USER_PASSWORD = "config.rpc.password";
     String CORDA_NODE_HOST = "config.rpc.host";
     String CORDA_RPC_PORT = "config.rpc.port";
+    String CORDA_RPC_RETRY_MS = "config.rpc.retry-ms";
+    String CORDA_RPC_MAX_RETRY_MS = "config.rpc.max-retry-ms";
+    String CORDA_RPC_RECONNECT = "config.rpc.reconnect";
+    String FLOW_TIMEOUT_MS = "config.flow.timeout-ms";
+    String FLOW_KILL_ON_TIMEOUT = "config.flow.kill-on-timeout";
+    String GATEWAY_NODES = "config.gateway.nodes";
+    String GATEWAY_TIMEOUT_MS = "config.gateway.timeout-ms";
+    String SHIPPER_CANDIDATES = "config.shipper.candidates";
+    String SHIPPER_REFRESH_MS = "config.shipper.refresh-ms";
+    String SHIPPER_LATENCY_SCALE_MS = "config.shipper.latency-scale-ms";
+    String ORDER_CONFLICT_RETRIES = "config.order.conflict-retries";
+    String ORDER_IDEMPOTENCY_CACHE_SIZE = "config.order.idempotency.cache-size";
+    String ORDER_BATCH_MAX_SIZE = "config.order.batch.max-size";
+    String ORDER_ARCHIVE_PATH = "config.order.archive.path";
+    String ORDER_ARCHIVE_RETENTION_DAYS = "config.order.archive.retention-days";
+    String ORDER_ARCHIVE_INTERVAL_MS = "config.order.archive.interval-ms";
+    String ORDER_HISTORY_CACHE_SIZE = "config.order.history.cache-size";
+    String ORDER_EXPORT_TIMEOUT_MS = "config.order.export.timeout-ms";
+    String ORDER_IMPORT_DIR = "config.order.import.dir";
+    String ORDER_IMPORT_CONCURRENCY = "config.order.import.concurrency";
+    String REPORTING_JDBC_URL = "config.reporting.jdbc-url";
+    String REPORTING_JDBC_USER = "config.reporting.jdbc-user";
+    String REPORTING_JDBC_PASSWORD = "config.reporting.jdbc-password";
+    String REPORTING_POOL_SIZE = "config.reporting.pool-size";
+    String REPORTING_QUERY_TIMEOUT_S = "config.reporting.query-timeout-s";
+    String CDC_DIR = "config.cdc.dir";
+    String CDC_SEGMENT_MB = "config.cdc.segment-mb";
+    String CDC_RETENTION_HOURS = "config.cdc.retention-hours";
+    String CDC_RETENTION_INTERVAL_MS = "config.cdc.retention-interval-ms";
+    String READ_CACHE_MB = "config.read.cache-mb";
 }
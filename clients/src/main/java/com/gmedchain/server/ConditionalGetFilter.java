@@ -0,0 +1,173 @@
+package com.gmedchain.server;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Conditional GET support for the polled read endpoints.
+ *
+ * Each response carries an ETag and Last-Modified derived from the [ReadVersionTracker] version of the data it reads.
+ * A matching `If-None-Match` (or a current `If-Modified-Since`) is answered with 304 without calling the node, and
+ * the serialised body of each URL is cached for the current version. The cache holds at most
+ * `config.read.cache-mb` of bodies, least recently used first out; a body over an eighth of that is not cached, so a
+ * single large page cannot flush every other one.
+ *
+ * Last-Modified has a resolution of one second, so it is only sent, and `If-Modified-Since` only honoured, once the
+ * second of the last change is over; until then another change could fall in the same second.
+ */
+@Component
+public class ConditionalGetFilter extends OncePerRequestFilter {
+    private static final String BASE_PATH = "/api/gmedchain/";
+    private static final int MAX_CACHED_BODIES = 256;
+    private static final Map<String, ReadVersionTracker.Source> ENDPOINTS = new HashMap<>();
+    static {
+        ENDPOINTS.put("orders", ReadVersionTracker.Source.VAULT);
+        ENDPOINTS.put("my-orders", ReadVersionTracker.Source.VAULT);
+        ENDPOINTS.put("states", ReadVersionTracker.Source.VAULT);
+        ENDPOINTS.put("peers", ReadVersionTracker.Source.NETWORK_MAP);
+    }
+
+    private final ReadVersionTracker versions;
+    private final long maxCachedBytes;
+    // Access-ordered, so iteration starts at the least recently used body. Guarded by itself, with cachedBytes.
+    private final Map<String, CachedBody> bodies = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    public ConditionalGetFilter(ReadVersionTracker versions,
+                                @Value("${" + CONSTANTS.READ_CACHE_MB + ":32}") long maxCachedMegabytes) {
+        this.versions = versions;
+        this.maxCachedBytes = maxCachedMegabytes * 1024 * 1024;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod()) || endpoint(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ReadVersionTracker.Source source = ENDPOINTS.get(endpoint(request));
+        // Read the version before the node is queried so a concurrent update can only make the body newer.
+        long version = versions.version(source);
+        if (version < 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long lastModified = versions.lastModified(source).toEpochMilli() / 1000 * 1000;
+        if (lastModified >= System.currentTimeMillis() / 1000 * 1000) {
+            lastModified = -1;
+        }
+        // JSON and CBOR renderings of the same version are different representations and get different tags.
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        String etag = "\"" + source.name().toLowerCase() + "-" + versions.getInstanceId() + "-" + version + "-"
+                + Integer.toHexString(String.valueOf(accept).hashCode()) + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        if (lastModified >= 0) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        }
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+
+        if (notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String key = request.getRequestURI() + "?" + request.getQueryString() + "|" + accept;
+        CachedBody cached;
+        synchronized (bodies) {
+            cached = bodies.get(key);
+        }
+        if (cached != null && cached.etag.equals(etag)) {
+            response.setContentType(cached.contentType);
+            response.setContentLength(cached.body.length);
+            response.getOutputStream().write(cached.body);
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        chain.doFilter(request, wrapper);
+        if (wrapper.getStatus() == HttpServletResponse.SC_OK && wrapper.getContentSize() <= maxCachedBytes / 8) {
+            cache(key, new CachedBody(etag, wrapper.getContentType(), wrapper.getContentAsByteArray()));
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private void cache(String key, CachedBody body) {
+        synchronized (bodies) {
+            CachedBody replaced = bodies.put(key, body);
+            cachedBytes += body.body.length - (replaced == null ? 0 : replaced.body.length);
+            Iterator<CachedBody> eldest = bodies.values().iterator();
+            while (cachedBytes > maxCachedBytes || bodies.size() > MAX_CACHED_BODIES) {
+                cachedBytes -= eldest.next().body.length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals(etag) || tag.equals("*")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (lastModified < 0) {
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * Returns the endpoint name below the API base path, or null for any other request.
+     */
+    private static String endpoint(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length()).replaceAll("/{2,}", "/");
+        if (!path.startsWith(BASE_PATH)) {
+            return null;
+        }
+        String name = path.substring(BASE_PATH.length());
+        if (name.endsWith("/")) {
+            name = name.substring(0, name.length() - 1);
+        }
+        return ENDPOINTS.containsKey(name) ? name : null;
+    }
+
+    private static class CachedBody {
+        final String etag;
+        final String contentType;
+        final byte[] body;
+
+        CachedBody(String etag, String contentType, byte[] body) {
+            this.etag = etag;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+}
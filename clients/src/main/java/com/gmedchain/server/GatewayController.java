@@ -0,0 +1,192 @@
+package com.gmedchain.server;
+
+import com.gmedchain.common.Order;
+import com.gmedchain.flow.*;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.FlowHandle;
+import net.corda.core.node.services.Vault;
+import net.corda.core.transactions.SignedTransaction;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.gmedchain.server.AsyncFlowSupport.immediate;
+import static com.gmedchain.server.BinaryApiConfiguration.APPLICATION_CBOR_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.TEXT_PLAIN_VALUE;
+
+/**
+ * Endpoints of gateway mode (see [NodeGateway]). Writes name their acting party in the `as` parameter and run on
+ * that party's node; reads cover every connected node.
+ */
+@RestController
+@RequestMapping("/api/gateway/")
+public class GatewayController {
+    private static final String FLOW_TIMEOUT_MESSAGE = "The flow did not finish in time; it may still commit.";
+    private final NodeGateway gateway;
+    private final AsyncFlowSupport flows;
+    private final ShipperSelector shippers;
+    private final OrderSequencer sequencer;
+
+    public GatewayController(NodeGateway gateway, AsyncFlowSupport flows, ShipperSelector shippers, OrderSequencer sequencer) {
+        this.gateway = gateway;
+        this.flows = flows;
+        this.shippers = shippers;
+        this.sequencer = sequencer;
+    }
+
+    @GetMapping(value = "/nodes", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> nodes() {
+        if (!gateway.isEnabled()) {
+            return notEnabled();
+        }
+        return ResponseEntity.ok(gateway.nodes());
+    }
+
+    /**
+     * Cross-node variant of /api/gmedchain/orders/query: the filter runs on every node in parallel and the results
+     * are merged, de-duplicated and paged here.
+     */
+    @GetMapping(value = "/orders", produces = { APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE })
+    public ResponseEntity<?> queryOrders(
+            @RequestParam(value = "filter", required = false) String filter,
+            @RequestParam(value = "state", defaultValue = "unconsumed") String state,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "page", defaultValue = "1") int page,
+            @RequestParam(value = "size", defaultValue = "100") int size) {
+        if (!gateway.isEnabled()) {
+            return notEnabled();
+        }
+        NodeGateway.Page results;
+        try {
+            Vault.StateStatus stateStatus = Vault.StateStatus.valueOf(state.toUpperCase(Locale.ROOT));
+            if (page < 1 || size < 1 || size > 1000) {
+                return ResponseEntity.badRequest().body("Query parameters 'page' must be positive and 'size' between 1 and 1000.\n");
+            }
+            results = gateway.queryOrders(OrderFilter.compile(filter, stateStatus), sort, page, size);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage() + "\n");
+        }
+        HashMap<String, Object> body = new HashMap<>();
+        body.put("page", page);
+        body.put("size", size);
+        body.put("largestNodeTotal", results.getLargestNodeTotal());
+        body.put("nodes", results.getAnswered());
+        body.put("orders", results.getOrders());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Creates an order on the node of the buyer named in `as`.
+     */
+    @PostMapping(value = "create-order", consumes = { APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE },
+            produces = { APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE })
+    public DeferredResult<ResponseEntity<OrderResult>> createOrder(@RequestParam("as") String as, @RequestBody OrderRequest request) {
+        if (!gateway.isEnabled()) {
+            return immediate(ResponseEntity.status(HttpStatus.NOT_FOUND).body(OrderResult.failed("Gateway mode is not enabled.")));
+        }
+        CompletableFuture<UniqueIdentifier> created;
+        try {
+            CordaX500Name buyerName = CordaX500Name.parse(as);
+            NodeRPCConnection node = gateway.connectionFor(buyerName);
+            CordaRPCOps proxy = node.getProxy();
+            Party seller = request.getPartyName() == null ? null
+                    : proxy.wellKnownPartyFromX500Name(CordaX500Name.parse(request.getPartyName()));
+            if (seller == null) {
+                return immediate(ResponseEntity.badRequest().body(OrderResult.failed("Party named " + request.getPartyName() + " cannot be found.")));
+            }
+            Party buyer = proxy.wellKnownPartyFromX500Name(buyerName);
+            List<String> violations = request.violations(buyer, seller);
+            if (!violations.isEmpty()) {
+                return immediate(ResponseEntity.badRequest().body(OrderResult.failed(String.join(" ", violations))));
+            }
+            Party shipper = shippers.select(Arrays.asList(buyer, seller));
+            Order order = request.toOrder();
+            Instant startedAt = Instant.now();
+            created = flows.result(node, proxy.startTrackedFlowDynamic(CreateOrderFlow.Initiator.class, order, seller, shipper),
+                    Function.identity(), OrderOutcomes.created(order, buyer, seller, shipper, startedAt));
+            shippers.track(shipper, created);
+        } catch (NoShipperAvailableException e) {
+            return immediate(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(OrderResult.failed(e.getMessage())));
+        } catch (IllegalArgumentException e) {
+            return immediate(ResponseEntity.badRequest().body(OrderResult.failed(e.getMessage())));
+        }
+        return flows.defer(created,
+                id -> ResponseEntity.status(HttpStatus.CREATED).body(OrderResult.created(id)),
+                error -> ResponseEntity.badRequest().body(OrderResult.failed(error.getMessage())),
+                ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(OrderResult.failed(FLOW_TIMEOUT_MESSAGE)));
+    }
+
+    /**
+     * Moves an order to its next step on the node of the party named in `as`. `step` is one of the lifecycle
+     * endpoint names of /api/gmedchain/, e.g. confirm-order or ship-order. Transitions are sequenced per order and
+     * retried on notary conflicts like those of the main API, see [OrderSequencer].
+     */
+    @PostMapping(value = "{step}", produces = TEXT_PLAIN_VALUE, headers = "Content-Type=application/x-www-form-urlencoded")
+    public DeferredResult<ResponseEntity<String>> transition(
+            @PathVariable("step") String step,
+            @RequestParam("as") String as,
+            @RequestParam("linearId") String linearId) {
+        if (!gateway.isEnabled()) {
+            return immediate(ResponseEntity.status(HttpStatus.NOT_FOUND).body("Gateway mode is not enabled.\n"));
+        }
+        NodeRPCConnection node;
+        UniqueIdentifier uniqueIdentifier;
+        int status;
+        Supplier<FlowHandle<SignedTransaction>> start;
+        try {
+            node = gateway.connectionFor(CordaX500Name.parse(as));
+            uniqueIdentifier = new UniqueIdentifier(null, UUID.fromString(linearId));
+            CordaRPCOps proxy = node.getProxy();
+            switch (step) {
+                case "confirm-order":
+                    status = 1;
+                    start = () -> proxy.startTrackedFlowDynamic(ConfirmOrderFlow.Initiator.class, uniqueIdentifier, status);
+                    break;
+                case "confirm-pickup":
+                    status = 2;
+                    start = () -> proxy.startTrackedFlowDynamic(ConfirmPickupFlow.Initiator.class, uniqueIdentifier, status);
+                    break;
+                case "ship-order":
+                    status = 3;
+                    start = () -> proxy.startTrackedFlowDynamic(ShipOrderFlow.Initiator.class, uniqueIdentifier, status);
+                    break;
+                case "delivery-order":
+                    status = 4;
+                    start = () -> proxy.startTrackedFlowDynamic(DeliveryOrderFlow.Initiator.class, uniqueIdentifier, status);
+                    break;
+                case "confirm-delivery":
+                    status = 5;
+                    start = () -> proxy.startTrackedFlowDynamic(ConfirmDeliveryFlow.Initiator.class, uniqueIdentifier, status);
+                    break;
+                default:
+                    return immediate(ResponseEntity.status(HttpStatus.NOT_FOUND).body("Unknown step '" + step + "'.\n"));
+            }
+        } catch (IllegalArgumentException e) {
+            return immediate(ResponseEntity.badRequest().body(e.getMessage() + "\n"));
+        }
+        return flows.defer(sequencer.submit(uniqueIdentifier.getId(),
+                        () -> flows.result(node, start.get(), SignedTransaction::getId, OrderOutcomes.moved(uniqueIdentifier.getId(), status))),
+                transactionId -> ResponseEntity.ok("Transaction id " + transactionId + " committed to ledger.\n"),
+                error -> ResponseEntity.badRequest().body(error.getMessage()),
+                ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(FLOW_TIMEOUT_MESSAGE + "\n"));
+    }
+
+    private static ResponseEntity<String> notEnabled() {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Gateway mode is not enabled.\n");
+    }
+}
@@ -10,26 +10,46 @@ import net.corda.core.contracts.*;
 import net.corda.core.identity.CordaX500Name;
 import net.corda.core.identity.Party;
 import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.FlowHandle;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
 import net.corda.core.node.NodeInfo;
 import net.corda.core.transactions.SignedTransaction;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x500.style.BCStyle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static com.gmedchain.server.AsyncFlowSupport.cancelling;
+import static com.gmedchain.server.AsyncFlowSupport.immediate;
+import static com.gmedchain.server.AsyncFlowSupport.setAsyncTimeout;
+import static com.gmedchain.server.BinaryApiConfiguration.APPLICATION_CBOR_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 import static org.springframework.http.MediaType.TEXT_PLAIN_VALUE;
 
@@ -40,13 +60,44 @@ import static org.springframework.http.MediaType.TEXT_PLAIN_VALUE;
 @RequestMapping("/api/gmedchain/") // The paths for HTTP requests are relative to this base path.
 public class MainController {
     private static final Logger logger = LoggerFactory.getLogger(RestController.class);
+    private static final String FLOW_TIMEOUT_MESSAGE = "The flow did not finish in time; it may still commit.";
     private final CordaRPCOps proxy;
-    private final CordaX500Name me;
-
-    public MainController(NodeRPCConnection rpc) {
+    private final NodeRPCConnection rpc;
+    private final NodeIdentity identity;
+    private final StartupTiming startupTiming;
+    private final ShipperSelector shippers;
+    private final OrderSequencer sequencer;
+    private final OrderIdempotencyCache idempotencyCache;
+    private final OrderArchiver archiver;
+    private final OrderHistoryService historyService;
+    private final OrderExporter exporter;
+    private final OrderImporter importer;
+    private final OrderSearchIndex searchIndex;
+    private final AsyncFlowSupport flows;
+    private final int maxBatchSize;
+    private final long exportTimeoutMillis;
+
+    public MainController(NodeRPCConnection rpc, OrderIdempotencyCache idempotencyCache, OrderArchiver archiver,
+                          OrderHistoryService historyService, OrderExporter exporter, OrderImporter importer,
+                          OrderSearchIndex searchIndex, AsyncFlowSupport flows, NodeIdentity identity,
+                          StartupTiming startupTiming, ShipperSelector shippers, OrderSequencer sequencer,
+                          @Value("${" + CONSTANTS.ORDER_BATCH_MAX_SIZE + ":500}") int maxBatchSize,
+                          @Value("${" + CONSTANTS.ORDER_EXPORT_TIMEOUT_MS + ":0}") long exportTimeoutMillis) {
+        this.rpc = rpc;
         this.proxy = rpc.getProxy();
-        this.me = proxy.nodeInfo().getLegalIdentities().get(0).getName();
-
+        this.idempotencyCache = idempotencyCache;
+        this.archiver = archiver;
+        this.historyService = historyService;
+        this.exporter = exporter;
+        this.importer = importer;
+        this.searchIndex = searchIndex;
+        this.flows = flows;
+        this.identity = identity;
+        this.startupTiming = startupTiming;
+        this.shippers = shippers;
+        this.sequencer = sequencer;
+        this.maxBatchSize = maxBatchSize;
+        this.exportTimeoutMillis = exportTimeoutMillis;
     }
 
     /** Helpers for filtering the network map cache. */
@@ -55,13 +106,13 @@ public class MainController {
     }
 
     private boolean isNotary(NodeInfo nodeInfo) {
-        return !proxy.notaryIdentities()
+        return !identity.getNotaries()
                 .stream().filter(el -> nodeInfo.isLegalIdentity(el))
                 .collect(Collectors.toList()).isEmpty();
     }
 
     private boolean isMe(NodeInfo nodeInfo){
-        return nodeInfo.getLegalIdentities().get(0).getName().equals(me);
+        return nodeInfo.getLegalIdentities().get(0).getName().equals(identity.getMe().getName());
     }
 
     private boolean isNetworkMap(NodeInfo nodeInfo){
@@ -81,6 +132,22 @@ public class MainController {
         return "200";
     }
 
+    /**
+     * Readiness, as opposed to the liveness of /status: 200 once the node is connected and its identity loaded,
+     * 503 before. The body reports each component and the startup timings.
+     */
+    @GetMapping(value = "/ready", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> ready() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("rpcConnected", rpc.isConnected());
+        body.put("identityLoaded", identity.isReady());
+        body.put("searchIndexLoaded", searchIndex.isReady());
+        body.put("webReadyMillis", startupTiming.getWebReadyMillis());
+        body.put("nodeConnectedMillis", startupTiming.getNodeConnectedMillis());
+        boolean ready = rpc.isConnected() && identity.isReady();
+        return ResponseEntity.status(ready ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(body);
+    }
+
     @GetMapping(value = "/servertime", produces = TEXT_PLAIN_VALUE)
     private String serverTime() {
         return (LocalDateTime.ofInstant(proxy.currentNodeTime(), ZoneId.of("UTC"))).toString();
@@ -88,17 +155,17 @@ public class MainController {
 
     @GetMapping(value = "/addresses", produces = TEXT_PLAIN_VALUE)
     private String addresses() {
-        return proxy.nodeInfo().getAddresses().toString();
+        return identity.getNodeInfo().getAddresses().toString();
     }
 
     @GetMapping(value = "/identities", produces = TEXT_PLAIN_VALUE)
     private String identities() {
-        return proxy.nodeInfo().getLegalIdentities().toString();
+        return identity.getNodeInfo().getLegalIdentities().toString();
     }
 
     @GetMapping(value = "/platformversion", produces = TEXT_PLAIN_VALUE)
     private String platformVersion() {
-        return Integer.toString(proxy.nodeInfo().getPlatformVersion());
+        return Integer.toString(identity.getNodeInfo().getPlatformVersion());
     }
 
     @GetMapping(value = "/peers", produces = APPLICATION_JSON_VALUE)
@@ -116,6 +183,14 @@ public class MainController {
         return myMap;
     }
 
+    /**
+     * The shippers new orders can be assigned to, with the load figures the assignment is based on.
+     */
+    @GetMapping(value = "/shippers", produces = APPLICATION_JSON_VALUE)
+    public Map<String, Map<String, Object>> shippers() {
+        return shippers.loads();
+    }
+
     @GetMapping(value = "/notaries", produces = TEXT_PLAIN_VALUE)
     private String notaries() {
         return proxy.notaryIdentities().toString();
@@ -134,17 +209,190 @@ public class MainController {
     @GetMapping(value = "/me",produces = APPLICATION_JSON_VALUE)
     private HashMap<String, String> whoami(){
         HashMap<String, String> myMap = new HashMap<>();
-        myMap.put("me", me.toString());
+        myMap.put("me", identity.getMe().getName().toString());
         return myMap;
     }
-    @GetMapping(value = "/orders",produces = APPLICATION_JSON_VALUE)
-    public List<StateAndRef<OrderState>> getOrderStates() {
-        // Filter by state type: OrderState.
-        return proxy.vaultQuery(OrderState.class).getStates();
+    /**
+     * Displays active orders. Completed orders drop out once they pass the archive retention period.
+     *
+     * Orders are returned as compact [OrderViews], limited to `fields` (e.g. `linearId,status,sku`) if given;
+     * `view=full` returns the raw states and refs instead.
+     */
+    @GetMapping(value = "/orders",produces = { APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE })
+    public ResponseEntity<?> getOrderStates(
+            @RequestParam(value = "view", defaultValue = "compact") String view,
+            @RequestParam(value = "fields", required = false) String fields) throws NoSuchFieldException {
+        return orderList(view, fields, () -> proxy.vaultQueryByCriteria(archiver.activeOrdersCriteria(), OrderState.class).getStates());
+    }
+
+    private ResponseEntity<?> orderList(String view, String fields, Supplier<List<StateAndRef<OrderState>>> query) {
+        switch (view) {
+            case "full":
+                return ResponseEntity.ok(query.get());
+            case "compact":
+                EnumSet<OrderViews.Field> selected;
+                try {
+                    selected = OrderViews.fields(fields);
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.badRequest().body(e.getMessage() + "\n");
+                }
+                return ResponseEntity.ok(new OrderViews(query.get(), selected));
+            default:
+                return ResponseEntity.badRequest().body("Query parameter 'view' must be compact or full.\n");
+        }
+    }
+
+    /**
+     * Returns every version of an order, searching the vault first and the order archive second.
+     */
+    @GetMapping(value = "/order-history", produces = { APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE })
+    public ResponseEntity<OrderHistory> getOrderHistory(@RequestParam("linearId") String linearId) throws Exception {
+        OrderHistory history = historyService.find(UUID.fromString(linearId));
+        return history == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(history);
+    }
+
+    /**
+     * Returns the lifecycle of an order: which party moved it into each step, in which transaction and when.
+     */
+    @GetMapping(value = "/orders/{linearId}/timeline", produces = { APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE })
+    public ResponseEntity<OrderTimeline> getOrderTimeline(@PathVariable("linearId") String linearId) throws Exception {
+        OrderHistory history = historyService.find(UUID.fromString(linearId));
+        return history == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(OrderTimeline.of(history));
+    }
+
+    /**
+     * Returns one page of the orders matching a filter expression (see [OrderFilter]), evaluated by the node's
+     * database. `state` is unconsumed (default), consumed or all; `sort` is e.g. `-recorded,price`.
+     */
+    @GetMapping(value = "/orders/query", produces = { APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE })
+    public ResponseEntity<?> queryOrders(
+            @RequestParam(value = "filter", required = false) String filter,
+            @RequestParam(value = "state", defaultValue = "unconsumed") String state,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "page", defaultValue = "1") int page,
+            @RequestParam(value = "size", defaultValue = "100") int size) {
+        Vault.Page<OrderState> results;
+        try {
+            Vault.StateStatus stateStatus = Vault.StateStatus.valueOf(state.toUpperCase(Locale.ROOT));
+            if (page < 1 || size < 1 || size > 1000) {
+                return ResponseEntity.badRequest().body("Query parameters 'page' must be positive and 'size' between 1 and 1000.\n");
+            }
+            results = proxy.vaultQueryBy(OrderFilter.compile(filter, stateStatus), new PageSpecification(page, size),
+                    OrderFilter.sort(sort), OrderState.class);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage() + "\n");
+        }
+        HashMap<String, Object> body = new HashMap<>();
+        body.put("total", results.getTotalStatesAvailable());
+        body.put("page", page);
+        body.put("size", size);
+        body.put("states", results.getStates());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Full-text search over product names and buyer and seller addresses. Returns the linearIds of orders containing
+     * every token; `field` is one of any, name or address.
+     */
+    @GetMapping(value = "/orders/search", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> searchOrders(
+            @RequestParam("q") String query,
+            @RequestParam(value = "field", defaultValue = "any") String field,
+            @RequestParam(value = "prefix", defaultValue = "true") boolean prefix,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        List<OrderSearchIndex.Field> fields;
+        switch (field) {
+            case "any": fields = Arrays.asList(OrderSearchIndex.Field.values()); break;
+            case "name": fields = Collections.singletonList(OrderSearchIndex.Field.NAME); break;
+            case "address": fields = Arrays.asList(OrderSearchIndex.Field.BUYER_ADDRESS, OrderSearchIndex.Field.SELLER_ADDRESS); break;
+            default: return ResponseEntity.badRequest().body("Query parameter 'field' must be any, name or address.\n");
+        }
+        HashMap<String, Object> result = new HashMap<>();
+        result.put("complete", searchIndex.isReady());
+        result.put("linearIds", searchIndex.search(query, fields, prefix, Math.max(1, Math.min(limit, 1000))));
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Streams every version of every order as NDJSON or CSV, optionally filtered by status, recorded time window
+     * (ISO-8601 instants, `from` inclusive and `to` exclusive) and party. The stream runs for as long as the vault
+     * takes to page through, up to `config.order.export.timeout-ms` (none by default).
+     */
+    @GetMapping(value = "/orders/export")
+    public ResponseEntity<?> exportOrders(
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            @RequestParam(value = "status", required = false) Integer status,
+            @RequestParam(value = "from", required = false) String from,
+            @RequestParam(value = "to", required = false) String to,
+            @RequestParam(value = "party", required = false) String party,
+            HttpServletRequest request, HttpServletResponse response) throws NoSuchFieldException {
+        OrderExporter.Format exportFormat;
+        try {
+            exportFormat = OrderExporter.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        QueryCriteria criteria;
+        try {
+            criteria = OrderQueries.export(
+                    status,
+                    from == null ? null : Instant.parse(from),
+                    to == null ? null : Instant.parse(to),
+                    party == null ? null : CordaX500Name.parse(party).toString());
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage() + "\n");
+        }
+        setAsyncTimeout(request, response, exportTimeoutMillis);
+        String fileName = "orders." + exportFormat.name().toLowerCase(Locale.ROOT);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(out -> exporter.export(criteria, exportFormat, out));
+    }
+
+    /**
+     * Starts a bulk import of new orders from the request body, one order per CSV row (with a header row) or NDJSON
+     * line. Columns: sku, name, price, qty, shippingCost, buyerAddress, sellerAddress, partyName and optionally
+     * shipperName. Progress is reported by GET on the same path.
+     */
+    @PostMapping(value = "/orders/import", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> importOrders(
+            @RequestParam("importId") String importId,
+            @RequestParam(value = "format", defaultValue = "csv") String format,
+            @RequestParam(value = "concurrency", required = false) Integer concurrency,
+            HttpServletRequest request) throws Exception {
+        try {
+            OrderImportJob.Format importFormat = OrderImportJob.Format.valueOf(format.toUpperCase(Locale.ROOT));
+            OrderImportJob job = importer.start(importId, importFormat, request.getInputStream(), concurrency);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job.report());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/orders/import/{importId}/resume", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> resumeImport(
+            @PathVariable("importId") String importId,
+            @RequestParam(value = "concurrency", required = false) Integer concurrency) throws Exception {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(importer.resume(importId, concurrency).report());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    @GetMapping(value = "/orders/import/{importId}", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<OrderImportJob.Report> importStatus(@PathVariable("importId") String importId) {
+        OrderImportJob job = importer.get(importId);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job.report());
     }
 
     @PostMapping (value = "create-order" , produces =  TEXT_PLAIN_VALUE , headers =  "Content-Type=application/x-www-form-urlencoded" )
-    public ResponseEntity<String> createOrder(HttpServletRequest request) throws IllegalArgumentException {
+    public DeferredResult<ResponseEntity<String>> createOrder(HttpServletRequest request) throws IllegalArgumentException {
         String sku = String.valueOf(request.getParameter("sku"));
         String name = String.valueOf(request.getParameter("name"));
         float price = Float.valueOf(request.getParameter("price"));
@@ -153,27 +401,35 @@ public class MainController {
         float shippingCost = Float.valueOf(request.getParameter("shippingCost"));
         String buyerAddress = String.valueOf(request.getParameter("buyerAddress"));
         String sellerAddress = String.valueOf(request.getParameter("sellerAddress"));
+        // Optional client-supplied key so that retried requests do not create duplicate orders.
+        String idempotencyKey = request.getHeader("Idempotency-Key");
+        if (idempotencyKey == null) {
+            idempotencyKey = request.getParameter("idempotencyKey");
+        }
 
         if (sku.isEmpty()) {
-            return ResponseEntity.badRequest().body("Query parameter 'sku' must be provided.\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'sku' must be provided.\n"));
         }
         if (name.isEmpty()) {
-            return ResponseEntity.badRequest().body("Query parameter 'productName' must be provided.\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'productName' must be provided.\n"));
         }
         if (price <= 0 ) {
-            return ResponseEntity.badRequest().body("Query parameter 'productPrice' must be non-negative.\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'productPrice' must be non-negative.\n"));
         }
         if (qty <= 0 ) {
-            return ResponseEntity.badRequest().body("Query parameter 'qty' must be non-negative.\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'qty' must be non-negative.\n"));
         }
         if (shippingCost < 0) {
-            return ResponseEntity.badRequest().body("Query parameter 'ShippingCost' must be provided.\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'ShippingCost' must be provided.\n"));
         }
         if (buyerAddress.isEmpty()) {
-            return ResponseEntity.badRequest().body("Query parameter 'BuyerAddress' must be provided.\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'BuyerAddress' must be provided.\n"));
         }
         if (sellerAddress.isEmpty()) {
-            return ResponseEntity.badRequest().body("Query parameter 'sellerAddress' must be provided.\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'sellerAddress' must be provided.\n"));
+        }
+        if (idempotencyKey != null && (idempotencyKey.isEmpty() || idempotencyKey.length() > OrderIdempotencyCache.MAX_KEY_LENGTH)) {
+            return immediate(ResponseEntity.badRequest().body("Idempotency key must be between 1 and " + OrderIdempotencyCache.MAX_KEY_LENGTH + " characters.\n"));
         }
 
         String party = request.getParameter("partyName");
@@ -182,180 +438,262 @@ public class MainController {
         CordaX500Name partyX500Name = CordaX500Name.parse(party);
         Party otherParty = proxy.wellKnownPartyFromX500Name(partyX500Name);
 
-        String partyName2 = "O=PartyC,L=Paris,C=FR";
-        CordaX500Name partyX500Name2 = CordaX500Name.parse(partyName2);
-        Party otherParty2 = proxy.wellKnownPartyFromX500Name(partyX500Name2) ;
+        // The shipper is the least loaded one unless the request names it.
+        String shipperName = request.getParameter("shipperName");
+        Party otherParty2;
+        try {
+            otherParty2 = shipperName == null || shipperName.isEmpty()
+                    ? shippers.select(Arrays.asList(identity.getMe(), otherParty))
+                    : proxy.wellKnownPartyFromX500Name(CordaX500Name.parse(shipperName));
+        } catch (NoShipperAvailableException e) {
+            return immediate(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage() + "\n"));
+        }
+        if (otherParty2 == null) {
+            return immediate(ResponseEntity.badRequest().body("Party named " + shipperName + " cannot be found.\n"));
+        }
 
         Order order = new Order(sku, name, price, qty, shippingCost, status, buyerAddress, sellerAddress);
 
-        // Create a new OrderState using the parameters given.
+        // Create a new OrderState using the parameters given. The request thread is released while the flow runs.
+        return flows.defer(startCreateOrder(order, otherParty, otherParty2, idempotencyKey),
+                result -> ResponseEntity
+                        .status(HttpStatus.CREATED)
+                        .body("Transaction id "+ result.getId() +" committed to ledger.\n " + result.toString()),
+                // For the purposes of this demo app, we do not differentiate by exception type.
+                MainController::flowFailed,
+                flowTimedOut());
+    }
+
+    /**
+     * Structured variant of create-order taking a JSON or CBOR [OrderRequest] (schema at /schema/order.cddl) and
+     * answering with an [OrderResult] in the negotiated encoding.
+     */
+    @PostMapping(value = "create-order", consumes = { APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE },
+            produces = { APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE })
+    public DeferredResult<ResponseEntity<OrderResult>> createOrderStructured(@RequestBody OrderRequest request) {
+        CompletableFuture<OrderResult> created;
+        try {
+            created = tryCreateOrder(request);
+        } catch (NoShipperAvailableException e) {
+            return immediate(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(OrderResult.failed(e.getMessage())));
+        }
+        return flows.defer(created,
+                result -> ResponseEntity.status(result.getError() == null ? HttpStatus.CREATED : HttpStatus.BAD_REQUEST).body(result),
+                error -> ResponseEntity.badRequest().body(OrderResult.failed(error.getMessage())),
+                ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(OrderResult.failed(FLOW_TIMEOUT_MESSAGE)));
+    }
+
+    /**
+     * Creates many orders in one request. Flows for all orders are started before any result is awaited; results are
+     * index-aligned with the requests. Batches over `config.order.batch.max-size` orders are rejected whole.
+     */
+    @PostMapping(value = "/orders/batch", consumes = { APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE },
+            produces = { APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE })
+    public DeferredResult<ResponseEntity<List<OrderResult>>> createOrders(@RequestBody List<OrderRequest> requests) {
+        if (requests.size() > maxBatchSize) {
+            return immediate(ResponseEntity.badRequest().body(Collections.singletonList(
+                    OrderResult.failed("A batch can create at most " + maxBatchSize + " orders."))));
+        }
+        List<CompletableFuture<OrderResult>> pending = requests.stream().map(request -> {
+            try {
+                return tryCreateOrder(request);
+            } catch (NoShipperAvailableException e) {
+                // The other orders of the batch may have other parties, and so a shipper.
+                return CompletableFuture.completedFuture(OrderResult.failed(e.getMessage()));
+            }
+        }).collect(Collectors.toList());
+        CompletableFuture<?>[] orders = pending.toArray(new CompletableFuture[0]);
+        CompletableFuture<List<OrderResult>> all = cancelling(CompletableFuture.allOf(orders)
+                .thenApply(done -> pending.stream().map(CompletableFuture::join).collect(Collectors.toList())), orders);
+        return flows.defer(all, ResponseEntity::ok, error -> ResponseEntity.badRequest().build(),
+                ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build());
+    }
+
+    /**
+     * Validates and starts one structured create-order request. The future always completes normally; failures are
+     * reported in the [OrderResult], except that no shipper being available is thrown as [NoShipperAvailableException],
+     * a temporary condition the caller answers differently.
+     */
+    private CompletableFuture<OrderResult> tryCreateOrder(OrderRequest request) {
+        Order order = request.toOrder();
+        String key = request.getIdempotencyKey();
+        if (key != null && (key.isEmpty() || key.length() > OrderIdempotencyCache.MAX_KEY_LENGTH)) {
+            return CompletableFuture.completedFuture(OrderResult.failed(
+                    "Idempotency key must be between 1 and " + OrderIdempotencyCache.MAX_KEY_LENGTH + " characters."));
+        }
+        CompletableFuture<UniqueIdentifier> created;
         try {
-            // Start the CreateOrderFlow. We block and waits for the flow to return.
-            UniqueIdentifier result = proxy.startTrackedFlowDynamic(CreateOrderFlow.Initiator.class, order, otherParty, otherParty2).getReturnValue().get();
-            // Return the response.
-            return ResponseEntity
-                    .status(HttpStatus.CREATED)
-                    .body("Transaction id "+ result.getId() +" committed to ledger.\n " + result.toString());
-            // For the purposes of this demo app, we do not differentiate by exception type.
+            Party seller = request.getPartyName() == null ? null
+                    : proxy.wellKnownPartyFromX500Name(CordaX500Name.parse(request.getPartyName()));
+            if (seller == null) {
+                return CompletableFuture.completedFuture(OrderResult.failed("Party named " + request.getPartyName() + " cannot be found."));
+            }
+            List<String> violations = request.violations(identity.getMe(), seller);
+            if (!violations.isEmpty()) {
+                return CompletableFuture.completedFuture(OrderResult.failed(String.join(" ", violations)));
+            }
+            Party shipper = shippers.select(Arrays.asList(identity.getMe(), seller));
+            created = startCreateOrder(order, seller, shipper, key);
+        } catch (NoShipperAvailableException e) {
+            throw e;
         } catch (Exception e) {
-            return ResponseEntity
-                    .status(HttpStatus.BAD_REQUEST)
-                    .body(e.getMessage());
+            return CompletableFuture.completedFuture(OrderResult.failed(e.getMessage()));
         }
+        return cancelling(created.handle((id, error) -> error == null ? OrderResult.created(id)
+                : OrderResult.failed((error instanceof CompletionException && error.getCause() != null ? error.getCause() : error).getMessage())),
+                created);
+    }
+
+    /**
+     * Starts the CreateOrderFlow without waiting for it. With an idempotency key, [CreateKeyedOrderFlow] makes the key
+     * the order's externalId, and a retry returns the original order instead of creating a new one.
+     */
+    private CompletableFuture<UniqueIdentifier> startCreateOrder(Order order, Party seller, Party shipper, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            Instant startedAt = Instant.now();
+            CompletableFuture<UniqueIdentifier> created = flows.result(proxy.startTrackedFlowDynamic(
+                    CreateOrderFlow.Initiator.class, order, seller, shipper), Function.identity(),
+                    OrderOutcomes.created(order, identity.getMe(), seller, shipper, startedAt));
+            shippers.track(shipper, created);
+            return created;
+        }
+        // Only an order the cache does not know yet counts against the shipper.
+        return idempotencyCache.createOnce(idempotencyKey, proxy, () -> {
+            CompletableFuture<UniqueIdentifier> created = flows.result(proxy.startTrackedFlowDynamic(
+                    CreateKeyedOrderFlow.Initiator.class, order, seller, shipper, idempotencyKey), Function.identity(),
+                    OrderOutcomes.created(idempotencyKey));
+            shippers.track(shipper, created);
+            return created;
+        });
+    }
+
+    /**
+     * Completes a lifecycle transition request once its flow returns, without holding the request thread. Transitions
+     * of the same order are started one at a time and retried on notary conflicts, see [OrderSequencer].
+     */
+    private DeferredResult<ResponseEntity<String>> transition(UniqueIdentifier linearId, int status, Supplier<FlowHandle<SignedTransaction>> start) {
+        return flows.defer(sequencer.submit(linearId.getId(), () -> flows.result(start.get(), SignedTransaction::getId,
+                        OrderOutcomes.moved(linearId.getId(), status))),
+                transactionId -> ResponseEntity
+                        .status(HttpStatus.OK)
+                        .body("Transaction id "+ transactionId +" committed to ledger.\n"),
+                // For the purposes of this demo app, we do not differentiate by exception type.
+                MainController::flowFailed,
+                flowTimedOut());
+    }
+
+    private static ResponseEntity<String> flowFailed(Throwable e) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(e.getMessage());
+    }
+
+    private static ResponseEntity<String> flowTimedOut() {
+        return ResponseEntity
+                .status(HttpStatus.GATEWAY_TIMEOUT)
+                .body(FLOW_TIMEOUT_MESSAGE + "\n");
     }
 
     @PostMapping (value = "confirm-order" , produces =  TEXT_PLAIN_VALUE , headers =  "Content-Type=application/x-www-form-urlencoded" )
-    public ResponseEntity<String> confirmOrder(HttpServletRequest request) throws IllegalArgumentException {
+    public DeferredResult<ResponseEntity<String>> confirmOrder(HttpServletRequest request) throws IllegalArgumentException {
         String linearId = String.valueOf(request.getParameter("linearId"));
         int status = Integer.valueOf(request.getParameter("status"));
 
         if (linearId == null || linearId.isEmpty()) {
-            return ResponseEntity.badRequest().body("Query parameter 'linearId' must be provided.\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'linearId' must be provided.\n"));
         }
         if (status != 1) {
-            return ResponseEntity.badRequest().body("Query parameter 'status' must be equals 1.\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'status' must be equals 1.\n"));
         }
 
         // Confirm a OrderState using the parameters given.
-        try {
-            // Start the ConfirmOrderFlow. We block and waits for the flow to return.
-            UniqueIdentifier uniqueIdentifier = new UniqueIdentifier(null, UUID.fromString(linearId));
-            SignedTransaction result = proxy.startTrackedFlowDynamic(ConfirmOrderFlow.Initiator.class, uniqueIdentifier, status).getReturnValue().get();
-            // Return the response.
-            return ResponseEntity
-                    .status(HttpStatus.OK)
-                    .body("Transaction id "+ result.getId() +" committed to ledger.\n " + result.toString());
-            // For the purposes of this demo app, we do not differentiate by exception type.
-        } catch (Exception e) {
-            return ResponseEntity
-                    .status(HttpStatus.BAD_REQUEST)
-                    .body(e.getMessage());
-        }
+        // Start the flow once earlier transitions of this order are done; the request thread is released meanwhile.
+        UniqueIdentifier uniqueIdentifier = new UniqueIdentifier(null, UUID.fromString(linearId));
+        return transition(uniqueIdentifier, status, () -> proxy.startTrackedFlowDynamic(ConfirmOrderFlow.Initiator.class, uniqueIdentifier, status));
     }
 
     @PostMapping (value = "confirm-pickup" , produces =  TEXT_PLAIN_VALUE , headers =  "Content-Type=application/x-www-form-urlencoded" )
-    public ResponseEntity<String> confirmPickup(HttpServletRequest request) throws IllegalArgumentException {
+    public DeferredResult<ResponseEntity<String>> confirmPickup(HttpServletRequest request) throws IllegalArgumentException {
         String linearId = String.valueOf(request.getParameter("linearId"));
         int status = Integer.valueOf(request.getParameter("status"));
 
         if (linearId == null || linearId.isEmpty()) {
-            return ResponseEntity.badRequest().body("Query parameter 'linearId' must be provided.\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'linearId' must be provided.\n"));
         }
         if (status != 2) {
-            return ResponseEntity.badRequest().body("Query parameter 'status' must be equals 1 (ReadyForPickup).\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'status' must be equals 1 (ReadyForPickup).\n"));
         }
 
         // Confirm Pickup using the parameters given.
-        try {
-            // Start the ConfirmPickupFlow. We block and waits for the flow to return.
-            UniqueIdentifier uniqueIdentifier = new UniqueIdentifier(null, UUID.fromString(linearId));
-            SignedTransaction result = proxy.startTrackedFlowDynamic(ConfirmPickupFlow.Initiator.class, uniqueIdentifier, status).getReturnValue().get();
-            // Return the response.
-            return ResponseEntity
-                    .status(HttpStatus.OK)
-                    .body("Transaction id "+ result.getId() +" committed to ledger.\n " + result.toString());
-            // For the purposes of this demo app, we do not differentiate by exception type.
-        } catch (Exception e) {
-            return ResponseEntity
-                    .status(HttpStatus.BAD_REQUEST)
-                    .body(e.getMessage());
-        }
+        // Start the flow once earlier transitions of this order are done; the request thread is released meanwhile.
+        UniqueIdentifier uniqueIdentifier = new UniqueIdentifier(null, UUID.fromString(linearId));
+        return transition(uniqueIdentifier, status, () -> proxy.startTrackedFlowDynamic(ConfirmPickupFlow.Initiator.class, uniqueIdentifier, status));
     }
 
     @PostMapping (value = "ship-order" , produces =  TEXT_PLAIN_VALUE , headers =  "Content-Type=application/x-www-form-urlencoded" )
-    public ResponseEntity<String> shipOrder(HttpServletRequest request) throws IllegalArgumentException {
+    public DeferredResult<ResponseEntity<String>> shipOrder(HttpServletRequest request) throws IllegalArgumentException {
         String linearId = String.valueOf(request.getParameter("linearId"));
         int status = Integer.valueOf(request.getParameter("status"));
 
         if (linearId == null || linearId.isEmpty()) {
-            return ResponseEntity.badRequest().body("Query parameter 'linearId' must be provided.\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'linearId' must be provided.\n"));
         }
         if (status != 3) {
-            return ResponseEntity.badRequest().body("Query parameter 'status' must be equals 3(Shipped).\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'status' must be equals 3(Shipped).\n"));
         }
 
         // Ship Order using the parameters given.
-        try {
-            // Start the ConfirmPickupFlow. We block and waits for the flow to return.
-            UniqueIdentifier uniqueIdentifier = new UniqueIdentifier(null, UUID.fromString(linearId));
-            SignedTransaction result = proxy.startTrackedFlowDynamic(ShipOrderFlow.Initiator.class, uniqueIdentifier, status).getReturnValue().get();
-            // Return the response.
-            return ResponseEntity
-                    .status(HttpStatus.OK)
-                    .body("Transaction id "+ result.getId() +" committed to ledger.\n " + result.toString());
-            // For the purposes of this demo app, we do not differentiate by exception type.
-        } catch (Exception e) {
-            return ResponseEntity
-                    .status(HttpStatus.BAD_REQUEST)
-                    .body(e.getMessage());
-        }
+        // Start the flow once earlier transitions of this order are done; the request thread is released meanwhile.
+        UniqueIdentifier uniqueIdentifier = new UniqueIdentifier(null, UUID.fromString(linearId));
+        return transition(uniqueIdentifier, status, () -> proxy.startTrackedFlowDynamic(ShipOrderFlow.Initiator.class, uniqueIdentifier, status));
     }
 
     @PostMapping (value = "delivery-order" , produces =  TEXT_PLAIN_VALUE , headers =  "Content-Type=application/x-www-form-urlencoded" )
-    public ResponseEntity<String> deliveryOrder(HttpServletRequest request) throws IllegalArgumentException {
+    public DeferredResult<ResponseEntity<String>> deliveryOrder(HttpServletRequest request) throws IllegalArgumentException {
         String linearId = String.valueOf(request.getParameter("linearId"));
         int status = Integer.valueOf(request.getParameter("status"));
 
         if (linearId == null || linearId.isEmpty()) {
-            return ResponseEntity.badRequest().body("Query parameter 'linearId' must be provided.\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'linearId' must be provided.\n"));
         }
         if (status != 4) {
-            return ResponseEntity.badRequest().body("Query parameter 'status' must be equals 4(Delivered).\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'status' must be equals 4(Delivered).\n"));
         }
 
         // Delivery Order using the parameters given.
-        try {
-            // Start the ConfirmPickupFlow. We block and waits for the flow to return.
-            UniqueIdentifier uniqueIdentifier = new UniqueIdentifier(null, UUID.fromString(linearId));
-            SignedTransaction result = proxy.startTrackedFlowDynamic(DeliveryOrderFlow.Initiator.class, uniqueIdentifier, status).getReturnValue().get();
-            // Return the response.
-            return ResponseEntity
-                    .status(HttpStatus.OK)
-                    .body("Transaction id "+ result.getId() +" committed to ledger.\n " + result.toString());
-            // For the purposes of this demo app, we do not differentiate by exception type.
-        } catch (Exception e) {
-            return ResponseEntity
-                    .status(HttpStatus.BAD_REQUEST)
-                    .body(e.getMessage());
-        }
+        // Start the flow once earlier transitions of this order are done; the request thread is released meanwhile.
+        UniqueIdentifier uniqueIdentifier = new UniqueIdentifier(null, UUID.fromString(linearId));
+        return transition(uniqueIdentifier, status, () -> proxy.startTrackedFlowDynamic(DeliveryOrderFlow.Initiator.class, uniqueIdentifier, status));
     }
 
     @PostMapping (value = "confirm-delivery" , produces =  TEXT_PLAIN_VALUE , headers =  "Content-Type=application/x-www-form-urlencoded" )
-    public ResponseEntity<String> confirmDelivery(HttpServletRequest request) throws IllegalArgumentException {
+    public DeferredResult<ResponseEntity<String>> confirmDelivery(HttpServletRequest request) throws IllegalArgumentException {
         String linearId = String.valueOf(request.getParameter("linearId"));
         int status = Integer.valueOf(request.getParameter("status"));
 
         if (linearId == null || linearId.isEmpty()) {
-            return ResponseEntity.badRequest().body("Query parameter 'linearId' must be provided.\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'linearId' must be provided.\n"));
         }
         if (status != 5) {
-            return ResponseEntity.badRequest().body("Query parameter 'status' must be equals 5(ConfirmDelivery).\n");
+            return immediate(ResponseEntity.badRequest().body("Query parameter 'status' must be equals 5(ConfirmDelivery).\n"));
         }
 
         // Delivery Order using the parameters given.
-        try {
-            // Start the ConfirmPickupFlow. We block and waits for the flow to return.
-            UniqueIdentifier uniqueIdentifier = new UniqueIdentifier(null, UUID.fromString(linearId));
-            SignedTransaction result = proxy.startTrackedFlowDynamic(ConfirmDeliveryFlow.Initiator.class, uniqueIdentifier, status).getReturnValue().get();
-            // Return the response.
-            return ResponseEntity
-                    .status(HttpStatus.OK)
-                    .body("Transaction id "+ result.getId() +" committed to ledger.\n " + result.toString());
-            // For the purposes of this demo app, we do not differentiate by exception type.
-        } catch (Exception e) {
-            return ResponseEntity
-                    .status(HttpStatus.BAD_REQUEST)
-                    .body(e.getMessage());
-        }
+        // Start the flow once earlier transitions of this order are done; the request thread is released meanwhile.
+        UniqueIdentifier uniqueIdentifier = new UniqueIdentifier(null, UUID.fromString(linearId));
+        return transition(uniqueIdentifier, status, () -> proxy.startTrackedFlowDynamic(ConfirmDeliveryFlow.Initiator.class, uniqueIdentifier, status));
     }
 
     /**
-     * Displays all OrderState that only this node has been involved in.
+     * Displays all OrderState that only this node has been involved in. Takes the `view` and `fields` parameters of
+     * /orders.
      */
-    @GetMapping(value = "my-orders",produces = APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<StateAndRef<OrderState>>> getMyOrders() {
-        List<StateAndRef<OrderState>> myorders = proxy.vaultQuery(OrderState.class).getStates().stream().filter(
-                it -> it.getState().getData().getBuyer().equals(proxy.nodeInfo().getLegalIdentities().get(0))).collect(Collectors.toList());
-        return ResponseEntity.ok(myorders);
+    @GetMapping(value = "my-orders",produces = { APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE })
+    public ResponseEntity<?> getMyOrders(
+            @RequestParam(value = "view", defaultValue = "compact") String view,
+            @RequestParam(value = "fields", required = false) String fields) throws NoSuchFieldException {
+        Party me = identity.getMe();
+        return orderList(view, fields, () -> proxy.vaultQueryByCriteria(archiver.activeOrdersCriteria(), OrderState.class).getStates().stream().filter(
+                it -> it.getState().getData().getBuyer().equals(me)).collect(Collectors.toList()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.gmedchain.server;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown by [ShipperSelector] when no shipper other than the parties of the order is in the network map; unhandled,
+ * it is answered with 503.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class NoShipperAvailableException extends IllegalStateException {
+    public NoShipperAvailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,266 @@
+package com.gmedchain.server;
+
+import com.gmedchain.state.OrderState;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.utilities.NetworkHostAndPort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Gateway mode: RPC connections to several nodes from one server.
+ *
+ * Enabled by listing the nodes' RPC addresses in `config.gateway.nodes` (e.g. `localhost:10005,localhost:10009`);
+ * the nodes share the RPC credentials of the server's own connection. Writes are routed to the node of the acting
+ * party, and reads fan out to every connected node in parallel.
+ */
+@Component
+public class NodeGateway {
+    private static final Logger logger = LoggerFactory.getLogger(NodeGateway.class);
+    /** The most rows a node is asked for to serve one merged page. */
+    private static final int MAX_FAN_OUT_ROWS = 5000;
+
+    private final List<NodeRPCConnection> connections = new ArrayList<>();
+    private final Map<CordaX500Name, NodeRPCConnection> byParty = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+    private ExecutorService fanOut;
+
+    public NodeGateway(
+            @Value("${" + CONSTANTS.GATEWAY_NODES + ":}") String nodes,
+            @Value("${" + CONSTANTS.CORDA_USER_NAME + "}") String username,
+            @Value("${" + CONSTANTS.CORDA_USER_PASSWORD + "}") String password,
+            @Value("${" + CONSTANTS.CORDA_RPC_RETRY_MS + ":1000}") long retryMillis,
+            @Value("${" + CONSTANTS.CORDA_RPC_MAX_RETRY_MS + ":30000}") long maxRetryMillis,
+            @Value("${" + CONSTANTS.GATEWAY_TIMEOUT_MS + ":10000}") long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        for (String node : nodes.split(",")) {
+            if (!node.trim().isEmpty()) {
+                NetworkHostAndPort address = NetworkHostAndPort.parse(node.trim());
+                connections.add(new NodeRPCConnection(address.getHost(), username, password, address.getPort(),
+                        retryMillis, maxRetryMillis, true));
+            }
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        fanOut = Executors.newFixedThreadPool(connections.size() * 2, runnable -> {
+            Thread thread = new Thread(runnable, "gateway-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (NodeRPCConnection connection : connections) {
+            connection.onConnected(proxy -> {
+                CordaX500Name name = proxy.nodeInfo().getLegalIdentities().get(0).getName();
+                byParty.put(name, connection);
+                logger.info("Gateway attached to {}", name);
+            });
+            connection.initialiseNodeRPCConnection();
+        }
+    }
+
+    public boolean isEnabled() {
+        return !connections.isEmpty();
+    }
+
+    /**
+     * The nodes attached so far and whether each is currently connected.
+     */
+    public Map<String, Boolean> nodes() {
+        Map<String, Boolean> nodes = new LinkedHashMap<>();
+        byParty.forEach((name, connection) -> nodes.put(name.toString(), connection.isConnected()));
+        return nodes;
+    }
+
+    /**
+     * Returns the connection to the node whose legal identity is `party`, for flows that party starts.
+     *
+     * @throws IllegalArgumentException if no gateway node has that identity.
+     * @throws NodeUnavailableException if that node is not connected.
+     */
+    public NodeRPCConnection connectionFor(CordaX500Name party) {
+        NodeRPCConnection connection = byParty.get(party);
+        if (connection == null) {
+            throw new IllegalArgumentException("No gateway node acts as " + party + ".");
+        }
+        if (!connection.isConnected()) {
+            throw new NodeUnavailableException("The node of " + party + " is not connected.");
+        }
+        return connection;
+    }
+
+    /**
+     * Runs `query` on every connected node in parallel and returns the results by node. A node that fails or does
+     * not answer within the gateway timeout is left out and logged, so one slow node cannot stall the view.
+     */
+    public <T> Map<CordaX500Name, T> fanOut(Function<CordaRPCOps, T> query) {
+        Map<CordaX500Name, CompletableFuture<T>> pending = new LinkedHashMap<>();
+        byParty.forEach((name, connection) -> {
+            if (connection.isConnected()) {
+                pending.put(name, CompletableFuture.supplyAsync(() -> query.apply(connection.getProxy()), fanOut));
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Map<CordaX500Name, T> results = new LinkedHashMap<>();
+        for (Map.Entry<CordaX500Name, CompletableFuture<T>> entry : pending.entrySet()) {
+            try {
+                results.put(entry.getKey(), entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                logger.warn("Gateway query to {} timed out", entry.getKey());
+            } catch (ExecutionException e) {
+                logger.warn("Gateway query to {} failed", entry.getKey(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns one page of the orders matching `criteria` across all nodes, merged in `sortSpec` order (see
+     * [OrderFilter.sort]). Every node is asked for its first `page * size` matches, so a state shared by several
+     * vaults is listed once, with all the nodes that hold it.
+     */
+    public Page queryOrders(QueryCriteria criteria, String sortSpec, int page, int size) {
+        int rows = page * size;
+        if (rows > MAX_FAN_OUT_ROWS) {
+            throw new IllegalArgumentException("Gateway queries are limited to the first " + MAX_FAN_OUT_ROWS + " orders.");
+        }
+        Sort sort = OrderFilter.sort(sortSpec);
+        Comparator<Item> order = comparator(sortSpec);
+        Map<CordaX500Name, Vault.Page<OrderState>> answers = fanOut(proxy -> proxy.vaultQueryBy(criteria,
+                new PageSpecification(1, rows), sort, OrderState.class));
+
+        Map<String, Item> merged = new LinkedHashMap<>();
+        long total = 0;
+        for (Map.Entry<CordaX500Name, Vault.Page<OrderState>> answer : answers.entrySet()) {
+            Vault.Page<OrderState> result = answer.getValue();
+            total = Math.max(total, result.getTotalStatesAvailable());
+            OrderHistory history = OrderHistory.fromPage(result);
+            for (int i = 0; history != null && i < result.getStates().size(); i++) {
+                OrderState state = result.getStates().get(i).getState().getData();
+                OrderHistory.Entry entry = history.getEntries().get(i);
+                merged.computeIfAbsent(entry.getTxId() + ":" + entry.getOutputIndex(),
+                        key -> new Item(state.getLinearId().getId().toString(), entry)).nodes.add(answer.getKey().toString());
+            }
+        }
+        List<Item> sorted = new ArrayList<>(merged.values());
+        sorted.sort(order);
+        int from = Math.min(sorted.size(), (page - 1) * size);
+        return new Page(sorted.subList(from, Math.min(sorted.size(), from + size)), total, new ArrayList<>(answers.keySet()));
+    }
+
+    /**
+     * The in-memory equivalent of [OrderFilter.sort] for merging, over the fields every node returns.
+     */
+    private static Comparator<Item> comparator(String spec) {
+        Comparator<Item> comparator = null;
+        if (spec != null) {
+            for (String part : spec.split(",")) {
+                String name = part.trim();
+                if (name.isEmpty()) {
+                    continue;
+                }
+                boolean descending = name.startsWith("-");
+                Comparator<Item> column = column(descending ? name.substring(1).toLowerCase(Locale.ROOT) : name.toLowerCase(Locale.ROOT));
+                if (descending) {
+                    column = column.reversed();
+                }
+                comparator = comparator == null ? column : comparator.thenComparing(column);
+            }
+        }
+        return comparator == null ? column("recorded") : comparator;
+    }
+
+    private static Comparator<Item> column(String name) {
+        switch (name) {
+            case "recorded": return Comparator.comparing((Item it) -> it.entry.getRecordedTime(), Comparator.nullsLast(Comparator.<Instant>naturalOrder()));
+            case "consumed": return Comparator.comparing((Item it) -> it.entry.getConsumedTime(), Comparator.nullsLast(Comparator.<Instant>naturalOrder()));
+            case "status": return Comparator.comparingInt(it -> it.entry.getOrder().getStatus());
+            case "sku": return Comparator.comparing(it -> it.entry.getOrder().getProductSku());
+            case "name": return Comparator.comparing(it -> it.entry.getOrder().getProductName());
+            case "price": return Comparator.comparingDouble(it -> it.entry.getOrder().getProductPrice());
+            case "qty": return Comparator.comparingInt(it -> it.entry.getOrder().getQty());
+            case "shippingcost": return Comparator.comparingDouble(it -> it.entry.getOrder().getShippingCost());
+            case "buyeraddress": return Comparator.comparing(it -> it.entry.getOrder().getBuyerAddress());
+            case "selleraddress": return Comparator.comparing(it -> it.entry.getOrder().getSellerAddress());
+            case "owner": return Comparator.comparing(it -> it.entry.getOwner());
+            case "linearid": return Comparator.comparing(it -> it.linearId);
+            default: throw new IllegalArgumentException("Gateway queries cannot sort by '" + name + "'.");
+        }
+    }
+
+    /**
+     * One version of an order and the nodes whose vaults hold it.
+     */
+    public static class Item {
+        private final String linearId;
+        private final OrderHistory.Entry entry;
+        private final List<String> nodes = new ArrayList<>();
+
+        Item(String linearId, OrderHistory.Entry entry) {
+            this.linearId = linearId;
+            this.entry = entry;
+        }
+
+        public String getLinearId() { return linearId; }
+        public OrderHistory.Entry getEntry() { return entry; }
+        public List<String> getNodes() { return nodes; }
+    }
+
+    public static class Page {
+        private final List<Item> orders;
+        private final long largestNodeTotal;
+        private final List<CordaX500Name> answered;
+
+        Page(List<Item> orders, long largestNodeTotal, List<CordaX500Name> answered) {
+            this.orders = orders;
+            this.largestNodeTotal = largestNodeTotal;
+            this.answered = answered;
+        }
+
+        public List<Item> getOrders() { return orders; }
+        /** The largest match count of a single node; a lower bound of the merged total. */
+        public long getLargestNodeTotal() { return largestNodeTotal; }
+        public List<CordaX500Name> getAnswered() { return answered; }
+    }
+
+    @PreDestroy
+    public void close() throws Exception {
+        if (fanOut != null) {
+            fanOut.shutdownNow();
+        }
+        for (NodeRPCConnection connection : connections) {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.gmedchain.server;
+
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.NodeInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The connected node's identity and the network's notaries, fetched once in the background when the node connects.
+ *
+ * These do not change while the node runs, so the read endpoints and peer filtering use this copy rather than a
+ * `nodeInfo()` or `notaryIdentities()` round trip per request. A failed load is retried with the backoff of the RPC
+ * connection until it succeeds, the node disconnects or a newer connection starts its own load.
+ */
+@Component
+public class NodeIdentity {
+    private static final Logger logger = LoggerFactory.getLogger(NodeIdentity.class);
+
+    private final NodeRPCConnection rpc;
+    private final long retryMillis;
+    private final long maxRetryMillis;
+    private final AtomicInteger loads = new AtomicInteger();
+    private volatile NodeInfo nodeInfo;
+    private volatile List<Party> notaries = Collections.emptyList();
+
+    public NodeIdentity(
+            NodeRPCConnection rpc,
+            @Value("${" + CONSTANTS.CORDA_RPC_RETRY_MS + ":1000}") long retryMillis,
+            @Value("${" + CONSTANTS.CORDA_RPC_MAX_RETRY_MS + ":30000}") long maxRetryMillis) {
+        this.rpc = rpc;
+        this.retryMillis = retryMillis;
+        this.maxRetryMillis = maxRetryMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        rpc.onConnected(this::warmUp);
+    }
+
+    private void warmUp(CordaRPCOps proxy) {
+        int load = loads.incrementAndGet();
+        Thread loader = new Thread(() -> {
+            long delay = retryMillis;
+            for (int attempt = 1; rpc.isConnected() && loads.get() == load; attempt++) {
+                try {
+                    notaries = proxy.notaryIdentities();
+                    nodeInfo = proxy.nodeInfo();
+                    logger.info("Node identity loaded: {}", getMe().getName());
+                    return;
+                } catch (Exception e) {
+                    logger.warn("Could not load the node identity (attempt {}), retrying in {} ms", attempt, delay, e);
+                }
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                delay = Math.min(delay * 2, maxRetryMillis);
+            }
+        }, "node-identity");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public boolean isReady() {
+        return nodeInfo != null;
+    }
+
+    /**
+     * @throws NodeUnavailableException until the identity has been loaded.
+     */
+    public NodeInfo getNodeInfo() {
+        NodeInfo info = nodeInfo;
+        if (info == null) {
+            throw new NodeUnavailableException("The node identity is not loaded yet.");
+        }
+        return info;
+    }
+
+    public Party getMe() {
+        return getNodeInfo().getLegalIdentities().get(0);
+    }
+
+    public List<Party> getNotaries() {
+        return notaries;
+    }
+}
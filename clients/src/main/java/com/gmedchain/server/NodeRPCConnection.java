@@ -1,28 +1,71 @@
 package com.gmedchain.server;
 
+import kotlin.Unit;
 import net.corda.client.rpc.CordaRPCClient;
 import net.corda.client.rpc.CordaRPCConnection;
+import net.corda.client.rpc.GracefulReconnect;
 import net.corda.core.messaging.CordaRPCOps;
 import net.corda.core.utilities.NetworkHostAndPort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 /**
  * Wraps a node RPC proxy.
+ *
+ * The connection is made in the background and retried with exponential backoff until the node answers, so the web
+ * server starts without waiting for the node. In reconnecting mode (the default) the connection is a
+ * [GracefulReconnect] one that re-establishes itself after a node restart or a dropped broker connection.
+ *
+ * While the node is unavailable every call on [getProxy] fails fast with [NodeUnavailableException] instead of
+ * queueing behind the reconnection. Components that need the node register with [onConnected], which runs again
+ * after every reconnection so they can re-subscribe their feeds and resynchronise what they missed.
  */
 @Component
 public class NodeRPCConnection implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(NodeRPCConnection.class);
+    /** Reconnection attempts of a graceful connection; -1 keeps trying for as long as the server runs. */
+    private static final int UNLIMITED_RECONNECTS = -1;
+
     private final String host;
     private final String username;
     private final String password;
     private final int rpcPort;
+    private final long retryMillis;
+    private final long maxRetryMillis;
+    private final boolean reconnect;
 
-
-    private CordaRPCConnection rpcConnection;
-    private CordaRPCOps proxy; // The RPC proxy
+    private final CordaRPCOps proxy; // The RPC proxy, delegating to the live connection.
+    // Connection events and listener registration are serialised on this thread, so a listener sees each
+    // connection exactly once and in order.
+    private final ExecutorService events = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "node-rpc-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<Consumer<CordaRPCOps>> connectListeners = new ArrayList<>();
+    private final List<Runnable> disconnectListeners = new ArrayList<>();
+    private volatile CordaRPCConnection rpcConnection;
+    private volatile boolean available;
+    private volatile CompletableFuture<Void> nextConnection = new CompletableFuture<>();
+    private volatile Instant connectedAt;
+    private volatile boolean closed;
+    private Thread connector;
 
     /**
      * The RPC proxy is configured based on the properties in `application.properties`.
@@ -30,34 +73,182 @@ public class NodeRPCConnection implements AutoCloseable {
      * @param rpcPort The RPC port of the node we are connecting to.
      * @param username The username for logging into the RPC client.
      * @param password The password for logging into the RPC client.
+     * @param retryMillis The delay before the first reconnection attempt; it doubles up to `maxRetryMillis`.
+     * @param reconnect Whether an established connection re-establishes itself after it drops.
      */
     public NodeRPCConnection(
             @Value("${" + CONSTANTS.CORDA_NODE_HOST + "}") String host,
             @Value("${" + CONSTANTS.CORDA_USER_NAME + "}") String username,
             @Value("${" + CONSTANTS.CORDA_USER_PASSWORD + "}") String password,
-            @Value("${" + CONSTANTS.CORDA_RPC_PORT + "}") int rpcPort
+            @Value("${" + CONSTANTS.CORDA_RPC_PORT + "}") int rpcPort,
+            @Value("${" + CONSTANTS.CORDA_RPC_RETRY_MS + ":1000}") long retryMillis,
+            @Value("${" + CONSTANTS.CORDA_RPC_MAX_RETRY_MS + ":30000}") long maxRetryMillis,
+            @Value("${" + CONSTANTS.CORDA_RPC_RECONNECT + ":true}") boolean reconnect
     ) {
         this.host = host;
         this.username = username;
         this.password = password;
         this.rpcPort = rpcPort;
+        this.retryMillis = retryMillis;
+        this.maxRetryMillis = maxRetryMillis;
+        this.reconnect = reconnect;
+        this.proxy = (CordaRPCOps) Proxy.newProxyInstance(CordaRPCOps.class.getClassLoader(),
+                new Class<?>[] { CordaRPCOps.class }, (target, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return method.invoke(this, args);
+                    }
+                    try {
+                        return method.invoke(connected(), args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
     }
 
     @PostConstruct
     public void initialiseNodeRPCConnection() {
+        connector = new Thread(this::connect, "node-rpc-connector");
+        connector.setDaemon(true);
+        connector.start();
+    }
+
+    private void connect() {
         NetworkHostAndPort rpcAddress = new NetworkHostAndPort(host, rpcPort);
         CordaRPCClient rpcClient = new CordaRPCClient(rpcAddress);
-        this.rpcConnection = rpcClient.start(username, password);
-        this.proxy = rpcConnection.getProxy();
+        CordaRPCConnection connection = null;
+        long delay = retryMillis;
+        int attempt = 1;
+        while (!closed) {
+            try {
+                connection = reconnect
+                        ? rpcClient.start(username, password, new GracefulReconnect(
+                                () -> { disconnected(); return Unit.INSTANCE; },
+                                () -> { connected(rpcAddress + " (reconnected)"); return Unit.INSTANCE; },
+                                UNLIMITED_RECONNECTS))
+                        : rpcClient.start(username, password);
+                break;
+            } catch (Exception e) {
+                logger.warn("Node at {} is not reachable (attempt {}), retrying in {} ms: {}", rpcAddress, attempt, delay, e.getMessage());
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+            delay = Math.min(delay * 2, maxRetryMillis);
+            attempt++;
+        }
+        if (connection == null) {
+            return;
+        }
+        rpcConnection = connection;
+        Duration sinceStart = Duration.between(Instant.ofEpochMilli(ManagementFactory.getRuntimeMXBean().getStartTime()), Instant.now());
+        logger.info("Connected to node at {} after {} attempt(s), {} ms after JVM start", rpcAddress, attempt, sinceStart.toMillis());
+        connected(rpcAddress.toString());
+    }
+
+    private void connected(String description) {
+        events.execute(() -> {
+            if (available) {
+                return;
+            }
+            connectedAt = Instant.now();
+            available = true;
+            nextConnection.complete(null);
+            logger.info("Node at {} is available", description);
+            connectListeners.forEach(this::fire);
+        });
+    }
+
+    private void disconnected() {
+        events.execute(() -> {
+            if (!available) {
+                return;
+            }
+            available = false;
+            nextConnection = new CompletableFuture<>();
+            logger.warn("Lost the connection to node at {}:{}; reconnecting", host, rpcPort);
+            disconnectListeners.forEach(listener -> {
+                try {
+                    listener.run();
+                } catch (Exception e) {
+                    logger.error("Node disconnection listener failed", e);
+                }
+            });
+        });
     }
 
+    private CordaRPCOps connected() {
+        CordaRPCConnection connection = rpcConnection;
+        if (connection == null || !available) {
+            throw new NodeUnavailableException("Node at " + host + ":" + rpcPort + " is not connected.");
+        }
+        return connection.getProxy();
+    }
+
+    /**
+     * Returns a proxy that stays valid for the lifetime of the application; calls fail while the node is unavailable.
+     */
     public CordaRPCOps getProxy() {
         return proxy;
     }
 
+    public boolean isConnected() {
+        return available;
+    }
+
+    /**
+     * The time the current connection was established, or null before the first connection.
+     */
+    public Instant getConnectedAt() {
+        return connectedAt;
+    }
+
+    /**
+     * Completes when the node is next available, immediately if it is now.
+     */
+    public CompletableFuture<Void> whenConnected() {
+        return nextConnection;
+    }
+
+    /**
+     * Runs `listener` every time the node becomes available, starting now if it already is. Listeners run on a
+     * single event thread and should hand long-running work to their own thread.
+     */
+    public void onConnected(Consumer<CordaRPCOps> listener) {
+        events.execute(() -> {
+            connectListeners.add(listener);
+            if (available) {
+                fire(listener);
+            }
+        });
+    }
+
+    /**
+     * Runs `listener` every time the connection to the node drops.
+     */
+    public void onDisconnected(Runnable listener) {
+        events.execute(() -> disconnectListeners.add(listener));
+    }
+
+    private void fire(Consumer<CordaRPCOps> listener) {
+        try {
+            listener.accept(proxy);
+        } catch (Exception e) {
+            logger.error("Node connection listener failed", e);
+        }
+    }
+
     @PreDestroy
     @Override
     public void close() throws Exception {
-        rpcConnection.notifyServerAndClose();
+        closed = true;
+        events.shutdownNow();
+        if (connector != null) {
+            connector.interrupt();
+        }
+        if (rpcConnection != null) {
+            rpcConnection.notifyServerAndClose();
+        }
     }
 }
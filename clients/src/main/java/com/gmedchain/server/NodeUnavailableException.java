@@ -0,0 +1,14 @@
+package com.gmedchain.server;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown by [NodeRPCConnection] proxies while the node is not connected; unhandled, it is answered with 503.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class NodeUnavailableException extends IllegalStateException {
+    public NodeUnavailableException(String message) {
+        super(message);
+    }
+}
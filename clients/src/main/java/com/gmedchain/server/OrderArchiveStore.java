@@ -0,0 +1,155 @@
+package com.gmedchain.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only copy of the histories of completed orders, kept off the node for retention and offline analysis. The
+ * server never reads it back: the vault keeps every version of every order, so lookups go there.
+ *
+ * Each archived order is one newline-terminated JSON record. An in-memory index of the archived linearIds is rebuilt
+ * on startup, so an order is never appended twice. Next to the file, `<archive>.cutoff` records the cutoff of the
+ * last complete archive run: every completed order recorded before it is in the archive.
+ */
+@Component
+public class OrderArchiveStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(OrderArchiveStore.class);
+
+    private final Path path;
+    private final Path cutoffPath;
+    private volatile Instant archivedBefore = Instant.EPOCH;
+    private final ObjectMapper mapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final Set<UUID> index = ConcurrentHashMap.newKeySet();
+    private FileChannel channel;
+
+    /**
+     * @param path The archive file; created on first use.
+     */
+    public OrderArchiveStore(@Value("${" + CONSTANTS.ORDER_ARCHIVE_PATH + ":order-archive.ndjson}") String path) {
+        this.path = Paths.get(path);
+        this.cutoffPath = this.path.resolveSibling(this.path.getFileName() + ".cutoff");
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        if (Files.exists(cutoffPath)) {
+            archivedBefore = Instant.parse(new String(Files.readAllBytes(cutoffPath), StandardCharsets.UTF_8).trim());
+        }
+        long end = Files.exists(path) ? rebuildIndex() : 0;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (end < channel.size()) {
+            // A record torn by a crash mid-append; drop it so the next append starts on a clean line.
+            logger.warn("Truncating incomplete archive record at offset {} in {}", end, path);
+            channel.truncate(end);
+        }
+        logger.info("Opened order archive {} with {} orders", path, index.size());
+    }
+
+    /**
+     * Scans the file and indexes every complete record. Returns the offset just past the last complete record.
+     */
+    private long rebuildIndex() throws IOException {
+        long offset = 0;
+        long lineStart = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            ByteArrayBuilder line = new ByteArrayBuilder();
+            int b;
+            while ((b = in.read()) != -1) {
+                offset++;
+                if (b == '\n') {
+                    OrderHistory history = mapper.readValue(line.bytes(), 0, line.size(), OrderHistory.class);
+                    index.add(history.getLinearId());
+                    line.reset();
+                    lineStart = offset;
+                } else {
+                    line.write(b);
+                }
+            }
+        }
+        return lineStart;
+    }
+
+    /**
+     * Every completed order recorded before this instant has been archived; [Instant.EPOCH] until a run completes.
+     */
+    public Instant getArchivedBefore() {
+        return archivedBefore;
+    }
+
+    /**
+     * Records that an archive run covered every completed order recorded before `cutoff`.
+     */
+    public synchronized void setArchivedBefore(Instant cutoff) throws IOException {
+        Path tmp = cutoffPath.resolveSibling(cutoffPath.getFileName() + ".tmp");
+        Files.write(tmp, cutoff.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, cutoffPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        archivedBefore = cutoff;
+    }
+
+    public boolean contains(UUID linearId) {
+        return index.contains(linearId);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Appends the history of a completed order. Orders already archived are ignored.
+     */
+    public synchronized void append(OrderHistory history) throws IOException {
+        if (contains(history.getLinearId())) {
+            return;
+        }
+        byte[] record = mapper.writeValueAsBytes(history);
+        ByteBuffer buffer = ByteBuffer.allocate(record.length + 1).put(record).put((byte) '\n');
+        buffer.flip();
+        long position = channel.size();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        channel.force(false);
+        index.add(history.getLinearId());
+    }
+
+    @PreDestroy
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /** Growable byte buffer exposing its backing array without copying. */
+    private static class ByteArrayBuilder extends java.io.ByteArrayOutputStream {
+        byte[] bytes() { return buf; }
+    }
+}
@@ -0,0 +1,110 @@
+package com.gmedchain.server;
+
+import com.gmedchain.state.OrderState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * Copies completed orders to the [OrderArchiveStore] once their retention period has passed, and from then on leaves
+ * them out of the order lists built on [activeOrdersCriteria]. An order is only left out once a run that covered it
+ * has completed, so a failing archiver hides nothing.
+ *
+ * The vault tables belong to the node and cannot be pruned from here. The active-order criteria are therefore a
+ * predicate over the full order and vault state tables, which shortens the lists returned but not the tables scanned.
+ */
+@Component
+public class OrderArchiver {
+    private static final Logger logger = LoggerFactory.getLogger(OrderArchiver.class);
+    private static final int PAGE_SIZE = 200;
+
+    private final NodeRPCConnection rpc;
+    private final OrderArchiveStore store;
+    private final ReadVersionTracker versions;
+    private final Duration retention;
+
+    public OrderArchiver(
+            NodeRPCConnection rpc,
+            OrderArchiveStore store,
+            ReadVersionTracker versions,
+            @Value("${" + CONSTANTS.ORDER_ARCHIVE_RETENTION_DAYS + ":30}") long retentionDays) {
+        this.rpc = rpc;
+        this.store = store;
+        this.versions = versions;
+        this.retention = Duration.ofDays(retentionDays);
+    }
+
+    /**
+     * Completed orders recorded before this instant are in the archive: the cutoff of the last complete run.
+     */
+    public Instant cutoff() {
+        return store.getArchivedBefore();
+    }
+
+    /**
+     * Criteria for the hot read path: orders that are active or completed within the retention period.
+     */
+    public QueryCriteria activeOrdersCriteria() throws NoSuchFieldException {
+        return OrderQueries.activeOrders(cutoff());
+    }
+
+    @Scheduled(fixedDelayString = "${" + CONSTANTS.ORDER_ARCHIVE_INTERVAL_MS + ":3600000}")
+    public void archiveCompletedOrders() {
+        if (!rpc.isConnected()) {
+            return;
+        }
+        try {
+            Instant cutoff = Instant.now().minus(retention);
+            int archived = archiveBefore(cutoff);
+            store.setArchivedBefore(cutoff);
+            // The hot order list depends on the cutoff, not only on the vault.
+            versions.changed(ReadVersionTracker.Source.VAULT);
+            if (archived > 0) {
+                logger.info("Archived {} completed orders, {} in archive", archived, store.size());
+            }
+        } catch (Exception e) {
+            logger.error("Order archiving failed", e);
+        }
+    }
+
+    /**
+     * Archives every completed order recorded before the cutoff that is not archived yet.
+     */
+    public int archiveBefore(Instant cutoff) throws NoSuchFieldException, IOException {
+        CordaRPCOps proxy = rpc.getProxy();
+        QueryCriteria criteria = OrderQueries.archivableOrders(cutoff);
+        int archived = 0;
+        int pageNumber = DEFAULT_PAGE_NUM;
+        Vault.Page<OrderState> page;
+        do {
+            page = proxy.vaultQueryByWithPagingSpec(OrderState.class, criteria, new PageSpecification(pageNumber, PAGE_SIZE));
+            for (StateAndRef<OrderState> state : page.getStates()) {
+                UUID linearId = state.getState().getData().getLinearId().getId();
+                if (store.contains(linearId)) {
+                    continue;
+                }
+                OrderHistory history = OrderHistory.fromPage(proxy.vaultQueryBy(
+                        OrderQueries.history(linearId), OrderQueries.HISTORY_PAGE,
+                        OrderQueries.BY_RECORDED_TIME, OrderState.class));
+                store.append(history);
+                archived++;
+            }
+            pageNumber++;
+        } while ((long) (pageNumber - 1) * PAGE_SIZE < page.getTotalStatesAvailable());
+        return archived;
+    }
+}
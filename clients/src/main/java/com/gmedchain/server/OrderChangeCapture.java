@@ -0,0 +1,210 @@
+package com.gmedchain.server;
+
+import com.gmedchain.state.OrderState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import rx.Subscription;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * Change data capture of orders: the one vault subscription that feeds the [OrderEventJournal], from which any number
+ * of local consumers read (see [getJournal]) without further RPC traffic.
+ *
+ * Enabled by `config.cdc.dir`. Every produced and consumed [OrderState] in a vault update becomes one event. Updates
+ * missed while the node was unreachable are caught up after each (re)connection from the vault's recorded and consumed
+ * times, starting a margin before the last journalled event; events already in the journal are recognised and skipped.
+ * Segments older than `config.cdc.retention-hours` (default a week, 0 keeps everything) are deleted.
+ */
+@Component
+public class OrderChangeCapture {
+    private static final Logger logger = LoggerFactory.getLogger(OrderChangeCapture.class);
+    /** How far before the last journalled event the catch-up starts, to absorb clock skew between server and node. */
+    private static final Duration CATCH_UP_MARGIN = Duration.ofMinutes(5);
+    private static final int CATCH_UP_PAGE_SIZE = 500;
+    /** Events remembered for de-duplication between the live feed and catch-up. */
+    private static final int RECENT_EVENTS = 100_000;
+
+    private final NodeRPCConnection rpc;
+    private final String directory;
+    private final int segmentBytes;
+    private final Duration retention;
+    private final Map<String, Boolean> recent = new LinkedHashMap<String, Boolean>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > RECENT_EVENTS;
+        }
+    };
+    private final ExecutorService catchUp = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-cdc-catch-up");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private OrderEventJournal journal;
+    private Subscription subscription;
+
+    public OrderChangeCapture(
+            NodeRPCConnection rpc,
+            @Value("${" + CONSTANTS.CDC_DIR + ":}") String directory,
+            @Value("${" + CONSTANTS.CDC_SEGMENT_MB + ":64}") int segmentMegabytes,
+            @Value("${" + CONSTANTS.CDC_RETENTION_HOURS + ":168}") long retentionHours) {
+        this.rpc = rpc;
+        this.directory = directory;
+        this.segmentBytes = segmentMegabytes * 1024 * 1024;
+        this.retention = Duration.ofHours(retentionHours);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (directory.isEmpty()) {
+            return;
+        }
+        journal = new OrderEventJournal(Paths.get(directory), segmentBytes);
+        Instant last = journal.getLastTime();
+        if (last != null) {
+            OrderEventJournal.Reader reader = journal.readerAt(last.minus(CATCH_UP_MARGIN));
+            for (OrderEvent event = reader.next(); event != null; event = reader.next()) {
+                recent.put(event.key(), Boolean.TRUE);
+            }
+        }
+        rpc.onConnected(this::subscribe);
+        rpc.onDisconnected(this::unsubscribe);
+    }
+
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    /**
+     * The journal local consumers read from.
+     *
+     * @throws IllegalStateException if change data capture is not enabled.
+     */
+    public OrderEventJournal getJournal() {
+        if (journal == null) {
+            throw new IllegalStateException("Order change data capture is not enabled.");
+        }
+        return journal;
+    }
+
+    private synchronized void subscribe(CordaRPCOps proxy) {
+        unsubscribe();
+        Instant last = journal.getLastTime();
+        // Subscribe before catching up, so that nothing falls between the two.
+        subscription = proxy.vaultTrackByWithPagingSpec(OrderState.class,
+                new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.ALL), new PageSpecification(DEFAULT_PAGE_NUM, 1))
+                .getUpdates().subscribe(update -> {
+                    update.getConsumed().forEach(state -> record(OrderEvent.Kind.CONSUMED, state, null));
+                    update.getProduced().forEach(state -> record(OrderEvent.Kind.PRODUCED, state, null));
+                }, error -> logger.warn("Order change data capture stopped receiving vault updates", error));
+        catchUp.execute(() -> {
+            try {
+                catchUp(proxy, last == null ? null : last.minus(CATCH_UP_MARGIN));
+            } catch (Exception e) {
+                logger.warn("Order change data capture could not catch up; events since {} may be missing", last, e);
+            }
+        });
+    }
+
+    private synchronized void unsubscribe() {
+        if (subscription != null) {
+            subscription.unsubscribe();
+            subscription = null;
+        }
+    }
+
+    private void catchUp(CordaRPCOps proxy, Instant since) {
+        QueryCriteria.TimeCondition recorded = since == null ? null
+                : new QueryCriteria.TimeCondition(QueryCriteria.TimeInstantType.RECORDED, Builder.greaterThanOrEqual(since));
+        catchUp(proxy, new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.ALL, null, null, null, null, recorded),
+                Sort.VaultStateAttribute.RECORDED_TIME, OrderEvent.Kind.PRODUCED);
+        QueryCriteria.TimeCondition consumed = since == null ? null
+                : new QueryCriteria.TimeCondition(QueryCriteria.TimeInstantType.CONSUMED, Builder.greaterThanOrEqual(since));
+        catchUp(proxy, new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.CONSUMED, null, null, null, null, consumed),
+                Sort.VaultStateAttribute.CONSUMED_TIME, OrderEvent.Kind.CONSUMED);
+    }
+
+    private void catchUp(CordaRPCOps proxy, QueryCriteria criteria, Sort.VaultStateAttribute time, OrderEvent.Kind kind) {
+        Sort sort = new Sort(Collections.singletonList(new Sort.SortColumn(new SortAttribute.Standard(time), Sort.Direction.ASC)));
+        int pageNumber = DEFAULT_PAGE_NUM;
+        long caughtUp = 0;
+        Vault.Page<OrderState> page;
+        do {
+            page = proxy.vaultQueryBy(criteria, new PageSpecification(pageNumber, CATCH_UP_PAGE_SIZE), sort, OrderState.class);
+            List<StateAndRef<OrderState>> states = page.getStates();
+            for (int i = 0; i < states.size(); i++) {
+                Vault.StateMetadata metadata = page.getStatesMetadata().get(i);
+                Instant vaultTime = kind == OrderEvent.Kind.PRODUCED ? metadata.getRecordedTime() : metadata.getConsumedTime();
+                if (record(kind, states.get(i), vaultTime)) {
+                    caughtUp++;
+                }
+            }
+            pageNumber++;
+        } while ((long) (pageNumber - 1) * CATCH_UP_PAGE_SIZE < page.getTotalStatesAvailable());
+        if (caughtUp > 0) {
+            logger.info("Order change data capture caught up on {} {} event(s)", caughtUp, kind);
+        }
+    }
+
+    /**
+     * Journals an event unless it already is; returns whether it was new.
+     */
+    private synchronized boolean record(OrderEvent.Kind kind, StateAndRef<OrderState> state, Instant vaultTime) {
+        if (recent.put(OrderEvent.key(kind, state), Boolean.TRUE) != null) {
+            return false;
+        }
+        journal.append(kind, state, vaultTime);
+        return true;
+    }
+
+    /**
+     * Writes the journal's mapped pages to disk; between flushes they are in the OS page cache and survive a crash of
+     * the server but not of the machine.
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void flush() {
+        if (journal != null) {
+            journal.force();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${" + CONSTANTS.CDC_RETENTION_INTERVAL_MS + ":3600000}")
+    public void applyRetention() {
+        if (journal != null && !retention.isZero()) {
+            journal.deleteSegmentsBefore(Instant.now().minus(retention));
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        catchUp.shutdownNow();
+        unsubscribe();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.gmedchain.server;
+
+import com.gmedchain.common.Order;
+import com.gmedchain.state.OrderState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.identity.Party;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One change of an order as recorded by the [OrderEventJournal]: a version of an [OrderState] produced into or
+ * consumed from the vault.
+ *
+ * The binary form is fixed-layout numbers followed by length-prefixed UTF-8 strings, about 200 bytes for a typical
+ * order, against several kilobytes for the serialised state and its transaction.
+ */
+public class OrderEvent {
+    public enum Kind { PRODUCED, CONSUMED }
+
+    private static final int NULL_STRING = 0xFFFF;
+
+    private final long sequence;
+    private final Instant time;
+    private final Kind kind;
+    private final Instant vaultTime;
+    private final UUID linearId;
+    private final SecureHash txId;
+    private final int outputIndex;
+    private final int status;
+    private final String buyer;
+    private final String seller;
+    private final String shipper;
+    private final String owner;
+    private final String productSku;
+    private final String productName;
+    private final float productPrice;
+    private final int qty;
+    private final float shippingCost;
+    private final String buyerAddress;
+    private final String sellerAddress;
+
+    private OrderEvent(long sequence, Instant time, Kind kind, Instant vaultTime, UUID linearId, SecureHash txId,
+                       int outputIndex, int status, String buyer, String seller, String shipper, String owner,
+                       String productSku, String productName, float productPrice, int qty, float shippingCost,
+                       String buyerAddress, String sellerAddress) {
+        this.sequence = sequence;
+        this.time = time;
+        this.kind = kind;
+        this.vaultTime = vaultTime;
+        this.linearId = linearId;
+        this.txId = txId;
+        this.outputIndex = outputIndex;
+        this.status = status;
+        this.buyer = buyer;
+        this.seller = seller;
+        this.shipper = shipper;
+        this.owner = owner;
+        this.productSku = productSku;
+        this.productName = productName;
+        this.productPrice = productPrice;
+        this.qty = qty;
+        this.shippingCost = shippingCost;
+        this.buyerAddress = buyerAddress;
+        this.sellerAddress = sellerAddress;
+    }
+
+    /** The position of the event in the journal. */
+    public long getSequence() { return sequence; }
+    /** When the journal recorded the event; never decreases along the journal. */
+    public Instant getTime() { return time; }
+    public Kind getKind() { return kind; }
+    /** The vault's recorded or consumed time, when known (events caught up after a reconnection), otherwise null. */
+    public Instant getVaultTime() { return vaultTime; }
+    public UUID getLinearId() { return linearId; }
+    public SecureHash getTxId() { return txId; }
+    public int getOutputIndex() { return outputIndex; }
+    public int getStatus() { return status; }
+    public String getBuyer() { return buyer; }
+    public String getSeller() { return seller; }
+    public String getShipper() { return shipper; }
+    public String getOwner() { return owner; }
+    public String getProductSku() { return productSku; }
+    public String getProductName() { return productName; }
+    public float getProductPrice() { return productPrice; }
+    public int getQty() { return qty; }
+    public float getShippingCost() { return shippingCost; }
+    public String getBuyerAddress() { return buyerAddress; }
+    public String getSellerAddress() { return sellerAddress; }
+
+    /**
+     * Writes the binary form of an event at the position of `out`.
+     *
+     * @throws BufferOverflowException if `out` is too small; the caller retries with a larger buffer.
+     */
+    static void encode(ByteBuffer out, long time, Kind kind, StateAndRef<OrderState> stateAndRef, Instant vaultTime) {
+        OrderState state = stateAndRef.getState().getData();
+        Order order = state.getOrder();
+        UUID linearId = state.getLinearId().getId();
+        out.putLong(time);
+        out.put((byte) kind.ordinal());
+        out.putLong(vaultTime == null ? Long.MIN_VALUE : vaultTime.toEpochMilli());
+        out.putLong(linearId.getMostSignificantBits());
+        out.putLong(linearId.getLeastSignificantBits());
+        out.put(stateAndRef.getRef().getTxhash().getBytes());
+        out.putInt(stateAndRef.getRef().getIndex());
+        out.putInt(order.getStatus());
+        out.putFloat(order.getProductPrice());
+        out.putInt(order.getQty());
+        out.putFloat(order.getShippingCost());
+        putString(out, name(state.getBuyer()));
+        putString(out, name(state.getSeller()));
+        putString(out, name(state.getShipper()));
+        putString(out, name(state.getOwner()));
+        putString(out, order.getProductSku());
+        putString(out, order.getProductName());
+        putString(out, order.getBuyerAddress());
+        putString(out, order.getSellerAddress());
+    }
+
+    /**
+     * Reads the event whose binary form starts at the position of `in`.
+     */
+    static OrderEvent decode(long sequence, ByteBuffer in) {
+        long time = in.getLong();
+        Kind kind = Kind.values()[in.get()];
+        long vaultTime = in.getLong();
+        UUID linearId = new UUID(in.getLong(), in.getLong());
+        byte[] txHash = new byte[32];
+        in.get(txHash);
+        int outputIndex = in.getInt();
+        int status = in.getInt();
+        float productPrice = in.getFloat();
+        int qty = in.getInt();
+        float shippingCost = in.getFloat();
+        return new OrderEvent(sequence, Instant.ofEpochMilli(time), kind,
+                vaultTime == Long.MIN_VALUE ? null : Instant.ofEpochMilli(vaultTime), linearId,
+                new SecureHash.SHA256(txHash), outputIndex, status,
+                getString(in), getString(in), getString(in), getString(in), getString(in), getString(in),
+                productPrice, qty, shippingCost, getString(in), getString(in));
+    }
+
+    /** The journal time of the event whose binary form starts at `offset`, without decoding the rest. */
+    static long timeAt(ByteBuffer in, int offset) {
+        return in.getLong(offset);
+    }
+
+    private static String name(Party party) {
+        return party == null ? null : party.getName().toString();
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putShort((short) NULL_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_STRING) {
+            throw new IllegalArgumentException("Order field too long for the journal: " + bytes.length + " bytes");
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** The key under which the sink de-duplicates events. */
+    String key() {
+        return kind.name().charAt(0) + ":" + txId + ":" + outputIndex;
+    }
+
+    static String key(Kind kind, StateAndRef<?> stateAndRef) {
+        return kind.name().charAt(0) + ":" + stateAndRef.getRef().getTxhash() + ":" + stateAndRef.getRef().getIndex();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OrderEvent(sequence=%d, time=%s, kind=%s, linearId=%s, txId=%s, outputIndex=%d, status=%d)",
+                sequence, time, kind, linearId, txId, outputIndex, status);
+    }
+}
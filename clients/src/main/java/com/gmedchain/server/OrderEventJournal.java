@@ -0,0 +1,466 @@
+package com.gmedchain.server;
+
+import com.gmedchain.state.OrderState;
+import net.corda.core.contracts.StateAndRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Segmented, memory-mapped, append-only journal of [OrderEvent]s, with readers that seek by sequence or time and tail
+ * the journal as it grows.
+ *
+ * Each segment is a file of fixed size, named after the sequence of its first event, holding records of
+ * `[payload length][CRC-32 of payload][payload]`; the length is written last, so a record is visible only once
+ * complete. A sidecar `.index` file maps every [INDEX_INTERVAL]th sequence to its time and position, so a seek reads
+ * at most that many records. On open, only the last segment is scanned, and a record torn by a crash ends it.
+ *
+ * One writer appends; any number of readers on other threads read the mapped files directly. Old segments are removed
+ * whole by [deleteSegmentsBefore].
+ */
+public class OrderEventJournal implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(OrderEventJournal.class);
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String INDEX_SUFFIX = ".index";
+    private static final int HEADER_BYTES = 8;
+    private static final int INDEX_INTERVAL = 64;
+    /** Sequence + 1 (0 marks an unused entry), time, position. */
+    private static final int INDEX_ENTRY_BYTES = 20;
+    /** No record is shorter than its header plus the fixed part of an event. */
+    private static final int MIN_RECORD_BYTES = HEADER_BYTES + 80;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+    /** The sequence of the next event; everything below it is readable. */
+    private volatile long nextSequence;
+    private long lastTime;
+
+    public OrderEventJournal(Path directory, int segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        List<Long> bases = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                bases.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        bases.sort(null);
+        for (int i = 0; i < bases.size(); i++) {
+            Segment segment = new Segment(bases.get(i));
+            if (i < bases.size() - 1) {
+                segment.loadIndex(bases.get(i + 1));
+            } else {
+                segment.recover();
+            }
+            segments.add(segment);
+        }
+        if (segments.isEmpty()) {
+            segments.add(new Segment(0));
+        }
+        Segment last = segments.get(segments.size() - 1);
+        nextSequence = last.endSequence;
+        lastTime = last.lastTime;
+        logger.info("Opened order event journal {} with {} segment(s), next sequence {}", directory, segments.size(), nextSequence);
+    }
+
+    /** The sequence the next appended event will have. */
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    /** The journal time of the last event, or null if the journal is empty. */
+    public Instant getLastTime() {
+        return nextSequence == 0 ? null : Instant.ofEpochMilli(lastTime);
+    }
+
+    /**
+     * Appends an event and returns its sequence. The journal time is now, or the previous event's time if the clock
+     * went back, so times never decrease along the journal.
+     */
+    public synchronized long append(OrderEvent.Kind kind, StateAndRef<OrderState> state, Instant vaultTime) {
+        long time = Math.max(System.currentTimeMillis(), lastTime);
+        while (true) {
+            try {
+                scratch.clear();
+                OrderEvent.encode(scratch, time, kind, state, vaultTime);
+                break;
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+        scratch.flip();
+        int length = scratch.remaining();
+        if (HEADER_BYTES + length + 4 > segmentBytes) {
+            throw new IllegalArgumentException("Order event of " + length + " bytes does not fit a journal segment");
+        }
+        Segment segment = segments.get(segments.size() - 1);
+        if (segment.end + HEADER_BYTES + length + 4 > segmentBytes) {
+            segment.data.force();
+            segment.index.force();
+            try {
+                segment = new Segment(nextSequence);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open a new order event journal segment in " + directory, e);
+            }
+            segments.add(segment);
+        }
+        crc.reset();
+        crc.update(scratch.array(), 0, length);
+        int position = segment.end;
+        ByteBuffer data = segment.data.duplicate();
+        data.position(position + HEADER_BYTES);
+        data.put(scratch);
+        segment.data.putInt(position + 4, (int) crc.getValue());
+        segment.data.putInt(position, length);
+
+        long sequence = nextSequence;
+        if ((sequence - segment.base) % INDEX_INTERVAL == 0) {
+            segment.addIndexEntry(sequence, time, position);
+        }
+        segment.end = position + HEADER_BYTES + length;
+        segment.lastTime = time;
+        lastTime = time;
+        nextSequence = sequence + 1;
+        notifyAll();
+        return sequence;
+    }
+
+    /**
+     * Deletes the oldest sealed segments whose events were all recorded before `time`, and returns how many. The open
+     * segment is always kept. A reader still positioned in a deleted segment fails on its next read.
+     */
+    public synchronized int deleteSegmentsBefore(Instant time) {
+        long millis = time.toEpochMilli();
+        int deleted = 0;
+        // Times never decrease, so a segment is wholly older than the first event of the one after it.
+        while (segments.size() > 1 && segments.get(1).firstTime() < millis) {
+            Segment oldest = segments.remove(0);
+            deleted++;
+            try {
+                Files.deleteIfExists(oldest.dataFile);
+                Files.deleteIfExists(oldest.indexFile);
+            } catch (IOException e) {
+                logger.warn("Could not delete order event journal segment {}", oldest.dataFile, e);
+            }
+        }
+        if (deleted > 0) {
+            logger.info("Deleted {} order event journal segment(s) before {}, oldest sequence now {}", deleted, time,
+                    segments.get(0).base);
+        }
+        return deleted;
+    }
+
+    /** The sequence of the oldest event still in the journal. */
+    public long getFirstSequence() {
+        return segments.get(0).base;
+    }
+
+    /**
+     * Flushes the mapped pages of the open segment to disk.
+     */
+    public synchronized void force() {
+        Segment segment = segments.get(segments.size() - 1);
+        segment.data.force();
+        segment.index.force();
+    }
+
+    /**
+     * A reader positioned at `sequence`; [getFirstSequence] reads from the oldest event, [getNextSequence] tails new
+     * events only.
+     */
+    public Reader readerAt(long sequence) {
+        if (sequence < segments.get(0).base || sequence > nextSequence) {
+            throw new IllegalArgumentException("Sequence " + sequence + " is not in the journal (" + segments.get(0).base
+                    + " to " + nextSequence + ").");
+        }
+        Reader reader = new Reader();
+        reader.seek(sequence);
+        return reader;
+    }
+
+    /**
+     * A reader positioned at the first event recorded at or after `time`.
+     */
+    public Reader readerAt(Instant time) {
+        long millis = time.toEpochMilli();
+        Segment segment = segments.get(0);
+        for (Segment candidate : segments) {
+            if (candidate.firstTime() > millis) {
+                break;
+            }
+            segment = candidate;
+        }
+        Reader reader = new Reader();
+        reader.seek(segment.indexedBefore(millis));
+        while (reader.sequence < nextSequence && reader.peekTime() < millis) {
+            reader.skip();
+        }
+        return reader;
+    }
+
+    private void waitForSequence(long sequence, long deadlineNanos) throws InterruptedException {
+        synchronized (this) {
+            long remaining;
+            while (nextSequence <= sequence && (remaining = deadlineNanos - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+    }
+
+    private Segment segmentOf(long sequence) {
+        Segment found = segments.get(0);
+        for (Segment segment : segments) {
+            if (segment.base > sequence) {
+                break;
+            }
+            found = segment;
+        }
+        return found;
+    }
+
+    private void checkRetained(long sequence) {
+        long first = segments.get(0).base;
+        if (sequence < first) {
+            throw new IllegalStateException("Order event " + sequence + " was deleted from the journal, which now starts at "
+                    + first + ".");
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        force();
+    }
+
+    /**
+     * Reads the journal forward from a position. Not thread-safe; give each consumer its own reader.
+     */
+    public class Reader {
+        private long sequence;
+        private Segment segment;
+        private ByteBuffer view;
+        private int position;
+
+        /** The sequence of the next event this reader returns. */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * The next event, or null if the reader has caught up with the journal.
+         */
+        public OrderEvent next() {
+            if (!available()) {
+                return null;
+            }
+            int length = view.getInt(position);
+            view.limit(position + HEADER_BYTES + length).position(position + HEADER_BYTES);
+            OrderEvent event = OrderEvent.decode(sequence, view);
+            view.limit(view.capacity());
+            advance(length);
+            return event;
+        }
+
+        /**
+         * The next event, waiting up to `timeout` for one to be appended; null if none was.
+         */
+        public OrderEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+            OrderEvent event = next();
+            if (event == null) {
+                waitForSequence(sequence, System.nanoTime() + unit.toNanos(timeout));
+                event = next();
+            }
+            return event;
+        }
+
+        /**
+         * @throws IllegalStateException if the events at the reader's position were deleted.
+         */
+        private boolean available() {
+            if (sequence >= nextSequence) {
+                return false;
+            }
+            checkRetained(sequence);
+            Segment current = segmentOf(sequence);
+            if (current != segment) {
+                // The writer rolled over to a new segment at this sequence.
+                open(current, 0);
+            }
+            return true;
+        }
+
+        private long peekTime() {
+            available();
+            return OrderEvent.timeAt(view, position + HEADER_BYTES);
+        }
+
+        private void skip() {
+            available();
+            advance(view.getInt(position));
+        }
+
+        private void advance(int length) {
+            position += HEADER_BYTES + length;
+            sequence++;
+        }
+
+        private void seek(long target) {
+            checkRetained(target);
+            Segment start = segmentOf(target);
+            long[] entry = start.indexedAtOrBefore(target);
+            open(start, (int) entry[2]);
+            sequence = entry[0];
+            while (sequence < target) {
+                skip();
+            }
+        }
+
+        private void open(Segment next, int at) {
+            segment = next;
+            view = next.data.duplicate();
+            position = at;
+        }
+    }
+
+    private class Segment {
+        final long base;
+        final Path dataFile;
+        final Path indexFile;
+        final MappedByteBuffer data;
+        final MappedByteBuffer index;
+        final int indexCapacity;
+        volatile int end;
+        volatile long endSequence;
+        volatile long lastTime;
+        int indexEntries;
+
+        Segment(long base) throws IOException {
+            this.base = base;
+            this.endSequence = base;
+            this.indexCapacity = segmentBytes / (MIN_RECORD_BYTES * INDEX_INTERVAL) + 1;
+            String name = String.format("%020d", base);
+            this.dataFile = directory.resolve(name + SEGMENT_SUFFIX);
+            this.indexFile = directory.resolve(name + INDEX_SUFFIX);
+            this.data = map(dataFile, segmentBytes);
+            this.index = map(indexFile, indexCapacity * INDEX_ENTRY_BYTES);
+        }
+
+        private MappedByteBuffer map(Path file, int size) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        /** A sealed segment: its index is complete and the next segment starts at `nextBase`. */
+        void loadIndex(long nextBase) {
+            while (indexEntries < indexCapacity && index.getLong(indexEntries * INDEX_ENTRY_BYTES) != 0) {
+                indexEntries++;
+            }
+            endSequence = nextBase;
+            if (indexEntries > 0) {
+                lastTime = index.getLong((indexEntries - 1) * INDEX_ENTRY_BYTES + 8);
+            }
+        }
+
+        /** The open segment: scans its records, stopping at the first empty or torn one, and rebuilds the index. */
+        void recover() {
+            CRC32 check = new CRC32();
+            ByteBuffer view = data.duplicate();
+            byte[] payload = new byte[256];
+            int position = 0;
+            long sequence = base;
+            while (position + HEADER_BYTES <= segmentBytes) {
+                int length = data.getInt(position);
+                if (length <= 0 || position + HEADER_BYTES + length > segmentBytes) {
+                    break;
+                }
+                if (payload.length < length) {
+                    payload = new byte[length];
+                }
+                view.position(position + HEADER_BYTES);
+                view.get(payload, 0, length);
+                check.reset();
+                check.update(payload, 0, length);
+                if ((int) check.getValue() != data.getInt(position + 4)) {
+                    logger.warn("Order event journal segment {} ends in a torn record at {}", base, position);
+                    break;
+                }
+                long time = OrderEvent.timeAt(data, position + HEADER_BYTES);
+                if ((sequence - base) % INDEX_INTERVAL == 0) {
+                    addIndexEntry(sequence, time, position);
+                }
+                lastTime = time;
+                position += HEADER_BYTES + length;
+                sequence++;
+            }
+            // Clear what follows, so that the next append starts a clean record.
+            for (int i = position; i < Math.min(segmentBytes, position + HEADER_BYTES); i++) {
+                data.put(i, (byte) 0);
+            }
+            for (int i = indexEntries * INDEX_ENTRY_BYTES; i < indexCapacity * INDEX_ENTRY_BYTES; i += INDEX_ENTRY_BYTES) {
+                index.putLong(i, 0);
+            }
+            end = position;
+            endSequence = sequence;
+        }
+
+        void addIndexEntry(long sequence, long time, int position) {
+            int offset = (int) ((sequence - base) / INDEX_INTERVAL) * INDEX_ENTRY_BYTES;
+            index.putLong(offset + 8, time);
+            index.putInt(offset + 16, position);
+            index.putLong(offset, sequence + 1);
+            indexEntries = (int) ((sequence - base) / INDEX_INTERVAL) + 1;
+        }
+
+        long firstTime() {
+            return indexEntries == 0 ? Long.MAX_VALUE : index.getLong(8);
+        }
+
+        /** The sequence, time and position of the last indexed event at or before `sequence`. */
+        long[] indexedAtOrBefore(long sequence) {
+            int entry = (int) Math.min((sequence - base) / INDEX_INTERVAL, Math.max(0, indexEntries - 1));
+            if (indexEntries == 0) {
+                return new long[]{base, 0, 0};
+            }
+            int offset = entry * INDEX_ENTRY_BYTES;
+            return new long[]{index.getLong(offset) - 1, index.getLong(offset + 8), index.getInt(offset + 16)};
+        }
+
+        /** The sequence of the last indexed event recorded before `time`, or the first event of the segment. */
+        long indexedBefore(long time) {
+            int low = 0;
+            int high = indexEntries - 1;
+            int found = 0;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (index.getLong(middle * INDEX_ENTRY_BYTES + 8) < time) {
+                    found = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return indexEntries == 0 ? base : index.getLong(found * INDEX_ENTRY_BYTES) - 1;
+        }
+    }
+}
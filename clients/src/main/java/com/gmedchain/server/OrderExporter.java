@@ -0,0 +1,162 @@
+package com.gmedchain.server;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.gmedchain.common.Order;
+import com.gmedchain.state.OrderState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * Streams every version of the matching orders, one row per vault state, as NDJSON or CSV.
+ *
+ * The vault is read one page at a time and each page is flushed before the next is fetched, so memory use does not
+ * depend on the size of the vault.
+ */
+@Component
+public class OrderExporter {
+    private static final int PAGE_SIZE = 500;
+    private static final String[] COLUMNS = {
+            "linearId", "externalId", "txId", "outputIndex", "status", "buyer", "seller", "shipper", "owner",
+            "productSku", "productName", "productPrice", "qty", "shippingCost", "buyerAddress", "sellerAddress",
+            "recordedTime", "consumedTime"
+    };
+
+    public enum Format {
+        NDJSON("application/x-ndjson"),
+        CSV("text/csv");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    private final NodeRPCConnection rpc;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public OrderExporter(NodeRPCConnection rpc) {
+        this.rpc = rpc;
+    }
+
+    public void export(QueryCriteria criteria, Format format, OutputStream out) throws IOException {
+        CordaRPCOps proxy = rpc.getProxy();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        JsonGenerator json = null;
+        if (format == Format.CSV) {
+            writeCsvRow(writer, COLUMNS);
+        } else {
+            json = jsonFactory.createGenerator(writer);
+            json.setRootValueSeparator(null);
+            // Rows are flushed to the client once per page, not once per row.
+            json.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        }
+        // Send the first byte before the first vault query.
+        writer.flush();
+
+        int pageNumber = DEFAULT_PAGE_NUM;
+        Vault.Page<OrderState> page;
+        do {
+            page = proxy.vaultQueryBy(criteria, new PageSpecification(pageNumber, PAGE_SIZE),
+                    OrderQueries.BY_RECORDED_TIME, OrderState.class);
+            List<StateAndRef<OrderState>> states = page.getStates();
+            List<Vault.StateMetadata> metadata = page.getStatesMetadata();
+            for (int i = 0; i < states.size(); i++) {
+                String[] row = toRow(states.get(i), metadata.get(i));
+                if (json != null) {
+                    writeJsonRow(json, writer, row);
+                } else {
+                    writeCsvRow(writer, row);
+                }
+            }
+            writer.flush();
+            pageNumber++;
+        } while ((long) (pageNumber - 1) * PAGE_SIZE < page.getTotalStatesAvailable());
+    }
+
+    private static String[] toRow(StateAndRef<OrderState> stateAndRef, Vault.StateMetadata metadata) {
+        OrderState state = stateAndRef.getState().getData();
+        Order order = state.getOrder();
+        return new String[]{
+                state.getLinearId().getId().toString(),
+                state.getLinearId().getExternalId(),
+                stateAndRef.getRef().getTxhash().toString(),
+                Integer.toString(stateAndRef.getRef().getIndex()),
+                Integer.toString(order.getStatus()),
+                state.getBuyer().getName().toString(),
+                state.getSeller().getName().toString(),
+                state.getShipper().getName().toString(),
+                state.getOwner().getName().toString(),
+                order.getProductSku(),
+                order.getProductName(),
+                Float.toString(order.getProductPrice()),
+                Integer.toString(order.getQty()),
+                Float.toString(order.getShippingCost()),
+                order.getBuyerAddress(),
+                order.getSellerAddress(),
+                toString(metadata.getRecordedTime()),
+                toString(metadata.getConsumedTime())
+        };
+    }
+
+    private static String toString(Instant instant) {
+        return instant == null ? null : instant.toString();
+    }
+
+    private static void writeJsonRow(JsonGenerator json, Writer writer, String[] row) throws IOException {
+        json.writeStartObject();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (row[i] != null) {
+                json.writeStringField(COLUMNS[i], row[i]);
+            }
+        }
+        json.writeEndObject();
+        json.flush();
+        writer.write('\n');
+    }
+
+    private static void writeCsvRow(Writer writer, String[] row) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeCsvField(writer, row[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,356 @@
+package com.gmedchain.server;
+
+import com.gmedchain.common.Types;
+import com.gmedchain.schema.OrderSchemaV1;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.ColumnPredicate;
+import net.corda.core.node.services.vault.CriteriaExpression;
+import net.corda.core.node.services.vault.FieldInfo;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.getField;
+
+/**
+ * Compiles a small filter language over orders into vault [QueryCriteria], so filtering happens in the database.
+ *
+ * Example: `status = Shipped AND seller = "O=PartyB,L=New York,C=US" AND price between 10 and 20 AND recorded within 24h`
+ *
+ * - Predicates combine with AND / OR (AND binds tighter) and parentheses.
+ * - Order fields ([FIELDS]) support `=`, `!=`, `<`, `<=`, `>`, `>=`, `between a and b`, `in (a, b)` and `like 'x%'`.
+ * - `recorded` and `consumed` compare against ISO-8601 instants, or `within <n>s|m|h|d` of now.
+ * - Values are bare words or single/double quoted strings. Status accepts a lifecycle name or its number. A quoted
+ *   string is always a value, so `name = "and"` or `sku in ("(", ",")` mean what they say.
+ */
+public class OrderFilter {
+    /** Filter field name to [OrderSchemaV1.PersistentOrder] attribute. */
+    private static final Map<String, String> FIELDS = new HashMap<>();
+    static {
+        FIELDS.put("status", "status");
+        FIELDS.put("buyer", "buyer");
+        FIELDS.put("seller", "seller");
+        FIELDS.put("shipper", "shipper");
+        FIELDS.put("owner", "owner");
+        FIELDS.put("sku", "productSKU");
+        FIELDS.put("name", "productName");
+        FIELDS.put("price", "productPrice");
+        FIELDS.put("qty", "qty");
+        FIELDS.put("shippingcost", "shippingCost");
+        FIELDS.put("buyeraddress", "buyerAddress");
+        FIELDS.put("selleraddress", "sellerAddress");
+        FIELDS.put("linearid", "linearId");
+    }
+
+    private final List<Token> tokens;
+    private final Vault.StateStatus stateStatus;
+    private int position;
+
+    private OrderFilter(List<Token> tokens, Vault.StateStatus stateStatus) {
+        this.tokens = tokens;
+        this.stateStatus = stateStatus;
+    }
+
+    /**
+     * @param filter the filter expression; blank matches every order.
+     * @param stateStatus whether consumed, unconsumed or all versions are searched.
+     * @throws IllegalArgumentException if the filter is malformed.
+     */
+    public static QueryCriteria compile(String filter, Vault.StateStatus stateStatus) {
+        if (filter == null || filter.trim().isEmpty()) {
+            return new QueryCriteria.VaultQueryCriteria(stateStatus);
+        }
+        OrderFilter parser = new OrderFilter(tokenize(filter), stateStatus);
+        QueryCriteria criteria = parser.expression();
+        if (parser.position < parser.tokens.size()) {
+            throw new IllegalArgumentException("Unexpected '" + parser.tokens.get(parser.position).text + "' in filter.");
+        }
+        return criteria;
+    }
+
+    /**
+     * Parses a comma separated sort specification such as `-recorded,price`; a leading `-` sorts descending.
+     */
+    public static Sort sort(String spec) {
+        List<Sort.SortColumn> columns = new ArrayList<>();
+        if (spec != null) {
+            for (String part : spec.split(",")) {
+                String name = part.trim();
+                if (name.isEmpty()) {
+                    continue;
+                }
+                Sort.Direction direction = Sort.Direction.ASC;
+                if (name.startsWith("-")) {
+                    direction = Sort.Direction.DESC;
+                    name = name.substring(1);
+                }
+                columns.add(new Sort.SortColumn(sortAttribute(name.toLowerCase(Locale.ROOT)), direction));
+            }
+        }
+        return columns.isEmpty() ? OrderQueries.BY_RECORDED_TIME : new Sort(columns);
+    }
+
+    private static SortAttribute sortAttribute(String name) {
+        if (name.equals("recorded")) {
+            return new SortAttribute.Standard(Sort.VaultStateAttribute.RECORDED_TIME);
+        }
+        if (name.equals("consumed")) {
+            return new SortAttribute.Standard(Sort.VaultStateAttribute.CONSUMED_TIME);
+        }
+        String attribute = FIELDS.get(name);
+        if (attribute == null) {
+            throw new IllegalArgumentException("Cannot sort by '" + name + "'.");
+        }
+        return new SortAttribute.Custom(OrderSchemaV1.PersistentOrder.class, attribute);
+    }
+
+    private QueryCriteria expression() {
+        QueryCriteria criteria = term();
+        while (accept("or")) {
+            criteria = criteria.or(term());
+        }
+        return criteria;
+    }
+
+    private QueryCriteria term() {
+        QueryCriteria criteria = factor();
+        while (accept("and")) {
+            criteria = criteria.and(factor());
+        }
+        return criteria;
+    }
+
+    private QueryCriteria factor() {
+        if (accept("(")) {
+            QueryCriteria criteria = expression();
+            expect(")");
+            return criteria;
+        }
+        String field = nextSymbol().toLowerCase(Locale.ROOT);
+        if (field.equals("recorded") || field.equals("consumed")) {
+            return timePredicate(field.equals("recorded")
+                    ? QueryCriteria.TimeInstantType.RECORDED : QueryCriteria.TimeInstantType.CONSUMED);
+        }
+        String attribute = FIELDS.get(field);
+        if (attribute == null) {
+            throw new IllegalArgumentException("Unknown filter field '" + field + "'.");
+        }
+        try {
+            return new QueryCriteria.VaultCustomQueryCriteria(fieldPredicate(field, getField(attribute, OrderSchemaV1.PersistentOrder.class)), stateStatus);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private CriteriaExpression fieldPredicate(String field, FieldInfo column) {
+        String operator = nextSymbol().toLowerCase(Locale.ROOT);
+        switch (operator) {
+            case "=": return Builder.equal(column, value(field, next()));
+            case "!=": return Builder.notEqual(column, value(field, next()));
+            case "<": return Builder.lessThan(column, (Comparable) value(field, next()));
+            case "<=": return Builder.lessThanOrEqual(column, (Comparable) value(field, next()));
+            case ">": return Builder.greaterThan(column, (Comparable) value(field, next()));
+            case ">=": return Builder.greaterThanOrEqual(column, (Comparable) value(field, next()));
+            case "like": return Builder.like(column, next());
+            case "between": {
+                Comparable from = value(field, next());
+                expect("and");
+                return Builder.between(column, from, value(field, next()));
+            }
+            case "in": {
+                expect("(");
+                List values = new ArrayList();
+                do {
+                    values.add(value(field, next()));
+                } while (accept(","));
+                expect(")");
+                return Builder.in(column, values);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown operator '" + operator + "' for field '" + field + "'.");
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private QueryCriteria timePredicate(QueryCriteria.TimeInstantType type) {
+        String operator = nextSymbol().toLowerCase(Locale.ROOT);
+        ColumnPredicate predicate;
+        switch (operator) {
+            case "within": predicate = Builder.greaterThanOrEqual(Instant.now().minus(duration(next()))); break;
+            case "<": predicate = Builder.lessThan(instant(next())); break;
+            case "<=": predicate = Builder.lessThanOrEqual(instant(next())); break;
+            case ">": predicate = Builder.greaterThan(instant(next())); break;
+            case ">=": predicate = Builder.greaterThanOrEqual(instant(next())); break;
+            case "between": {
+                Instant from = instant(next());
+                expect("and");
+                predicate = Builder.between(from, instant(next()));
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown operator '" + operator + "' for a time condition.");
+        }
+        return new QueryCriteria.VaultQueryCriteria(stateStatus, null, null, null, null,
+                new QueryCriteria.TimeCondition(type, predicate));
+    }
+
+    /**
+     * Converts a literal to the Java type of the column it is compared with.
+     */
+    private static Comparable<?> value(String field, String literal) {
+        try {
+            switch (field) {
+                case "price":
+                case "shippingcost":
+                    return Float.valueOf(literal);
+                case "qty":
+                    return Integer.valueOf(literal);
+                case "status":
+                    return status(literal);
+                case "linearid":
+                    return UUID.fromString(literal);
+                case "buyer":
+                case "seller":
+                case "shipper":
+                case "owner":
+                    // Parties are stored in the canonical X.500 form.
+                    return CordaX500Name.parse(literal).toString();
+                default:
+                    return literal;
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value '" + literal + "' for field '" + field + "'.");
+        }
+    }
+
+    private static Integer status(String literal) {
+        for (Types.OrderTypes type : Types.OrderTypes.values()) {
+            if (type.name().equalsIgnoreCase(literal)) {
+                return type.ordinal();
+            }
+        }
+        return Integer.valueOf(literal);
+    }
+
+    private static Instant instant(String literal) {
+        try {
+            return Instant.parse(literal);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid instant '" + literal + "'; use ISO-8601 such as 2020-01-31T00:00:00Z.");
+        }
+    }
+
+    private static Duration duration(String literal) {
+        if (literal.length() < 2) {
+            throw new IllegalArgumentException("Invalid duration '" + literal + "'.");
+        }
+        long amount;
+        try {
+            amount = Long.parseLong(literal.substring(0, literal.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid duration '" + literal + "'.");
+        }
+        switch (Character.toLowerCase(literal.charAt(literal.length() - 1))) {
+            case 's': return Duration.ofSeconds(amount);
+            case 'm': return Duration.ofMinutes(amount);
+            case 'h': return Duration.ofHours(amount);
+            case 'd': return Duration.ofDays(amount);
+            default: throw new IllegalArgumentException("Invalid duration '" + literal + "'; use s, m, h or d.");
+        }
+    }
+
+    /** The next token as a value, quoted or not. */
+    private String next() {
+        if (position >= tokens.size()) {
+            throw new IllegalArgumentException("Unexpected end of filter.");
+        }
+        return tokens.get(position++).text;
+    }
+
+    /** The next token as a field name or operator, which cannot be quoted. */
+    private String nextSymbol() {
+        if (position < tokens.size() && tokens.get(position).quoted) {
+            throw new IllegalArgumentException("Unexpected string '" + tokens.get(position).text + "' in filter.");
+        }
+        return next();
+    }
+
+    private boolean accept(String token) {
+        if (position < tokens.size() && !tokens.get(position).quoted && tokens.get(position).text.equalsIgnoreCase(token)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!accept(token)) {
+            throw new IllegalArgumentException("Expected '" + token + "' in filter.");
+        }
+    }
+
+    /**
+     * Splits the filter into words, quoted strings (quotes removed), parentheses, commas and comparison operators.
+     */
+    static List<Token> tokenize(String filter) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < filter.length()) {
+            char c = filter.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"' || c == '\'') {
+                int end = filter.indexOf(c, i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated string in filter.");
+                }
+                tokens.add(new Token(filter.substring(i + 1, end), true));
+                i = end + 1;
+            } else if (c == '(' || c == ')' || c == ',') {
+                tokens.add(new Token(String.valueOf(c), false));
+                i++;
+            } else if (c == '<' || c == '>' || c == '!' || c == '=') {
+                boolean twoChars = i + 1 < filter.length() && filter.charAt(i + 1) == '=' && c != '=';
+                tokens.add(new Token(filter.substring(i, twoChars ? i + 2 : i + 1), false));
+                i += twoChars ? 2 : 1;
+            } else {
+                int start = i;
+                while (i < filter.length() && !Character.isWhitespace(filter.charAt(i))
+                        && "()<>!=,\"'".indexOf(filter.charAt(i)) < 0) {
+                    i++;
+                }
+                tokens.add(new Token(filter.substring(start, i), false));
+            }
+        }
+        return tokens;
+    }
+
+    /** A token of the filter; quoted tokens are only ever values, never keywords, operators or punctuation. */
+    static class Token {
+        final String text;
+        final boolean quoted;
+
+        Token(String text, boolean quoted) {
+            this.text = text;
+            this.quoted = quoted;
+        }
+
+        @Override
+        public String toString() {
+            return quoted ? '"' + text + '"' : text;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.gmedchain.server;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.gmedchain.common.Order;
+import com.gmedchain.common.Types;
+import com.gmedchain.state.OrderState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.node.services.Vault;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Every recorded version of a single order, oldest first.
+ *
+ * This is the compact form used by the order archive: parties are kept as X.500 names and each version only carries
+ * the fields that change between transitions.
+ */
+public class OrderHistory {
+    private final UUID linearId;
+    private final String externalId;
+    private final String buyer;
+    private final String seller;
+    private final String shipper;
+    private final List<Entry> entries;
+
+    @JsonCreator
+    public OrderHistory(
+            @JsonProperty("linearId") UUID linearId,
+            @JsonProperty("externalId") String externalId,
+            @JsonProperty("buyer") String buyer,
+            @JsonProperty("seller") String seller,
+            @JsonProperty("shipper") String shipper,
+            @JsonProperty("entries") List<Entry> entries) {
+        this.linearId = linearId;
+        this.externalId = externalId;
+        this.buyer = buyer;
+        this.seller = seller;
+        this.shipper = shipper;
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Builds the history from the states of a vault page and their metadata, which the vault returns index-aligned.
+     * The caller is expected to have sorted the page by recorded time.
+     */
+    public static OrderHistory fromPage(Vault.Page<OrderState> page) {
+        List<StateAndRef<OrderState>> states = page.getStates();
+        List<Vault.StateMetadata> metadata = page.getStatesMetadata();
+        if (states.isEmpty()) {
+            return null;
+        }
+        OrderState first = states.get(0).getState().getData();
+        List<Entry> entries = new ArrayList<>(states.size());
+        for (int i = 0; i < states.size(); i++) {
+            StateAndRef<OrderState> state = states.get(i);
+            Vault.StateMetadata meta = metadata.get(i);
+            entries.add(new Entry(
+                    state.getRef().getTxhash().toString(),
+                    state.getRef().getIndex(),
+                    state.getState().getData().getOrder(),
+                    state.getState().getData().getOwner().getName().toString(),
+                    meta.getRecordedTime(),
+                    meta.getConsumedTime()));
+        }
+        return new OrderHistory(
+                first.getLinearId().getId(),
+                first.getLinearId().getExternalId(),
+                first.getBuyer().getName().toString(),
+                first.getSeller().getName().toString(),
+                first.getShipper().getName().toString(),
+                entries);
+    }
+
+    public UUID getLinearId() { return linearId; }
+    public String getExternalId() { return externalId; }
+    public String getBuyer() { return buyer; }
+    public String getSeller() { return seller; }
+    public String getShipper() { return shipper; }
+    public List<Entry> getEntries() { return entries; }
+
+    /**
+     * Returns the latest version of the order.
+     */
+    @JsonIgnore
+    public Entry getLatest() {
+        return entries.get(entries.size() - 1);
+    }
+
+    /**
+     * An order is complete once its unconsumed version has reached ConfirmDelivery; its history can no longer change.
+     */
+    @JsonIgnore
+    public boolean isComplete() {
+        Entry latest = getLatest();
+        return latest.getConsumedTime() == null
+                && latest.getOrder().getStatus() == Types.OrderTypes.ConfirmDelivery.ordinal();
+    }
+
+    /**
+     * A single version of the order as recorded by one transaction.
+     */
+    public static class Entry {
+        private final String txId;
+        private final int outputIndex;
+        private final Order order;
+        private final String owner;
+        private final Instant recordedTime;
+        private final Instant consumedTime;
+
+        @JsonCreator
+        public Entry(
+                @JsonProperty("txId") String txId,
+                @JsonProperty("outputIndex") int outputIndex,
+                @JsonProperty("order") Order order,
+                @JsonProperty("owner") String owner,
+                @JsonProperty("recordedTime") Instant recordedTime,
+                @JsonProperty("consumedTime") Instant consumedTime) {
+            this.txId = txId;
+            this.outputIndex = outputIndex;
+            this.order = order;
+            this.owner = owner;
+            this.recordedTime = recordedTime;
+            this.consumedTime = consumedTime;
+        }
+
+        public String getTxId() { return txId; }
+        public int getOutputIndex() { return outputIndex; }
+        public Order getOrder() { return order; }
+        public String getOwner() { return owner; }
+        public Instant getRecordedTime() { return recordedTime; }
+        public Instant getConsumedTime() { return consumedTime; }
+    }
+}
@@ -0,0 +1,57 @@
+package com.gmedchain.server;
+
+import com.gmedchain.state.OrderState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Looks up the history of an order in the node's vault, which keeps every version of every order, archived or not.
+ *
+ * The vault is asked once per lookup for every version of the linearId, sorted by recorded time. Histories of
+ * completed orders can no longer change, so they are kept in a bounded cache.
+ */
+@Component
+public class OrderHistoryService {
+    private final NodeRPCConnection rpc;
+    private final Map<UUID, OrderHistory> completed;
+
+    /**
+     * @param cacheSize The number of completed order histories kept in memory.
+     */
+    public OrderHistoryService(
+            NodeRPCConnection rpc,
+            @Value("${" + CONSTANTS.ORDER_HISTORY_CACHE_SIZE + ":10000}") int cacheSize) {
+        this.rpc = rpc;
+        this.completed = new LinkedHashMap<UUID, OrderHistory>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, OrderHistory> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Returns every recorded version of the order, oldest first, or null if the vault does not know it.
+     */
+    public OrderHistory find(UUID linearId) {
+        synchronized (completed) {
+            OrderHistory cached = completed.get(linearId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        OrderHistory history = OrderHistory.fromPage(rpc.getProxy().vaultQueryBy(
+                OrderQueries.history(linearId), OrderQueries.HISTORY_PAGE,
+                OrderQueries.BY_RECORDED_TIME, OrderState.class));
+        if (history != null && history.isComplete()) {
+            synchronized (completed) {
+                completed.put(linearId, history);
+            }
+        }
+        return history;
+    }
+}
@@ -0,0 +1,121 @@
+package com.gmedchain.server;
+
+import com.gmedchain.state.OrderState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.QueryCriteria;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded de-duplication cache for order creation keyed by a client-supplied idempotency key.
+ *
+ * The key is carried on ledger as the [UniqueIdentifier.externalId] of the new order, so a retry that misses the
+ * cache (eviction or server restart) is still resolved by a vault lookup instead of starting a second flow.
+ */
+@Component
+public class OrderIdempotencyCache {
+    /** The vault stores external ids in a 255 character column. */
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final Map<String, Entry> entries;
+
+    private static class Entry {
+        final CompletableFuture<UniqueIdentifier> shared = new CompletableFuture<>();
+        CompletableFuture<UniqueIdentifier> created;
+        // Callers that have not cancelled yet; guarded by `entries`.
+        int waiting;
+    }
+
+    /**
+     * @param maxEntries The number of idempotency keys remembered in memory before the eldest is evicted.
+     */
+    public OrderIdempotencyCache(@Value("${" + CONSTANTS.ORDER_IDEMPOTENCY_CACHE_SIZE + ":10000}") int maxEntries) {
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the linearId of the order created for the given key, starting the creation at most once.
+     *
+     * Concurrent callers with the same key share the first caller's result. A failed creation is forgotten so the
+     * client can retry it. Cancelling the returned future does not affect other callers; once every caller has
+     * cancelled, the creation future itself is cancelled.
+     */
+    public CompletableFuture<UniqueIdentifier> createOnce(String key, CordaRPCOps proxy, Supplier<CompletableFuture<UniqueIdentifier>> creator) {
+        final Entry entry;
+        boolean owner = false;
+        synchronized (entries) {
+            Entry existing = entries.get(key);
+            if (existing == null) {
+                existing = new Entry();
+                entries.put(key, existing);
+                owner = true;
+            }
+            existing.waiting++;
+            entry = existing;
+        }
+
+        if (owner) {
+            CompletableFuture<UniqueIdentifier> created;
+            try {
+                UniqueIdentifier existing = findByExternalId(key, proxy);
+                created = existing != null ? CompletableFuture.completedFuture(existing) : creator.get();
+            } catch (Exception e) {
+                created = new CompletableFuture<>();
+                created.completeExceptionally(e);
+            }
+            synchronized (entries) {
+                entry.created = created;
+            }
+            created.whenComplete((result, error) -> {
+                if (error == null) {
+                    entry.shared.complete(result);
+                } else {
+                    synchronized (entries) {
+                        entries.remove(key, entry);
+                    }
+                    entry.shared.completeExceptionally(error);
+                }
+            });
+        }
+        CompletableFuture<UniqueIdentifier> caller = entry.shared.thenApply(Function.identity());
+        caller.whenComplete((result, error) -> {
+            if (!caller.isCancelled()) {
+                return;
+            }
+            CompletableFuture<UniqueIdentifier> abandoned;
+            synchronized (entries) {
+                abandoned = --entry.waiting == 0 ? entry.created : null;
+            }
+            if (abandoned != null) {
+                abandoned.cancel(false);
+            }
+        });
+        return caller;
+    }
+
+    /**
+     * Looks up an order previously created with the given idempotency key, or returns null.
+     */
+    public static UniqueIdentifier findByExternalId(String key, CordaRPCOps proxy) {
+        QueryCriteria criteria = new QueryCriteria.LinearStateQueryCriteria(
+                null, null, Collections.singletonList(key), Vault.StateStatus.ALL);
+        List<StateAndRef<OrderState>> states = proxy.vaultQueryByCriteria(criteria, OrderState.class).getStates();
+        return states.isEmpty() ? null : states.get(0).getState().getData().getLinearId();
+    }
+}
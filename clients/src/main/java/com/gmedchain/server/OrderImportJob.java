@@ -0,0 +1,492 @@
+package com.gmedchain.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gmedchain.common.Order;
+import com.gmedchain.contract.OrderContract;
+import com.gmedchain.flow.CreateKeyedOrderFlow;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.CordaRPCOps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A single bulk order import.
+ *
+ * Rows are read one at a time from the uploaded file, validated with the same order rules as [OrderContract] and
+ * turned into [CreateKeyedOrderFlow]s, with at most `concurrency` flows in flight. Each row's order carries the externalId
+ * `import:<importId>:<row>`.
+ *
+ * Progress is checkpointed as a watermark below which every row is done, with the counts of those rows only. Before
+ * a row is submitted, the checkpoint reserves a block of rows ahead as possibly submitted. A resumed import skips the
+ * rows under the watermark and matches every row up to the reservation against the vault by externalId, so no order
+ * is created twice. Rows that were done above the watermark are processed again, and only then counted.
+ */
+public class OrderImportJob implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(OrderImportJob.class);
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final long CHECKPOINT_INTERVAL_MS = 1000;
+    /** Rows reserved as submitted by one forced checkpoint. */
+    private static final long SUBMIT_RESERVATION = 1000;
+
+    public enum Format { CSV, NDJSON }
+
+    public enum Status { RUNNING, STOPPED, COMPLETED, FAILED }
+
+    private enum Outcome { CREATED, SKIPPED, FAILED }
+
+    private final String importId;
+    private final Format format;
+    private final Path dataFile;
+    private final Path progressFile;
+    private final Path errorsFile;
+    private final CordaRPCOps proxy;
+    private final ShipperSelector shippers;
+    private final int concurrency;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, Optional<Party>> parties = new ConcurrentHashMap<>();
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Deque<RowError> recentErrors = new ArrayDeque<>();
+
+    // Guarded by this.
+    private long watermark;
+    // No row above this one has been submitted, by this run or an earlier one.
+    private long reservedUpTo;
+    private final TreeMap<Long, Outcome> doneAboveWatermark = new TreeMap<>();
+    // Outcomes of the rows under the watermark, the only ones checkpointed.
+    private final long[] doneBelowWatermark = new long[Outcome.values().length];
+    private long lastCheckpoint;
+
+    /** Rows up to this number may already have been submitted by a previous run. */
+    private final long previouslySubmitted;
+    private final long rowsDoneBefore;
+    private volatile Status status = Status.RUNNING;
+    private volatile String failure;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile boolean stopRequested;
+
+    OrderImportJob(String importId, Format format, Path directory, CordaRPCOps proxy, ShipperSelector shippers, int concurrency) throws IOException {
+        this.importId = importId;
+        this.format = format;
+        this.dataFile = directory.resolve(importId + "." + format.name().toLowerCase());
+        this.progressFile = directory.resolve(importId + ".progress");
+        this.errorsFile = directory.resolve(importId + ".errors");
+        this.proxy = proxy;
+        this.shippers = shippers;
+        this.concurrency = concurrency;
+
+        Properties progress = readProgress(progressFile);
+        this.watermark = Long.parseLong(progress.getProperty("watermark", "0"));
+        this.previouslySubmitted = Long.parseLong(progress.getProperty("submitted", "0"));
+        this.reservedUpTo = previouslySubmitted;
+        doneBelowWatermark[Outcome.CREATED.ordinal()] = Long.parseLong(progress.getProperty("created", "0"));
+        doneBelowWatermark[Outcome.SKIPPED.ordinal()] = Long.parseLong(progress.getProperty("skipped", "0"));
+        doneBelowWatermark[Outcome.FAILED.ordinal()] = Long.parseLong(progress.getProperty("failed", "0"));
+        this.created.set(doneBelowWatermark[Outcome.CREATED.ordinal()]);
+        this.skipped.set(doneBelowWatermark[Outcome.SKIPPED.ordinal()]);
+        this.failed.set(doneBelowWatermark[Outcome.FAILED.ordinal()]);
+        this.rowsDoneBefore = created.get() + skipped.get() + failed.get();
+    }
+
+    /**
+     * Reads the checkpoint of an earlier run, or an empty one.
+     */
+    static Properties readProgress(Path progressFile) throws IOException {
+        Properties progress = new Properties();
+        if (Files.exists(progressFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(progressFile, StandardCharsets.UTF_8)) {
+                progress.load(reader);
+            }
+        }
+        return progress;
+    }
+
+    public String getImportId() { return importId; }
+    public Path getDataFile() { return dataFile; }
+    public Status getStatus() { return status; }
+
+    /**
+     * Asks the import to stop after the rows in flight; it can be resumed later.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    @Override
+    public void run() {
+        startedAt = System.currentTimeMillis();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        Semaphore inFlight = new Semaphore(concurrency);
+        try (BufferedReader reader = Files.newBufferedReader(dataFile, StandardCharsets.UTF_8)) {
+            Party me = proxy.nodeInfo().getLegalIdentities().get(0);
+            String[] header = format == Format.CSV ? parseCsvLine(reader.readLine()) : null;
+            long rowNumber = 0;
+            String line;
+            while (!stopRequested && (line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                final long row = ++rowNumber;
+                if (row <= currentWatermark()) {
+                    continue;
+                }
+                Map<String, String> fields;
+                try {
+                    fields = format == Format.CSV ? toFields(header, parseCsvLine(line)) : toFields(mapper.readTree(line));
+                } catch (IOException e) {
+                    rowFailed(row, "Malformed row: " + e.getMessage());
+                    continue;
+                }
+                inFlight.acquire();
+                markSubmitted(row);
+                workers.execute(() -> {
+                    try {
+                        importRow(row, fields, me);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            inFlight.acquire(concurrency);
+            status = stopRequested ? Status.STOPPED : Status.COMPLETED;
+        } catch (Exception e) {
+            logger.error("Order import {} failed", importId, e);
+            failure = e.getMessage();
+            status = Status.FAILED;
+        } finally {
+            workers.shutdown();
+            finishedAt = System.currentTimeMillis();
+            checkpoint(true);
+            logger.info("Order import {} {}: {}", importId, status, report().getSummary());
+        }
+    }
+
+    private void importRow(long row, Map<String, String> fields, Party me) {
+        try {
+            String error = null;
+            Order order = null;
+            Party seller = null;
+            Party shipper = null;
+            try {
+                order = new Order(
+                        fields.getOrDefault("sku", ""),
+                        fields.getOrDefault("name", ""),
+                        Float.parseFloat(fields.getOrDefault("price", "0")),
+                        Integer.parseInt(fields.getOrDefault("qty", "0")),
+                        Float.parseFloat(fields.getOrDefault("shippingCost", "0")),
+                        Integer.parseInt(fields.getOrDefault("status", "0")),
+                        fields.getOrDefault("buyerAddress", ""),
+                        fields.getOrDefault("sellerAddress", ""));
+            } catch (NumberFormatException e) {
+                error = "Invalid number: " + e.getMessage();
+            }
+            if (error == null) {
+                List<String> violations = OrderContract.orderViolations(order);
+                if (!violations.isEmpty()) {
+                    error = String.join(" ", violations);
+                } else if (order.getStatus() != 0) {
+                    error = "The order status value must be 0(Ordered) for create order.";
+                }
+            }
+            if (error == null) {
+                seller = resolve(fields.get("partyName"));
+                // Rows without a shipper get the least loaded one.
+                String shipperName = fields.get("shipperName");
+                if (seller != null) {
+                    shipper = shipperName == null || shipperName.isEmpty()
+                            ? shippers.select(Arrays.asList(me, seller)) : resolve(shipperName);
+                }
+                if (seller == null) {
+                    error = "Party named " + fields.get("partyName") + " cannot be found.";
+                } else if (shipper == null) {
+                    error = "Party named " + shipperName + " cannot be found.";
+                } else if (me.equals(seller) || me.equals(shipper)) {
+                    error = "The buyer, the seller and the shipper cannot be the same entity.";
+                }
+            }
+            if (error != null) {
+                rowFailed(row, error);
+                return;
+            }
+
+            String externalId = "import:" + importId + ":" + row;
+            if (row <= previouslySubmitted && OrderIdempotencyCache.findByExternalId(externalId, proxy) != null) {
+                skipped.incrementAndGet();
+                rowDone(row, Outcome.SKIPPED);
+            } else {
+                CompletableFuture<?> creation = AsyncFlowSupport.toCompletableFuture(proxy.startFlowDynamic(
+                        CreateKeyedOrderFlow.Initiator.class, order, seller, shipper, externalId).getReturnValue());
+                shippers.track(shipper, creation);
+                creation.get();
+                created.incrementAndGet();
+                rowDone(row, Outcome.CREATED);
+            }
+        } catch (ExecutionException e) {
+            rowFailed(row, e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+        } catch (Exception e) {
+            rowFailed(row, e.getMessage());
+        }
+    }
+
+    private Party resolve(String name) {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        return parties.computeIfAbsent(name, it -> {
+            try {
+                return Optional.ofNullable(proxy.wellKnownPartyFromX500Name(CordaX500Name.parse(it)));
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    private void rowFailed(long row, String message) {
+        failed.incrementAndGet();
+        RowError error = new RowError(row, message);
+        synchronized (this) {
+            recentErrors.addLast(error);
+            if (recentErrors.size() > MAX_REPORTED_ERRORS) {
+                recentErrors.removeFirst();
+            }
+            try (Writer writer = Files.newBufferedWriter(errorsFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(row + "\t" + String.valueOf(message).replace('\n', ' ') + "\n");
+            } catch (IOException e) {
+                logger.warn("Could not record error for row {} of import {}", row, importId, e);
+            }
+        }
+        rowDone(row, Outcome.FAILED);
+    }
+
+    private synchronized long currentWatermark() {
+        return watermark;
+    }
+
+    /**
+     * Makes sure the checkpoint covers `row` as possibly submitted before its flow starts.
+     *
+     * @throws IOException if the reservation could not be checkpointed; the row must then not be submitted.
+     */
+    private synchronized void markSubmitted(long row) throws IOException {
+        if (row <= reservedUpTo) {
+            return;
+        }
+        reservedUpTo = row + SUBMIT_RESERVATION - 1;
+        if (!checkpoint(true)) {
+            throw new IOException("Could not checkpoint the submission of row " + row);
+        }
+    }
+
+    /**
+     * Advances the watermark over every contiguous completed row and checkpoints periodically.
+     */
+    private synchronized void rowDone(long row, Outcome outcome) {
+        doneAboveWatermark.put(row, outcome);
+        Iterator<Map.Entry<Long, Outcome>> it = doneAboveWatermark.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Outcome> next = it.next();
+            if (next.getKey() > watermark + 1) {
+                break;
+            }
+            watermark = next.getKey();
+            doneBelowWatermark[next.getValue().ordinal()]++;
+            it.remove();
+        }
+        checkpoint(false);
+    }
+
+    /**
+     * Writes the progress file, at most once per interval unless forced; returns whether it was written.
+     */
+    private synchronized boolean checkpoint(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - lastCheckpoint < CHECKPOINT_INTERVAL_MS) {
+            return false;
+        }
+        lastCheckpoint = now;
+        Properties progress = new Properties();
+        progress.setProperty("format", format.name());
+        progress.setProperty("watermark", Long.toString(watermark));
+        progress.setProperty("submitted", Long.toString(reservedUpTo));
+        progress.setProperty("created", Long.toString(doneBelowWatermark[Outcome.CREATED.ordinal()]));
+        progress.setProperty("skipped", Long.toString(doneBelowWatermark[Outcome.SKIPPED.ordinal()]));
+        progress.setProperty("failed", Long.toString(doneBelowWatermark[Outcome.FAILED.ordinal()]));
+        progress.setProperty("status", status.name());
+        Path tmp = progressFile.resolveSibling(progressFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            progress.store(out, "Order import " + importId);
+        } catch (IOException e) {
+            logger.warn("Could not checkpoint order import {}", importId, e);
+            return false;
+        }
+        try {
+            Files.move(tmp, progressFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not checkpoint order import {}", importId, e);
+            return false;
+        }
+    }
+
+    public synchronized Report report() {
+        long end = finishedAt != 0 ? finishedAt : System.currentTimeMillis();
+        long elapsed = startedAt == 0 ? 0 : end - startedAt;
+        long rowsThisRun = created.get() + skipped.get() + failed.get() - rowsDoneBefore;
+        return new Report(importId, status, failure, watermark, created.get(), skipped.get(), failed.get(),
+                rowsThisRun, elapsed, new ArrayList<>(recentErrors));
+    }
+
+    private static Map<String, String> toFields(String[] header, String[] values) throws IOException {
+        if (header == null) {
+            throw new IOException("Missing CSV header");
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.length && i < values.length; i++) {
+            fields.put(header[i].trim(), values[i]);
+        }
+        return fields;
+    }
+
+    private static Map<String, String> toFields(JsonNode node) throws IOException {
+        if (!node.isObject()) {
+            throw new IOException("Expected a JSON object");
+        }
+        Map<String, String> fields = new HashMap<>();
+        node.fields().forEachRemaining(it -> fields.put(it.getKey(), it.getValue().asText()));
+        return fields;
+    }
+
+    /**
+     * Splits one RFC 4180 CSV record. Quoted fields may contain commas and doubled quotes but not line breaks.
+     */
+    static String[] parseCsvLine(String line) {
+        if (line == null) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values.toArray(new String[0]);
+    }
+
+    /**
+     * A row that could not be imported.
+     */
+    public static class RowError {
+        private final long row;
+        private final String message;
+
+        RowError(long row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        public long getRow() { return row; }
+        public String getMessage() { return message; }
+    }
+
+    /**
+     * A snapshot of an import's progress. Counters include earlier runs of a resumed import; the throughput only
+     * covers the current run.
+     */
+    public static class Report {
+        private final String importId;
+        private final Status status;
+        private final String failure;
+        private final long rowsDone;
+        private final long created;
+        private final long skipped;
+        private final long failed;
+        private final long rowsThisRun;
+        private final long elapsedMillis;
+        private final List<RowError> recentErrors;
+
+        Report(String importId, Status status, String failure, long rowsDone, long created, long skipped, long failed,
+               long rowsThisRun, long elapsedMillis, List<RowError> recentErrors) {
+            this.importId = importId;
+            this.status = status;
+            this.failure = failure;
+            this.rowsDone = rowsDone;
+            this.created = created;
+            this.skipped = skipped;
+            this.failed = failed;
+            this.rowsThisRun = rowsThisRun;
+            this.elapsedMillis = elapsedMillis;
+            this.recentErrors = recentErrors;
+        }
+
+        public String getImportId() { return importId; }
+        public Status getStatus() { return status; }
+        public String getFailure() { return failure; }
+        public long getRowsDone() { return rowsDone; }
+        public long getCreated() { return created; }
+        public long getSkipped() { return skipped; }
+        public long getFailed() { return failed; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public List<RowError> getRecentErrors() { return recentErrors; }
+
+        public double getRowsPerSecond() {
+            return elapsedMillis == 0 ? 0 : rowsThisRun * 1000.0 / elapsedMillis;
+        }
+
+        public String getSummary() {
+            return String.format("%d rows done, %d created, %d already present, %d failed, %.1f rows/s",
+                    rowsDone, created, skipped, failed, getRowsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.gmedchain.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Runs bulk order imports in the background and keeps their files under the import directory.
+ *
+ * An upload is first spooled to disk so that an interrupted import can be resumed from the same file.
+ */
+@Component
+public class OrderImporter {
+    private static final Logger logger = LoggerFactory.getLogger(OrderImporter.class);
+    private static final Pattern IMPORT_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final NodeRPCConnection rpc;
+    private final ShipperSelector shippers;
+    private final Path directory;
+    private final int defaultConcurrency;
+    private final Map<String, OrderImportJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService runner = Executors.newCachedThreadPool();
+
+    /**
+     * @param directory Where uploads, progress checkpoints and error logs are kept.
+     * @param defaultConcurrency The number of flows an import keeps in flight unless the request asks otherwise.
+     */
+    public OrderImporter(
+            NodeRPCConnection rpc,
+            ShipperSelector shippers,
+            @Value("${" + CONSTANTS.ORDER_IMPORT_DIR + ":imports}") String directory,
+            @Value("${" + CONSTANTS.ORDER_IMPORT_CONCURRENCY + ":8}") int defaultConcurrency) {
+        this.rpc = rpc;
+        this.shippers = shippers;
+        this.directory = Paths.get(directory);
+        this.defaultConcurrency = defaultConcurrency;
+    }
+
+    /**
+     * Spools the upload to disk and starts importing it.
+     *
+     * @throws IllegalArgumentException if the import id is invalid.
+     * @throws IllegalStateException if an import with this id already exists; resume it instead.
+     */
+    public OrderImportJob start(String importId, OrderImportJob.Format format, InputStream upload, Integer concurrency) throws IOException {
+        checkImportId(importId);
+        Files.createDirectories(directory);
+        if (jobs.containsKey(importId) || Files.exists(directory.resolve(importId + ".progress"))) {
+            throw new IllegalStateException("Import " + importId + " already exists.");
+        }
+        OrderImportJob job = newJob(importId, format, concurrency);
+        Files.copy(upload, job.getDataFile());
+        return submit(job);
+    }
+
+    /**
+     * Resumes an interrupted import from its last checkpoint.
+     */
+    public OrderImportJob resume(String importId, Integer concurrency) throws IOException {
+        checkImportId(importId);
+        OrderImportJob running = jobs.get(importId);
+        if (running != null && running.getStatus() == OrderImportJob.Status.RUNNING) {
+            return running;
+        }
+        Properties progress = OrderImportJob.readProgress(directory.resolve(importId + ".progress"));
+        String format = progress.getProperty("format");
+        if (format == null) {
+            throw new IllegalStateException("Import " + importId + " has no checkpoint to resume from.");
+        }
+        return submit(newJob(importId, OrderImportJob.Format.valueOf(format), concurrency));
+    }
+
+    public OrderImportJob get(String importId) {
+        return jobs.get(importId);
+    }
+
+    private OrderImportJob newJob(String importId, OrderImportJob.Format format, Integer concurrency) throws IOException {
+        int inFlight = concurrency == null ? defaultConcurrency : concurrency;
+        if (inFlight < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1.");
+        }
+        return new OrderImportJob(importId, format, directory, rpc.getProxy(), shippers, inFlight);
+    }
+
+    private OrderImportJob submit(OrderImportJob job) {
+        jobs.put(job.getImportId(), job);
+        runner.execute(job);
+        logger.info("Started order import {}", job.getImportId());
+        return job;
+    }
+
+    private static void checkImportId(String importId) {
+        if (importId == null || !IMPORT_ID.matcher(importId).matches()) {
+            throw new IllegalArgumentException("Import id must be 1 to 64 letters, digits, '-' or '_'.");
+        }
+    }
+
+    /**
+     * Stops running imports after their in-flight rows so they can be resumed after a restart.
+     */
+    @PreDestroy
+    public void close() {
+        jobs.values().forEach(OrderImportJob::stop);
+        runner.shutdown();
+    }
+}
@@ -0,0 +1,95 @@
+package com.gmedchain.server;
+
+import com.gmedchain.common.Order;
+import com.gmedchain.schema.OrderSchemaV1;
+import com.gmedchain.state.OrderState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.getField;
+
+/**
+ * Reads the outcome of an order flow back from the vault, for a flow that ended while the node was unreachable (see
+ * [AsyncFlowSupport.result]). Each lookup is a bounded query on the order itself, and answers null when the flow left
+ * no trace of its outcome.
+ */
+public class OrderOutcomes {
+    /** How far the node's clock may run behind the server's when matching a create by its recorded time. */
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(1);
+    /** Two rows tell a single match from an ambiguous one. */
+    private static final PageSpecification AT_MOST_TWO = new PageSpecification(1, 2);
+
+    private OrderOutcomes() {}
+
+    /**
+     * The order created under `externalId`, see [com.gmedchain.flow.CreateKeyedOrderFlow].
+     */
+    public static Function<CordaRPCOps, UniqueIdentifier> created(String externalId) {
+        QueryCriteria criteria = new QueryCriteria.LinearStateQueryCriteria(
+                null, null, Collections.singletonList(externalId), Vault.StateStatus.ALL);
+        return proxy -> {
+            List<StateAndRef<OrderState>> states = proxy.vaultQueryByWithPagingSpec(OrderState.class, criteria, AT_MOST_TWO).getStates();
+            return states.isEmpty() ? null : states.get(0).getState().getData().getLinearId();
+        };
+    }
+
+    /**
+     * The order a create without a key recorded since `startedAt`: the one still-new order with the same product and
+     * parties. Null if there is none, or more than one, as after two identical creates in a row.
+     */
+    public static Function<CordaRPCOps, UniqueIdentifier> created(Order order, Party buyer, Party seller, Party shipper,
+                                                                  Instant startedAt) {
+        return proxy -> {
+            QueryCriteria criteria;
+            try {
+                criteria = new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.UNCONSUMED, null, null, null, null,
+                        new QueryCriteria.TimeCondition(QueryCriteria.TimeInstantType.RECORDED,
+                                Builder.greaterThanOrEqual(startedAt.minus(CLOCK_SKEW))))
+                        .and(equal("status", order.getStatus()))
+                        .and(equal("productSKU", order.getProductSku()))
+                        .and(equal("productName", order.getProductName()))
+                        .and(equal("buyer", buyer.getName().toString()))
+                        .and(equal("seller", seller.getName().toString()))
+                        .and(equal("shipper", shipper.getName().toString()));
+            } catch (NoSuchFieldException e) {
+                throw new IllegalStateException(e);
+            }
+            List<StateAndRef<OrderState>> states = proxy.vaultQueryByWithPagingSpec(OrderState.class, criteria, AT_MOST_TWO).getStates();
+            return states.size() == 1 ? states.get(0).getState().getData().getLinearId() : null;
+        };
+    }
+
+    /**
+     * The transaction that moved the order to `status`, if that is where it now is.
+     */
+    public static Function<CordaRPCOps, SecureHash> moved(UUID linearId, int status) {
+        QueryCriteria criteria = new QueryCriteria.LinearStateQueryCriteria(
+                null, Collections.singletonList(linearId), null, Vault.StateStatus.UNCONSUMED);
+        return proxy -> {
+            List<StateAndRef<OrderState>> states = proxy.vaultQueryByWithPagingSpec(OrderState.class, criteria, AT_MOST_TWO).getStates();
+            if (states.size() != 1 || states.get(0).getState().getData().getOrder().getStatus() != status) {
+                return null;
+            }
+            return states.get(0).getRef().getTxhash();
+        };
+    }
+
+    private static <T> QueryCriteria equal(String field, T value) throws NoSuchFieldException {
+        return new QueryCriteria.VaultCustomQueryCriteria(
+                Builder.equal(getField(field, OrderSchemaV1.PersistentOrder.class), value));
+    }
+}
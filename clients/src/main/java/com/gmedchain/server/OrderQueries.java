@@ -0,0 +1,128 @@
+package com.gmedchain.server;
+
+import com.gmedchain.common.Types;
+import com.gmedchain.schema.OrderSchemaV1;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.ColumnPredicate;
+import net.corda.core.node.services.vault.FieldInfo;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.UUID;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.getField;
+
+/**
+ * Vault criteria shared by the order endpoints.
+ */
+public class OrderQueries {
+    public static final int COMPLETED_STATUS = Types.OrderTypes.ConfirmDelivery.ordinal();
+
+    /** Oldest version first, so a page of a single linearId reads as its history. */
+    public static final Sort BY_RECORDED_TIME = new Sort(Collections.singletonList(new Sort.SortColumn(
+            new SortAttribute.Standard(Sort.VaultStateAttribute.RECORDED_TIME), Sort.Direction.ASC)));
+
+    /** A single page comfortably holds the six lifecycle versions of an order. */
+    public static final PageSpecification HISTORY_PAGE = new PageSpecification(DEFAULT_PAGE_NUM, 64);
+
+    private OrderQueries() {}
+
+    /**
+     * Unconsumed orders that are still in progress, or that completed after the archive cutoff.
+     */
+    public static QueryCriteria activeOrders(Instant archiveCutoff) throws NoSuchFieldException {
+        FieldInfo status = getField("status", OrderSchemaV1.PersistentOrder.class);
+        QueryCriteria inProgress = new QueryCriteria.VaultCustomQueryCriteria(Builder.notEqual(status, COMPLETED_STATUS));
+        return inProgress.or(recordedSince(archiveCutoff));
+    }
+
+    /**
+     * Unconsumed completed orders whose final transition was recorded before the archive cutoff.
+     */
+    public static QueryCriteria archivableOrders(Instant archiveCutoff) throws NoSuchFieldException {
+        FieldInfo status = getField("status", OrderSchemaV1.PersistentOrder.class);
+        QueryCriteria completed = new QueryCriteria.VaultCustomQueryCriteria(Builder.equal(status, COMPLETED_STATUS));
+        QueryCriteria.TimeCondition recordedBefore = new QueryCriteria.TimeCondition(
+                QueryCriteria.TimeInstantType.RECORDED, Builder.lessThan(archiveCutoff));
+        return completed.and(new QueryCriteria.VaultQueryCriteria(
+                Vault.StateStatus.UNCONSUMED, null, null, null, null, recordedBefore));
+    }
+
+    /**
+     * Every consumed and unconsumed version of one order. Use with [BY_RECORDED_TIME] and [HISTORY_PAGE].
+     */
+    public static QueryCriteria history(UUID linearId) {
+        return new QueryCriteria.LinearStateQueryCriteria(
+                null, Collections.singletonList(linearId), null, Vault.StateStatus.ALL);
+    }
+
+    /**
+     * Every version of every order matching the optional export filters. Null filters are ignored.
+     *
+     * @param status only versions in this lifecycle status.
+     * @param from only versions recorded at or after this instant.
+     * @param to only versions recorded before this instant.
+     * @param party only orders where this X.500 name is the buyer, seller or shipper.
+     */
+    public static QueryCriteria export(Integer status, Instant from, Instant to, String party) throws NoSuchFieldException {
+        // `between` includes both ends, so the half-open window is two conditions.
+        QueryCriteria criteria = new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.ALL);
+        if (from != null) {
+            criteria = criteria.and(recorded(Builder.greaterThanOrEqual(from)));
+        }
+        if (to != null) {
+            criteria = criteria.and(recorded(Builder.lessThan(to)));
+        }
+
+        if (status != null) {
+            FieldInfo statusField = getField("status", OrderSchemaV1.PersistentOrder.class);
+            criteria = criteria.and(new QueryCriteria.VaultCustomQueryCriteria(
+                    Builder.equal(statusField, status), Vault.StateStatus.ALL));
+        }
+        if (party != null) {
+            criteria = criteria.and(involving(party));
+        }
+        return criteria;
+    }
+
+    private static QueryCriteria recorded(ColumnPredicate<Instant> predicate) {
+        return new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.ALL, null, null, null, null,
+                new QueryCriteria.TimeCondition(QueryCriteria.TimeInstantType.RECORDED, predicate));
+    }
+
+    /**
+     * Orders, consumed or not, in which the party is the buyer, seller or shipper.
+     */
+    public static QueryCriteria involving(String party) throws NoSuchFieldException {
+        QueryCriteria criteria = null;
+        for (String column : new String[]{"buyer", "seller", "shipper"}) {
+            QueryCriteria byColumn = new QueryCriteria.VaultCustomQueryCriteria(
+                    Builder.equal(getField(column, OrderSchemaV1.PersistentOrder.class), party), Vault.StateStatus.ALL);
+            criteria = criteria == null ? byColumn : criteria.or(byColumn);
+        }
+        return criteria;
+    }
+
+    /**
+     * Unconsumed orders assigned to the shipper that have not been delivered yet.
+     */
+    public static QueryCriteria openOrdersOf(String shipper) throws NoSuchFieldException {
+        FieldInfo status = getField("status", OrderSchemaV1.PersistentOrder.class);
+        QueryCriteria open = new QueryCriteria.VaultCustomQueryCriteria(
+                Builder.lessThan(status, Types.OrderTypes.Delivered.ordinal()));
+        return open.and(new QueryCriteria.VaultCustomQueryCriteria(
+                Builder.equal(getField("shipper", OrderSchemaV1.PersistentOrder.class), shipper)));
+    }
+
+    private static QueryCriteria recordedSince(Instant instant) {
+        QueryCriteria.TimeCondition recordedAfter = new QueryCriteria.TimeCondition(
+                QueryCriteria.TimeInstantType.RECORDED, Builder.greaterThanOrEqual(instant));
+        return new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.UNCONSUMED, null, null, null, null, recordedAfter);
+    }
+}
@@ -0,0 +1,217 @@
+package com.gmedchain.server;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reporting read path straight to the node's database, bypassing RPC.
+ *
+ * Enabled by `config.reporting.jdbc-url` (e.g. `jdbc:h2:tcp://localhost:10007/node` for a local PartyA node), which
+ * then needs an explicit `config.reporting.jdbc-user`: give it a database user that can only SELECT. H2 connections are
+ * opened with `ACCESS_MODE_DATA=r` as well, since the dev nodes only have the `sa` admin user. Reports run as prepared, parameterised SQL over `order_states` joined to
+ * `vault_states` on a small pool of read-only connections, so they neither deserialise states nor queue with flow
+ * traffic on the node's RPC threads. Rows are streamed to the caller as the driver fetches them.
+ *
+ * The tables are the node's own: the SQL follows [OrderSchemaV1] and the vault schema of the Corda version deployed.
+ */
+@Component
+public class OrderReportStore {
+    private static final Logger logger = LoggerFactory.getLogger(OrderReportStore.class);
+    private static final int FETCH_SIZE = 500;
+    private static final int UNCONSUMED = 0;
+
+    private static final String FROM_ORDERS = " FROM order_states o JOIN vault_states v"
+            + " ON v.transaction_id = o.transaction_id AND v.output_index = o.output_index";
+
+    private static final String STATUS_SUMMARY = "SELECT o.status, COUNT(*), SUM(o.product_price * o.qty), SUM(o.shipping_cost)"
+            + FROM_ORDERS
+            + " WHERE v.state_status = ? AND v.recorded_timestamp >= ? AND v.recorded_timestamp < ?"
+            + " GROUP BY o.status ORDER BY o.status";
+
+    private static final String[] ORDER_COLUMNS = {
+            "linearId", "txId", "outputIndex", "status", "buyer", "seller", "shipper", "owner", "productSku",
+            "productName", "productPrice", "qty", "shippingCost", "buyerAddress", "sellerAddress", "recordedTime",
+            "consumedTime"
+    };
+    private static final String ORDERS = "SELECT o.linear_id, o.transaction_id, o.output_index, o.status, o.buyer,"
+            + " o.seller, o.shipper, o.owner, o.product_sku, o.product_name, o.product_price, o.qty, o.shipping_cost,"
+            + " o.buyer_address, o.seller_address, v.recorded_timestamp, v.consumed_timestamp"
+            + FROM_ORDERS;
+
+    private final HikariDataSource dataSource;
+    private final int queryTimeoutSeconds;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public OrderReportStore(
+            @Value("${" + CONSTANTS.REPORTING_JDBC_URL + ":}") String jdbcUrl,
+            @Value("${" + CONSTANTS.REPORTING_JDBC_USER + ":}") String user,
+            @Value("${" + CONSTANTS.REPORTING_JDBC_PASSWORD + ":}") String password,
+            @Value("${" + CONSTANTS.REPORTING_POOL_SIZE + ":4}") int poolSize,
+            @Value("${" + CONSTANTS.REPORTING_QUERY_TIMEOUT_S + ":60}") int queryTimeoutSeconds) {
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+        if (jdbcUrl.isEmpty()) {
+            dataSource = null;
+            return;
+        }
+        if (user.isEmpty()) {
+            throw new IllegalStateException(CONSTANTS.REPORTING_JDBC_URL + " is set but " + CONSTANTS.REPORTING_JDBC_USER
+                    + " is not; configure a database user that can only SELECT.");
+        }
+        if (jdbcUrl.startsWith("jdbc:h2:") && !jdbcUrl.toUpperCase().contains("ACCESS_MODE_DATA")) {
+            jdbcUrl += ";ACCESS_MODE_DATA=r";
+        }
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("order-reporting");
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(user);
+        config.setPassword(password);
+        config.setReadOnly(true);
+        config.setAutoCommit(false);
+        config.setMaximumPoolSize(poolSize);
+        config.setMinimumIdle(0);
+        // The node may start after the server; connect on first use rather than failing startup.
+        config.setInitializationFailTimeout(-1);
+        dataSource = new HikariDataSource(config);
+        logger.info("Direct reporting reads from {}", jdbcUrl);
+    }
+
+    public boolean isEnabled() {
+        return dataSource != null;
+    }
+
+    /**
+     * Unconsumed orders recorded in `[from, to)` by lifecycle status: the count, the order value and the shipping cost.
+     */
+    public List<Map<String, Object>> statusSummary(Instant from, Instant to) throws SQLException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(STATUS_SUMMARY)) {
+            statement.setQueryTimeout(queryTimeoutSeconds);
+            statement.setInt(1, UNCONSUMED);
+            statement.setTimestamp(2, Timestamp.from(from));
+            statement.setTimestamp(3, Timestamp.from(to));
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("status", result.getInt(1));
+                    row.put("orders", result.getLong(2));
+                    row.put("value", result.getDouble(3));
+                    row.put("shippingCost", result.getDouble(4));
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Streams every version of the orders matching the optional filters to `out` as NDJSON, oldest first. Null
+     * filters are ignored; see [OrderQueries.export] for their meaning.
+     */
+    public void streamOrders(Integer status, Instant from, Instant to, String party, OutputStream out) throws SQLException, IOException {
+        StringBuilder sql = new StringBuilder(ORDERS).append(" WHERE 1 = 1");
+        List<Object> parameters = new ArrayList<>();
+        if (status != null) {
+            sql.append(" AND o.status = ?");
+            parameters.add(status);
+        }
+        if (from != null) {
+            sql.append(" AND v.recorded_timestamp >= ?");
+            parameters.add(Timestamp.from(from));
+        }
+        if (to != null) {
+            sql.append(" AND v.recorded_timestamp < ?");
+            parameters.add(Timestamp.from(to));
+        }
+        if (party != null) {
+            sql.append(" AND (o.buyer = ? OR o.seller = ? OR o.shipper = ?)");
+            parameters.add(party);
+            parameters.add(party);
+            parameters.add(party);
+        }
+        sql.append(" ORDER BY v.recorded_timestamp");
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        JsonGenerator json = jsonFactory.createGenerator(writer);
+        json.setRootValueSeparator(null);
+        json.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql.toString(),
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setQueryTimeout(queryTimeoutSeconds);
+            statement.setFetchSize(FETCH_SIZE);
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            try (ResultSet result = statement.executeQuery()) {
+                int rows = 0;
+                while (result.next()) {
+                    writeOrder(json, result);
+                    json.flush();
+                    writer.write('\n');
+                    // Hand rows to the client as each fetch is consumed, not once per row.
+                    if (++rows % FETCH_SIZE == 0) {
+                        writer.flush();
+                    }
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    private static void writeOrder(JsonGenerator json, ResultSet result) throws SQLException, IOException {
+        json.writeStartObject();
+        json.writeStringField(ORDER_COLUMNS[0], result.getString(1));
+        json.writeStringField(ORDER_COLUMNS[1], result.getString(2));
+        json.writeNumberField(ORDER_COLUMNS[2], result.getInt(3));
+        json.writeNumberField(ORDER_COLUMNS[3], result.getInt(4));
+        for (int column = 5; column <= 10; column++) {
+            json.writeStringField(ORDER_COLUMNS[column - 1], result.getString(column));
+        }
+        json.writeNumberField(ORDER_COLUMNS[10], result.getFloat(11));
+        json.writeNumberField(ORDER_COLUMNS[11], result.getInt(12));
+        json.writeNumberField(ORDER_COLUMNS[12], result.getFloat(13));
+        json.writeStringField(ORDER_COLUMNS[13], result.getString(14));
+        json.writeStringField(ORDER_COLUMNS[14], result.getString(15));
+        writeInstant(json, ORDER_COLUMNS[15], result.getTimestamp(16));
+        writeInstant(json, ORDER_COLUMNS[16], result.getTimestamp(17));
+        json.writeEndObject();
+    }
+
+    private static void writeInstant(JsonGenerator json, String name, Timestamp timestamp) throws IOException {
+        if (timestamp != null) {
+            json.writeStringField(name, timestamp.toInstant().toString());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.gmedchain.server;
+
+import com.gmedchain.common.Order;
+import com.gmedchain.contract.OrderContract;
+import net.corda.core.identity.Party;
+
+import java.util.List;
+
+/**
+ * A create-order request in the structured (JSON or CBOR) API. Field names match the form-encoded parameters of
+ * `create-order`; the CBOR layout is published as `/schema/order.cddl`.
+ */
+public class OrderRequest {
+    private String sku;
+    private String name;
+    private float price;
+    private int qty;
+    private float shippingCost;
+    private int status;
+    private String buyerAddress;
+    private String sellerAddress;
+    private String partyName;
+    private String idempotencyKey;
+
+    public String getSku() { return sku; }
+    public void setSku(String sku) { this.sku = sku; }
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    public float getPrice() { return price; }
+    public void setPrice(float price) { this.price = price; }
+    public int getQty() { return qty; }
+    public void setQty(int qty) { this.qty = qty; }
+    public float getShippingCost() { return shippingCost; }
+    public void setShippingCost(float shippingCost) { this.shippingCost = shippingCost; }
+    public int getStatus() { return status; }
+    public void setStatus(int status) { this.status = status; }
+    public String getBuyerAddress() { return buyerAddress; }
+    public void setBuyerAddress(String buyerAddress) { this.buyerAddress = buyerAddress; }
+    public String getSellerAddress() { return sellerAddress; }
+    public void setSellerAddress(String sellerAddress) { this.sellerAddress = sellerAddress; }
+    public String getPartyName() { return partyName; }
+    public void setPartyName(String partyName) { this.partyName = partyName; }
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+
+    public Order toOrder() {
+        return new Order(sku, name, price, qty, shippingCost, status, buyerAddress, sellerAddress);
+    }
+
+    /**
+     * Why `buyer` cannot create this order with `seller`, or an empty list. The shipper is picked from the other
+     * parties, so only the seller can clash with the buyer.
+     */
+    public List<String> violations(Party buyer, Party seller) {
+        List<String> violations = OrderContract.orderViolations(toOrder());
+        if (status != 0) {
+            violations.add("The order status value must be 0(Ordered) for create order.");
+        }
+        if (seller.equals(buyer)) {
+            violations.add("The buyer, the seller and the shipper cannot be the same entity.");
+        }
+        return violations;
+    }
+}
@@ -0,0 +1,30 @@
+package com.gmedchain.server;
+
+import net.corda.core.contracts.UniqueIdentifier;
+
+/**
+ * The outcome of one create-order request in the structured API: either the new order's ids or an error.
+ */
+public class OrderResult {
+    private final String linearId;
+    private final String externalId;
+    private final String error;
+
+    private OrderResult(String linearId, String externalId, String error) {
+        this.linearId = linearId;
+        this.externalId = externalId;
+        this.error = error;
+    }
+
+    public static OrderResult created(UniqueIdentifier id) {
+        return new OrderResult(id.getId().toString(), id.getExternalId(), null);
+    }
+
+    public static OrderResult failed(String error) {
+        return new OrderResult(null, null, error);
+    }
+
+    public String getLinearId() { return linearId; }
+    public String getExternalId() { return externalId; }
+    public String getError() { return error; }
+}
@@ -0,0 +1,214 @@
+package com.gmedchain.server;
+
+import com.gmedchain.common.Order;
+import com.gmedchain.state.OrderState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.DataFeed;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import rx.Subscription;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * In-memory inverted index over the product name and the buyer and seller addresses of every order.
+ *
+ * Each field maps normalised tokens to the linearIds of the orders containing them, in a sorted map so that prefix
+ * queries are a range scan. These fields never change over an order's lifecycle, so the index only grows: it is
+ * loaded page by page from the vault and then kept current from the vault update feed. After a reconnection to the
+ * node the vault is paged through again to pick up orders recorded while the feed was down.
+ */
+@Component
+public class OrderSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(OrderSearchIndex.class);
+    private static final Pattern NON_TOKEN = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final int PAGE_SIZE = 1000;
+
+    public enum Field { NAME, BUYER_ADDRESS, SELLER_ADDRESS }
+
+    private final NodeRPCConnection rpc;
+    private final Map<Field, ConcurrentSkipListMap<String, Set<UUID>>> postings = new EnumMap<>(Field.class);
+    private final Set<UUID> indexed = ConcurrentHashMap.newKeySet();
+    private volatile boolean ready;
+    private volatile Subscription subscription;
+
+    public OrderSearchIndex(NodeRPCConnection rpc) {
+        this.rpc = rpc;
+        for (Field field : Field.values()) {
+            postings.put(field, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        rpc.onConnected(proxy -> {
+            Thread loader = new Thread(() -> load(proxy), "order-search-index");
+            loader.setDaemon(true);
+            loader.start();
+        });
+    }
+
+    /**
+     * Subscribes to updates first and then pages through the vault, so no order recorded in between is missed.
+     */
+    private synchronized void load(CordaRPCOps proxy) {
+        try {
+            close();
+            QueryCriteria criteria = new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.UNCONSUMED);
+            DataFeed<Vault.Page<OrderState>, Vault.Update<OrderState>> feed =
+                    proxy.vaultTrackByWithPagingSpec(OrderState.class, criteria, new PageSpecification(DEFAULT_PAGE_NUM, 1));
+            subscription = feed.getUpdates().subscribe(
+                    update -> update.getProduced().forEach(this::add),
+                    error -> logger.error("Order search index stopped receiving vault updates", error));
+
+            int pageNumber = DEFAULT_PAGE_NUM;
+            Vault.Page<OrderState> page;
+            do {
+                page = proxy.vaultQueryByWithPagingSpec(OrderState.class, criteria, new PageSpecification(pageNumber, PAGE_SIZE));
+                page.getStates().forEach(this::add);
+                pageNumber++;
+            } while ((long) (pageNumber - 1) * PAGE_SIZE < page.getTotalStatesAvailable());
+            ready = true;
+            logger.info("Order search index loaded {} orders", indexed.size());
+        } catch (Exception e) {
+            logger.error("Could not load the order search index", e);
+        }
+    }
+
+    private void add(StateAndRef<OrderState> stateAndRef) {
+        OrderState state = stateAndRef.getState().getData();
+        UUID linearId = state.getLinearId().getId();
+        if (!indexed.add(linearId)) {
+            return;
+        }
+        Order order = state.getOrder();
+        addField(Field.NAME, order.getProductName(), linearId);
+        addField(Field.BUYER_ADDRESS, order.getBuyerAddress(), linearId);
+        addField(Field.SELLER_ADDRESS, order.getSellerAddress(), linearId);
+    }
+
+    private void addField(Field field, String text, UUID linearId) {
+        ConcurrentSkipListMap<String, Set<UUID>> index = postings.get(field);
+        for (String token : tokenize(text)) {
+            index.computeIfAbsent(token, it -> ConcurrentHashMap.newKeySet()).add(linearId);
+        }
+    }
+
+    /**
+     * Whether the initial load from the vault has finished; before that, results may be incomplete.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns the linearIds of orders matching every token of the query in any of the given fields.
+     *
+     * @param query free text; a token ending in `*`, and the last token when `prefix` is set, match as prefixes.
+     * @param limit the maximum number of linearIds returned.
+     */
+    public List<UUID> search(String query, Collection<Field> fields, boolean prefix, int limit) {
+        List<String> raw = new ArrayList<>();
+        for (String part : query.trim().split("\\s+")) {
+            if (!part.isEmpty()) {
+                raw.add(part);
+            }
+        }
+        List<Set<UUID>> matches = new ArrayList<>();
+        for (int i = 0; i < raw.size(); i++) {
+            boolean isPrefix = raw.get(i).endsWith("*") || (prefix && i == raw.size() - 1);
+            for (String token : tokenize(raw.get(i))) {
+                matches.add(lookup(token, fields, isPrefix));
+            }
+        }
+        if (matches.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // Intersect starting from the rarest token.
+        matches.sort(Comparator.comparingInt(Set::size));
+        List<UUID> result = new ArrayList<>();
+        for (UUID candidate : matches.get(0)) {
+            boolean all = true;
+            for (int i = 1; i < matches.size() && all; i++) {
+                all = matches.get(i).contains(candidate);
+            }
+            if (all) {
+                result.add(candidate);
+                if (result.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Set<UUID> lookup(String token, Collection<Field> fields, boolean prefix) {
+        if (!prefix && fields.size() == 1) {
+            Set<UUID> exact = postings.get(fields.iterator().next()).get(token);
+            return exact == null ? Collections.emptySet() : exact;
+        }
+        Set<UUID> union = new HashSet<>();
+        for (Field field : fields) {
+            ConcurrentSkipListMap<String, Set<UUID>> index = postings.get(field);
+            if (prefix) {
+                NavigableMap<String, Set<UUID>> range = index.subMap(token, true, token + Character.MAX_VALUE, false);
+                range.values().forEach(union::addAll);
+            } else {
+                Set<UUID> exact = index.get(token);
+                if (exact != null) {
+                    union.addAll(exact);
+                }
+            }
+        }
+        return union;
+    }
+
+    /**
+     * Lower-cases, strips accents and splits on anything that is not a letter or digit.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_TOKEN.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (subscription != null) {
+            subscription.unsubscribe();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.gmedchain.server;
+
+import com.gmedchain.utils.FlowUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Runs the transitions of one order one after another, so that two requests for the same linearId never race to
+ * consume the same state.
+ *
+ * Work for a linearId is chained behind the previous work for it without blocking a thread, and starts only once the
+ * previous flow has really ended on the node: a request that timed out gives up its result, not its place. A
+ * transition that still
+ * loses a notary conflict, to a transition started elsewhere in the network, is started again after a short jittered
+ * backoff, at most `config.order.conflict-retries` times; the flow then reads the refreshed input from the vault.
+ */
+@Component
+public class OrderSequencer {
+    private static final Logger logger = LoggerFactory.getLogger(OrderSequencer.class);
+    private static final long BASE_BACKOFF_MILLIS = 200;
+
+    private final Map<UUID, CompletableFuture<?>> tails = new ConcurrentHashMap<>();
+    private final int maxRetries;
+    private final ScheduledExecutorService retries = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-conflict-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public OrderSequencer(@Value("${" + CONSTANTS.ORDER_CONFLICT_RETRIES + ":3}") int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Starts `attempt` once all earlier work for `linearId` has ended, and retries it on notary conflicts.
+     */
+    public <T> CompletableFuture<T> submit(UUID linearId, Supplier<AsyncFlowSupport.FlowResult<T>> attempt) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // Completes once the last attempt's flow has ended, or once no attempt will be started.
+        CompletableFuture<Void> ended = new CompletableFuture<>();
+        CompletableFuture<?> previous = tails.put(linearId, ended);
+        Runnable start = () -> run(linearId, attempt, 0, result, ended);
+        if (previous == null) {
+            start.run();
+        } else {
+            previous.whenComplete((value, error) -> start.run());
+        }
+        // Drop the chain once it is idle, unless newer work has been queued behind this one.
+        ended.whenComplete((value, error) -> tails.remove(linearId, ended));
+        return result;
+    }
+
+    private <T> void run(UUID linearId, Supplier<AsyncFlowSupport.FlowResult<T>> attempt, int retry,
+                         CompletableFuture<T> result, CompletableFuture<Void> ended) {
+        // The request may have been cancelled, e.g. timed out, before its turn or while the retry waited.
+        if (result.isDone()) {
+            ended.complete(null);
+            return;
+        }
+        AsyncFlowSupport.FlowResult<T> pending;
+        try {
+            pending = attempt.get();
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+            ended.complete(null);
+            return;
+        }
+        AtomicBoolean retrying = new AtomicBoolean();
+        pending.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else if (!pending.isCancelled() && FlowUtils.isNotaryConflict(error instanceof CompletionException
+                    && error.getCause() != null ? error.getCause() : error) && retry < maxRetries) {
+                retrying.set(true);
+                long backoff = BASE_BACKOFF_MILLIS * (1L << retry) + ThreadLocalRandom.current().nextLong(BASE_BACKOFF_MILLIS);
+                logger.info("Order {} lost a notary conflict, retrying in {} ms ({}/{})", linearId, backoff, retry + 1, maxRetries);
+                retries.schedule(() -> run(linearId, attempt, retry + 1, result, ended), backoff, TimeUnit.MILLISECONDS);
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+        // The flow's result, or its cancellation, is always known by the time it has ended.
+        pending.ended().whenComplete((value, error) -> {
+            if (!retrying.get()) {
+                ended.complete(null);
+            }
+        });
+        // A cancelled request (e.g. timed out) cancels the attempt in flight; the chain still waits for its end.
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                pending.cancel(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        retries.shutdownNow();
+    }
+}
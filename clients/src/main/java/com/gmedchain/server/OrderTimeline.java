@@ -0,0 +1,69 @@
+package com.gmedchain.server;
+
+import com.gmedchain.common.Types;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The lifecycle of a single order as support staff read it: one event per transition, saying which party moved the
+ * order into which step, in which transaction and when.
+ */
+public class OrderTimeline {
+    private final UUID linearId;
+    private final String externalId;
+    private final boolean complete;
+    private final List<Event> events;
+
+    private OrderTimeline(UUID linearId, String externalId, boolean complete, List<Event> events) {
+        this.linearId = linearId;
+        this.externalId = externalId;
+        this.complete = complete;
+        this.events = events;
+    }
+
+    public static OrderTimeline of(OrderHistory history) {
+        Types.OrderTypes[] steps = Types.OrderTypes.values();
+        List<Event> events = new ArrayList<>(history.getEntries().size());
+        for (OrderHistory.Entry entry : history.getEntries()) {
+            int status = entry.getOrder().getStatus();
+            String step = status >= 0 && status < steps.length ? steps[status].name() : Integer.toString(status);
+            events.add(new Event(step, entry.getOwner(), entry.getTxId(), entry.getRecordedTime(), entry.getConsumedTime()));
+        }
+        return new OrderTimeline(history.getLinearId(), history.getExternalId(), history.isComplete(), events);
+    }
+
+    public UUID getLinearId() { return linearId; }
+    public String getExternalId() { return externalId; }
+    public boolean isComplete() { return complete; }
+    public List<Event> getEvents() { return events; }
+
+    public static class Event {
+        private final String step;
+        private final String movedBy;
+        private final String txId;
+        private final Instant recordedTime;
+        private final Instant consumedTime;
+
+        Event(String step, String movedBy, String txId, Instant recordedTime, Instant consumedTime) {
+            this.step = step;
+            this.movedBy = movedBy;
+            this.txId = txId;
+            this.recordedTime = recordedTime;
+            this.consumedTime = consumedTime;
+        }
+
+        public String getStep() { return step; }
+        /**
+         * The party that moved the order into this step. [com.gmedchain.contract.OrderContract] requires each step's
+         * signature from the party owning it and makes that party the new owner, so this is the owner of the version
+         * the vault returned; a compound transition names the owner of its last step.
+         */
+        public String getMovedBy() { return movedBy; }
+        public String getTxId() { return txId; }
+        public Instant getRecordedTime() { return recordedTime; }
+        public Instant getConsumedTime() { return consumedTime; }
+    }
+}
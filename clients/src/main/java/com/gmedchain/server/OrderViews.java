@@ -0,0 +1,144 @@
+package com.gmedchain.server;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.gmedchain.common.Order;
+import com.gmedchain.state.OrderState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.identity.Party;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compact views of orders for the list endpoints: one flat object per order, holding only the selected fields, with
+ * parties as X.500 name strings.
+ *
+ * The full `StateAndRef` form repeats each party's owning key, the attachment constraint, the notary and encumbrance
+ * on every row. Views are written field by field with the streaming generator instead of through bean reflection,
+ * and the same code serves JSON and CBOR.
+ */
+@JsonSerialize(using = OrderViews.Serializer.class)
+public class OrderViews {
+    public enum Field {
+        LINEAR_ID("linearId"),
+        EXTERNAL_ID("externalId"),
+        TX_ID("txId"),
+        OUTPUT_INDEX("outputIndex"),
+        STATUS("status"),
+        SKU("sku"),
+        NAME("name"),
+        PRICE("price"),
+        QTY("qty"),
+        SHIPPING_COST("shippingCost"),
+        BUYER("buyer"),
+        SELLER("seller"),
+        SHIPPER("shipper"),
+        OWNER("owner"),
+        BUYER_ADDRESS("buyerAddress"),
+        SELLER_ADDRESS("sellerAddress");
+
+        private final String jsonName;
+
+        Field(String jsonName) {
+            this.jsonName = jsonName;
+        }
+
+        public String getJsonName() {
+            return jsonName;
+        }
+    }
+
+    private static final Map<String, Field> BY_NAME = new HashMap<>();
+    private static final List<String> NAMES = new ArrayList<>();
+    static {
+        for (Field field : Field.values()) {
+            BY_NAME.put(field.jsonName.toLowerCase(Locale.ROOT), field);
+            NAMES.add(field.jsonName);
+        }
+    }
+
+    private final List<StateAndRef<OrderState>> states;
+    private final EnumSet<Field> fields;
+
+    public OrderViews(List<StateAndRef<OrderState>> states, EnumSet<Field> fields) {
+        this.states = states;
+        this.fields = fields;
+    }
+
+    /**
+     * Parses a comma-separated `fields` parameter, e.g. `linearId,status,sku`; null or blank selects every field.
+     *
+     * @throws IllegalArgumentException on an unknown field name.
+     */
+    public static EnumSet<Field> fields(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            return EnumSet.allOf(Field.class);
+        }
+        EnumSet<Field> fields = EnumSet.noneOf(Field.class);
+        for (String part : spec.split(",")) {
+            String name = part.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            Field field = BY_NAME.get(name.toLowerCase(Locale.ROOT));
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown field '" + name + "'; expected any of " + String.join(",", NAMES) + ".");
+            }
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    public static class Serializer extends StdSerializer<OrderViews> {
+        public Serializer() {
+            super(OrderViews.class);
+        }
+
+        @Override
+        public void serialize(OrderViews views, JsonGenerator json, SerializerProvider provider) throws IOException {
+            // A page names the same few parties over and over; render each name once.
+            Map<Party, String> names = new HashMap<>();
+            json.writeStartArray();
+            for (StateAndRef<OrderState> stateAndRef : views.states) {
+                OrderState state = stateAndRef.getState().getData();
+                Order order = state.getOrder();
+                json.writeStartObject();
+                for (Field field : views.fields) {
+                    json.writeFieldName(field.jsonName);
+                    switch (field) {
+                        case LINEAR_ID: json.writeString(state.getLinearId().getId().toString()); break;
+                        case EXTERNAL_ID: json.writeString(state.getLinearId().getExternalId()); break;
+                        case TX_ID: json.writeString(stateAndRef.getRef().getTxhash().toString()); break;
+                        case OUTPUT_INDEX: json.writeNumber(stateAndRef.getRef().getIndex()); break;
+                        case STATUS: json.writeNumber(order.getStatus()); break;
+                        case SKU: json.writeString(order.getProductSku()); break;
+                        case NAME: json.writeString(order.getProductName()); break;
+                        case PRICE: json.writeNumber(order.getProductPrice()); break;
+                        case QTY: json.writeNumber(order.getQty()); break;
+                        case SHIPPING_COST: json.writeNumber(order.getShippingCost()); break;
+                        case BUYER: json.writeString(name(names, state.getBuyer())); break;
+                        case SELLER: json.writeString(name(names, state.getSeller())); break;
+                        case SHIPPER: json.writeString(name(names, state.getShipper())); break;
+                        case OWNER: json.writeString(name(names, state.getOwner())); break;
+                        case BUYER_ADDRESS: json.writeString(order.getBuyerAddress()); break;
+                        case SELLER_ADDRESS: json.writeString(order.getSellerAddress()); break;
+                    }
+                }
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+        }
+
+        private static String name(Map<Party, String> names, Party party) {
+            return party == null ? null : names.computeIfAbsent(party, it -> it.getName().toString());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.gmedchain.server;
+
+import net.corda.core.contracts.ContractState;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import rx.Subscription;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * Version counters for the node data behind the read endpoints, bumped by the vault and network map feeds.
+ *
+ * A version of -1 means the feed is not subscribed (yet, or since the node connection dropped) and responses must not
+ * be treated as cacheable. Versions only ever grow, and every (re)subscription bumps them, so a tag handed out
+ * before a disconnection never matches data that changed while the feeds were down. Counters restart with the server,
+ * so tags also carry [getInstanceId], random per server process.
+ */
+@Component
+public class ReadVersionTracker {
+    private static final Logger logger = LoggerFactory.getLogger(ReadVersionTracker.class);
+
+    public enum Source { VAULT, NETWORK_MAP }
+
+    private final NodeRPCConnection rpc;
+    private final String instanceId = Long.toHexString(new SecureRandom().nextLong());
+    private final AtomicLong vaultVersion = new AtomicLong();
+    private final AtomicLong networkMapVersion = new AtomicLong();
+    private volatile boolean vaultLive;
+    private volatile boolean networkMapLive;
+    private volatile Instant vaultModified = Instant.now();
+    private volatile Instant networkMapModified = Instant.now();
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+    public ReadVersionTracker(NodeRPCConnection rpc) {
+        this.rpc = rpc;
+    }
+
+    @PostConstruct
+    public void start() {
+        rpc.onConnected(this::subscribe);
+        rpc.onDisconnected(this::unsubscribe);
+    }
+
+    private synchronized void subscribe(CordaRPCOps proxy) {
+        unsubscribe();
+        // Only the update stream is needed, so ask for the smallest possible snapshot.
+        subscriptions.add(proxy.vaultTrackByWithPagingSpec(ContractState.class,
+                new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.ALL), new PageSpecification(DEFAULT_PAGE_NUM, 1))
+                .getUpdates().subscribe(
+                        update -> bump(Source.VAULT),
+                        error -> invalidate(Source.VAULT, error)));
+        bump(Source.VAULT);
+        vaultLive = true;
+        subscriptions.add(proxy.networkMapFeed().getUpdates().subscribe(
+                change -> bump(Source.NETWORK_MAP),
+                error -> invalidate(Source.NETWORK_MAP, error)));
+        bump(Source.NETWORK_MAP);
+        networkMapLive = true;
+    }
+
+    private synchronized void unsubscribe() {
+        vaultLive = false;
+        networkMapLive = false;
+        subscriptions.forEach(Subscription::unsubscribe);
+        subscriptions.clear();
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Records a change of the data read from `source` that its feed does not report, e.g. a moved archive cutoff.
+     */
+    public void changed(Source source) {
+        bump(source);
+    }
+
+    public long version(Source source) {
+        boolean live = source == Source.VAULT ? vaultLive : networkMapLive;
+        return live ? counter(source).get() : -1;
+    }
+
+    public Instant lastModified(Source source) {
+        return source == Source.VAULT ? vaultModified : networkMapModified;
+    }
+
+    private void bump(Source source) {
+        if (source == Source.VAULT) {
+            vaultModified = Instant.now();
+        } else {
+            networkMapModified = Instant.now();
+        }
+        counter(source).incrementAndGet();
+    }
+
+    private void invalidate(Source source, Throwable error) {
+        logger.warn("Lost the {} feed; read responses are no longer cached", source, error);
+        if (source == Source.VAULT) {
+            vaultLive = false;
+        } else {
+            networkMapLive = false;
+        }
+    }
+
+    private AtomicLong counter(Source source) {
+        return source == Source.VAULT ? vaultVersion : networkMapVersion;
+    }
+
+    @PreDestroy
+    public void close() {
+        unsubscribe();
+    }
+}
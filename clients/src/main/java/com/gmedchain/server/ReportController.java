@@ -0,0 +1,96 @@
+package com.gmedchain.server;
+
+import net.corda.core.identity.CordaX500Name;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+import static com.gmedchain.server.AsyncFlowSupport.setAsyncTimeout;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+/**
+ * Reporting endpoints served from the node's database by [OrderReportStore], without going through RPC.
+ */
+@RestController
+@RequestMapping("/api/gmedchain/reports/")
+public class ReportController {
+    private static final String NDJSON = "application/x-ndjson";
+    private final OrderReportStore reports;
+    private final long exportTimeoutMillis;
+
+    public ReportController(
+            OrderReportStore reports,
+            @Value("${" + CONSTANTS.ORDER_EXPORT_TIMEOUT_MS + ":0}") long exportTimeoutMillis) {
+        this.reports = reports;
+        this.exportTimeoutMillis = exportTimeoutMillis;
+    }
+
+    /**
+     * Unconsumed orders by status, recorded in the optional window `from` (inclusive) to `to` (exclusive).
+     */
+    @GetMapping(value = "/status-summary", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> statusSummary(
+            @RequestParam(value = "from", required = false) String from,
+            @RequestParam(value = "to", required = false) String to) throws SQLException {
+        if (!reports.isEnabled()) {
+            return notEnabled();
+        }
+        try {
+            return ResponseEntity.ok(reports.statusSummary(
+                    from == null ? Instant.EPOCH : Instant.parse(from),
+                    to == null ? Instant.now() : Instant.parse(to)));
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body("Query parameters 'from' and 'to' must be ISO-8601 instants.\n");
+        }
+    }
+
+    /**
+     * Streams every version of every order as NDJSON; takes the filters of /api/gmedchain/orders/export.
+     */
+    @GetMapping(value = "/orders")
+    public ResponseEntity<?> orders(
+            @RequestParam(value = "status", required = false) Integer status,
+            @RequestParam(value = "from", required = false) String from,
+            @RequestParam(value = "to", required = false) String to,
+            @RequestParam(value = "party", required = false) String party,
+            HttpServletRequest request, HttpServletResponse response) {
+        if (!reports.isEnabled()) {
+            return notEnabled();
+        }
+        Instant fromInstant;
+        Instant toInstant;
+        String partyName;
+        try {
+            fromInstant = from == null ? null : Instant.parse(from);
+            toInstant = to == null ? null : Instant.parse(to);
+            partyName = party == null ? null : CordaX500Name.parse(party).toString();
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage() + "\n");
+        }
+        setAsyncTimeout(request, response, exportTimeoutMillis);
+        StreamingResponseBody body = out -> {
+            try {
+                reports.streamOrders(status, fromInstant, toInstant, partyName, out);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Reporting query failed", e);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    private static ResponseEntity<String> notEnabled() {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Direct reporting is not enabled.\n");
+    }
+}
@@ -4,11 +4,13 @@ import org.springframework.boot.Banner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Our Spring Boot application.
  */
 @SpringBootApplication
+@EnableScheduling
 public class Server {
     /**
      * Starts our Spring Boot application.
@@ -0,0 +1,225 @@
+package com.gmedchain.server;
+
+import com.gmedchain.state.OrderState;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.NodeInfo;
+import net.corda.core.node.services.NetworkMapCache;
+import net.corda.core.node.services.vault.PageSpecification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import rx.Subscription;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * Assigns a shipper to each new order by least load.
+ *
+ * Candidates are the nodes in the network map that are either listed in `config.shipper.candidates` or whose X.500
+ * organisational unit is `Shipper`, so a new shipper joining the network takes orders without a redeploy. A
+ * candidate's load is its open orders in this node's vault (refreshed periodically), plus the orders being created
+ * with it and those created since the refresh, weighted by the recent latency of order creation with it. Ties go
+ * round-robin.
+ */
+@Component
+public class ShipperSelector {
+    private static final Logger logger = LoggerFactory.getLogger(ShipperSelector.class);
+    public static final String SHIPPER_UNIT = "Shipper";
+    /** Weight of the newest sample in the latency moving average. */
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private final NodeRPCConnection rpc;
+    private final Set<CordaX500Name> configured = new HashSet<>();
+    private final long latencyScaleMillis;
+    private final Map<CordaX500Name, Load> candidates = new ConcurrentHashMap<>();
+    private final AtomicInteger nextTieBreak = new AtomicInteger();
+    private volatile Subscription subscription;
+
+    public ShipperSelector(
+            NodeRPCConnection rpc,
+            @Value("${" + CONSTANTS.SHIPPER_CANDIDATES + ":O=PartyC,L=Paris,C=FR}") String candidates,
+            @Value("${" + CONSTANTS.SHIPPER_LATENCY_SCALE_MS + ":1000}") long latencyScaleMillis) {
+        this.rpc = rpc;
+        this.latencyScaleMillis = latencyScaleMillis;
+        for (String name : candidates.split(";")) {
+            if (!name.trim().isEmpty()) {
+                configured.add(CordaX500Name.parse(name.trim()));
+            }
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        rpc.onConnected(this::subscribe);
+    }
+
+    private synchronized void subscribe(CordaRPCOps proxy) {
+        close();
+        subscription = proxy.networkMapFeed().getUpdates().subscribe(change -> {
+            if (change instanceof NetworkMapCache.MapChange.Removed) {
+                candidates.remove(change.getNode().getLegalIdentities().get(0).getName());
+            } else {
+                consider(change.getNode());
+            }
+        }, error -> logger.warn("Shipper selection stopped receiving network map updates", error));
+        proxy.networkMapSnapshot().forEach(this::consider);
+        refreshLoad();
+    }
+
+    private void consider(NodeInfo node) {
+        Party party = node.getLegalIdentities().get(0);
+        CordaX500Name name = party.getName();
+        if (configured.contains(name) || SHIPPER_UNIT.equals(name.getOrganisationUnit())) {
+            candidates.computeIfAbsent(name, it -> {
+                logger.info("Shipper candidate {} joined", it);
+                return new Load(party);
+            });
+        }
+    }
+
+    /**
+     * Recounts each candidate's open orders from the vault.
+     */
+    @Scheduled(fixedDelayString = "${" + CONSTANTS.SHIPPER_REFRESH_MS + ":30000}")
+    public void refreshLoad() {
+        if (!rpc.isConnected()) {
+            return;
+        }
+        CordaRPCOps proxy = rpc.getProxy();
+        for (Load load : candidates.values()) {
+            try {
+                // Orders committed during the count may be counted twice until the next refresh, never not at all.
+                long committed = load.committed.get();
+                long open = proxy.vaultQueryByWithPagingSpec(OrderState.class,
+                        OrderQueries.openOrdersOf(load.party.getName().toString()),
+                        new PageSpecification(DEFAULT_PAGE_NUM, 1)).getTotalStatesAvailable();
+                load.openOrders.set(open);
+                load.committed.addAndGet(-committed);
+            } catch (Exception e) {
+                logger.warn("Could not count the open orders of {}", load.party.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Chooses the least loaded shipper other than the given parties. The order counts against it once [track]ed.
+     *
+     * @throws NoShipperAvailableException if no shipper is available.
+     */
+    public Party select(Collection<Party> excluded) {
+        List<Load> eligible = new ArrayList<>();
+        for (Load load : candidates.values()) {
+            if (!excluded.contains(load.party)) {
+                eligible.add(load);
+            }
+        }
+        if (eligible.isEmpty()) {
+            throw new NoShipperAvailableException("No shipper is available in the network.");
+        }
+        eligible.sort((a, b) -> a.party.getName().toString().compareTo(b.party.getName().toString()));
+        int start = Math.floorMod(nextTieBreak.getAndIncrement(), eligible.size());
+        Load best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < eligible.size(); i++) {
+            Load load = eligible.get((start + i) % eligible.size());
+            double score = load.score(latencyScaleMillis);
+            if (score < bestScore) {
+                best = load;
+                bestScore = score;
+            }
+        }
+        return best.party;
+    }
+
+    /**
+     * Counts the order being created by `creation` against `shipper`. Once created, it stays counted until the next
+     * refresh finds it in the vault, and the time the creation took feeds the shipper's latency.
+     */
+    public void track(Party shipper, CompletableFuture<?> creation) {
+        Load load = candidates.get(shipper.getName());
+        if (load == null) {
+            return;
+        }
+        long started = System.nanoTime();
+        load.inFlight.incrementAndGet();
+        creation.whenComplete((value, error) -> {
+            if (error == null) {
+                load.committed.incrementAndGet();
+                load.recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            }
+            load.inFlight.decrementAndGet();
+        });
+    }
+
+    /**
+     * The current load figures by shipper, for monitoring.
+     */
+    public Map<String, Map<String, Object>> loads() {
+        Map<String, Map<String, Object>> loads = new TreeMap<>();
+        candidates.forEach((name, load) -> {
+            Map<String, Object> figures = new LinkedHashMap<>();
+            figures.put("openOrders", load.openOrders.get());
+            figures.put("inFlight", load.inFlight.get());
+            figures.put("createdSinceRefresh", load.committed.get());
+            figures.put("latencyMillis", Double.longBitsToDouble(load.latencyBits.get()));
+            figures.put("score", load.score(latencyScaleMillis));
+            loads.put(name.toString(), figures);
+        });
+        return loads;
+    }
+
+    private static class Load {
+        final Party party;
+        final AtomicLong openOrders = new AtomicLong();
+        final AtomicLong inFlight = new AtomicLong();
+        final AtomicLong committed = new AtomicLong();
+        final AtomicLong latencyBits = new AtomicLong(Double.doubleToLongBits(0));
+
+        Load(Party party) {
+            this.party = party;
+        }
+
+        void recordLatency(long millis) {
+            long current;
+            double updated;
+            do {
+                current = latencyBits.get();
+                double average = Double.longBitsToDouble(current);
+                updated = average == 0 ? millis : average + LATENCY_SMOOTHING * (millis - average);
+            } while (!latencyBits.compareAndSet(current, Double.doubleToLongBits(updated)));
+        }
+
+        /** Pending work, inflated by how much slower than the latency scale the shipper has been answering. */
+        double score(long latencyScaleMillis) {
+            double latency = Double.longBitsToDouble(latencyBits.get());
+            return (openOrders.get() + inFlight.get() + committed.get() + 1) * (1 + latency / latencyScaleMillis);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (subscription != null) {
+            subscription.unsubscribe();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.gmedchain.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Records how long after JVM start the web server was ready to take requests and the node was connected.
+ */
+@Component
+public class StartupTiming implements ApplicationListener<ApplicationReadyEvent> {
+    private static final Logger logger = LoggerFactory.getLogger(StartupTiming.class);
+
+    private final Instant jvmStart = Instant.ofEpochMilli(ManagementFactory.getRuntimeMXBean().getStartTime());
+    private final NodeRPCConnection rpc;
+    private volatile Instant webReady;
+
+    public StartupTiming(NodeRPCConnection rpc) {
+        this.rpc = rpc;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        webReady = Instant.now();
+        logger.info("Web server ready {} ms after JVM start; node {}", getWebReadyMillis(),
+                rpc.isConnected() ? "connected" : "still connecting");
+    }
+
+    /** Milliseconds from JVM start until the web server was ready, or null if it is still starting. */
+    public Long getWebReadyMillis() {
+        return webReady == null ? null : Duration.between(jvmStart, webReady).toMillis();
+    }
+
+    /** Milliseconds from JVM start until the node was connected, or null while connecting. */
+    public Long getNodeConnectedMillis() {
+        Instant connectedAt = rpc.getConnectedAt();
+        return connectedAt == null ? null : Duration.between(jvmStart, connectedAt).toMillis();
+    }
+}
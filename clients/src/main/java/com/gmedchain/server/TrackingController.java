@@ -0,0 +1,116 @@
+package com.gmedchain.server;
+
+import com.gmedchain.common.TrackingEvent;
+import com.gmedchain.common.TrackingProof;
+import com.gmedchain.flow.TrackingEventFlows;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.crypto.SecureHash;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.gmedchain.server.AsyncFlowSupport.immediate;
+import static com.gmedchain.server.AsyncFlowSupport.toCompletableFuture;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+/**
+ * Off-ledger shipment tracking events of orders (see TrackingEventService on the node) and the proofs that anchored
+ * events are included in the Merkle root put on ledger.
+ */
+@RestController
+@RequestMapping("/api/gmedchain/tracking/")
+public class TrackingController {
+    private static final String FLOW_TIMEOUT_MESSAGE = "The flow did not finish in time; it may still commit.";
+    private final NodeRPCConnection rpc;
+    private final AsyncFlowSupport flows;
+
+    public TrackingController(NodeRPCConnection rpc, AsyncFlowSupport flows) {
+        this.rpc = rpc;
+        this.flows = flows;
+    }
+
+    /**
+     * One tracking event as posted; `time` is an ISO-8601 instant and defaults to the time of the request.
+     */
+    public static class EventRequest {
+        public String time;
+        public String type;
+        public String location;
+        public String detail;
+    }
+
+    /**
+     * Records tracking events of an order and returns their ids, to ask for their proofs once anchored.
+     */
+    @PostMapping(value = "/orders/{linearId}/events", consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<?>> record(@PathVariable("linearId") String linearId,
+                                                    @RequestBody List<EventRequest> events) {
+        List<TrackingEvent> tracked = new ArrayList<>(events.size());
+        try {
+            UniqueIdentifier order = new UniqueIdentifier(null, UUID.fromString(linearId));
+            Instant now = Instant.now();
+            for (EventRequest event : events) {
+                if (event.type == null || event.type.isEmpty()) {
+                    return immediate(ResponseEntity.badRequest().body("Every tracking event must have a 'type'.\n"));
+                }
+                tracked.add(new TrackingEvent(order, event.time == null ? now : Instant.parse(event.time),
+                        event.type, event.location, event.detail));
+            }
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return immediate(ResponseEntity.badRequest().body(e.getMessage() + "\n"));
+        }
+        return flows.defer(toCompletableFuture(rpc.getProxy().startFlowDynamic(TrackingEventFlows.Record.class, tracked).getReturnValue()),
+                ResponseEntity::ok, TrackingController::flowFailed, flowTimedOut());
+    }
+
+    /**
+     * Returns the inclusion proof of an anchored event, with the hashes as hex strings.
+     */
+    @GetMapping(value = "/events/{eventId}/proof", produces = APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<?>> proof(@PathVariable("eventId") long eventId) {
+        return flows.defer(toCompletableFuture(rpc.getProxy().startFlowDynamic(TrackingEventFlows.Prove.class, eventId).getReturnValue()),
+                proof -> ResponseEntity.ok(toJson(proof)), TrackingController::flowFailed, flowTimedOut());
+    }
+
+    private static Map<String, Object> toJson(TrackingProof proof) {
+        TrackingEvent event = proof.getEvent();
+        List<String> path = new ArrayList<>(proof.getPath().size());
+        for (SecureHash hash : proof.getPath()) {
+            path.add(hash.toString());
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("eventId", proof.getEventId());
+        json.put("linearId", event.getLinearId().getId().toString());
+        json.put("time", event.getTime().toString());
+        json.put("type", event.getType());
+        json.put("location", event.getLocation());
+        json.put("detail", event.getDetail());
+        json.put("leafIndex", proof.getLeafIndex());
+        json.put("path", path);
+        json.put("root", proof.getRoot().toString());
+        json.put("anchorTxId", proof.getAnchorTxId().toString());
+        return json;
+    }
+
+    private static ResponseEntity<?> flowFailed(Throwable e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage() + "\n");
+    }
+
+    private static ResponseEntity<?> flowTimedOut() {
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(FLOW_TIMEOUT_MESSAGE + "\n");
+    }
+}
@@ -0,0 +1,260 @@
+package com.gmedchain.server;
+
+import net.corda.core.contracts.LinearState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Subscription;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hands every state of one type that the vault records to a [Handler], at least once, resuming where it left off.
+ *
+ * States are read in pages, oldest recorded first, from a durable cursor: the recorded time of the last state handled
+ * and the refs handled within [LAG] before it. The node stamps the recorded time before its transaction commits, so a
+ * state can become visible after a later-stamped one; each read therefore starts [LAG] before the cursor and skips the
+ * refs already handled. The first run after a restart covers only what the vault recorded since, and the live vault
+ * feed merely wakes the consumer to read the next pages, so updates arriving together are handled together.
+ *
+ * Each page is split by linearId over `workers` lanes that run in parallel; a lane handles its states in recorded
+ * order, so the versions of one linear state are handled one after another. The cursor moves once every lane of a
+ * page has finished; a failed page is read again after a pause.
+ */
+public class VaultConsumer<T extends LinearState> implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(VaultConsumer.class);
+    /** How long a wake-up waits for more updates, so that a burst is read as one batch. */
+    private static final long COALESCE_MILLIS = 50;
+    private static final long RETRY_MILLIS = 5000;
+    /** How long a recorded state may take to become visible, i.e. the longest vault-writing transaction. */
+    private static final Duration LAG = Duration.ofMinutes(1);
+    private static final Sort BY_RECORDED_TIME = new Sort(Arrays.asList(
+            new Sort.SortColumn(new SortAttribute.Standard(Sort.VaultStateAttribute.RECORDED_TIME), Sort.Direction.ASC),
+            new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_TXN_ID), Sort.Direction.ASC),
+            new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_INDEX), Sort.Direction.ASC)));
+
+    /**
+     * Receives the states of one lane of one page, in recorded order. Throwing makes the whole page be read again.
+     */
+    public interface Handler<T> {
+        void handle(List<StateAndRef<T>> states) throws Exception;
+    }
+
+    private final Class<T> type;
+    private final Path cursorFile;
+    private final int pageSize;
+    private final Handler<T> handler;
+    private final ExecutorService[] lanes;
+    private final ScheduledExecutorService runner;
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+    private volatile CordaRPCOps proxy;
+    private volatile Subscription subscription;
+    private Instant cursorTime;
+    // The refs handled within LAG before cursorTime, with their recorded times.
+    private Map<StateRef, Instant> cursorRefs = new HashMap<>();
+
+    public VaultConsumer(Class<T> type, Path cursorFile, int workers, int pageSize, Handler<T> handler) throws IOException {
+        this.type = type;
+        this.cursorFile = cursorFile;
+        this.pageSize = pageSize;
+        this.handler = handler;
+        this.lanes = new ExecutorService[workers];
+        for (int i = 0; i < workers; i++) {
+            String name = "vault-consumer-" + type.getSimpleName() + "-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, name));
+        }
+        this.runner = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "vault-consumer-" + type.getSimpleName()));
+        readCursor();
+    }
+
+    /**
+     * Starts (or, after a reconnection, restarts) consuming from the node behind `proxy`.
+     */
+    public synchronized void start(CordaRPCOps proxy) {
+        if (subscription != null) {
+            subscription.unsubscribe();
+        }
+        this.proxy = proxy;
+        // Only the updates are used; they signal that there is something new to read from the cursor.
+        subscription = proxy.vaultTrackBy(new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.UNCONSUMED),
+                new PageSpecification(1, 1), BY_RECORDED_TIME, type).getUpdates().subscribe(
+                update -> wakeUp(COALESCE_MILLIS),
+                error -> logger.warn("{} consumer stopped receiving vault updates", type.getSimpleName(), error));
+        wakeUp(0);
+    }
+
+    private void wakeUp(long delayMillis) {
+        if (wakeUpPending.compareAndSet(false, true)) {
+            runner.schedule(this::run, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void run() {
+        wakeUpPending.set(false);
+        try {
+            catchUp();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("{} consumer failed, retrying from the cursor in {} ms", type.getSimpleName(), RETRY_MILLIS, e);
+            runner.schedule(() -> wakeUp(0), RETRY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Reads and handles every page recorded since the cursor.
+     */
+    private void catchUp() throws Exception {
+        QueryCriteria.TimeCondition since = cursorTime == null ? null : new QueryCriteria.TimeCondition(
+                QueryCriteria.TimeInstantType.RECORDED, Builder.greaterThanOrEqual(cursorTime.minus(LAG)));
+        QueryCriteria criteria = new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.ALL, null, null, null, null, since);
+        int pageNumber = 1;
+        long handled = 0;
+        Vault.Page<T> page;
+        do {
+            page = proxy.vaultQueryBy(criteria, new PageSpecification(pageNumber, pageSize), BY_RECORDED_TIME, type);
+            handled += handle(page);
+            pageNumber++;
+        } while ((long) (pageNumber - 1) * pageSize < page.getTotalStatesAvailable());
+        if (handled > 0) {
+            logger.info("{} consumer handled {} state(s), now at {}", type.getSimpleName(), handled, cursorTime);
+        }
+    }
+
+    private int handle(Vault.Page<T> page) throws Exception {
+        List<StateAndRef<T>> states = page.getStates();
+        List<Vault.StateMetadata> metadata = page.getStatesMetadata();
+        List<List<StateAndRef<T>>> batches = new ArrayList<>();
+        for (int i = 0; i < lanes.length; i++) {
+            batches.add(new ArrayList<>());
+        }
+        Instant lastTime = cursorTime;
+        Map<StateRef, Instant> lastRefs = new HashMap<>(cursorRefs);
+        int count = 0;
+        for (int i = 0; i < states.size(); i++) {
+            StateAndRef<T> state = states.get(i);
+            Instant recorded = metadata.get(i).getRecordedTime();
+            if (cursorRefs.containsKey(state.getRef())) {
+                continue; // Handled before the restart, on an earlier page or in an earlier read of the lag window.
+            }
+            int lane = Math.floorMod(state.getState().getData().getLinearId().getId().hashCode(), lanes.length);
+            batches.get(lane).add(state);
+            if (lastTime == null || recorded.isAfter(lastTime)) {
+                lastTime = recorded;
+            }
+            lastRefs.put(state.getRef(), recorded);
+            count++;
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        List<Future<?>> pending = new ArrayList<>();
+        for (int i = 0; i < lanes.length; i++) {
+            List<StateAndRef<T>> batch = batches.get(i);
+            if (!batch.isEmpty()) {
+                pending.add(lanes[i].submit(() -> {
+                    handler.handle(batch);
+                    return null;
+                }));
+            }
+        }
+        Exception failure = null;
+        for (Future<?> lane : pending) {
+            try {
+                lane.get();
+            } catch (ExecutionException e) {
+                failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        Instant windowStart = lastTime.minus(LAG);
+        lastRefs.values().removeIf(recorded -> recorded.isBefore(windowStart));
+        cursorTime = lastTime;
+        cursorRefs = lastRefs;
+        writeCursor();
+        return count;
+    }
+
+    private void readCursor() throws IOException {
+        if (!Files.exists(cursorFile)) {
+            return;
+        }
+        Properties cursor = new Properties();
+        try (BufferedReader reader = Files.newBufferedReader(cursorFile, StandardCharsets.UTF_8)) {
+            cursor.load(reader);
+        }
+        String recordedTime = cursor.getProperty("recordedTime");
+        if (recordedTime != null) {
+            cursorTime = Instant.parse(recordedTime);
+            for (String entry : cursor.getProperty("refs", "").split(",")) {
+                if (!entry.isEmpty()) {
+                    // txhash:index@recordedTime; entries of older cursors carry no time and were recorded at it.
+                    int at = entry.indexOf('@');
+                    String ref = at < 0 ? entry : entry.substring(0, at);
+                    Instant recorded = at < 0 ? cursorTime : Instant.parse(entry.substring(at + 1));
+                    int separator = ref.lastIndexOf(':');
+                    cursorRefs.put(new StateRef(SecureHash.parse(ref.substring(0, separator)), Integer.parseInt(ref.substring(separator + 1))), recorded);
+                }
+            }
+        }
+    }
+
+    private void writeCursor() throws IOException {
+        List<String> refs = new ArrayList<>();
+        for (Map.Entry<StateRef, Instant> ref : cursorRefs.entrySet()) {
+            refs.add(ref.getKey().getTxhash() + ":" + ref.getKey().getIndex() + "@" + ref.getValue());
+        }
+        Properties cursor = new Properties();
+        cursor.setProperty("recordedTime", cursorTime.toString());
+        cursor.setProperty("refs", String.join(",", refs));
+        Path tmp = cursorFile.resolveSibling(cursorFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            cursor.store(out, type.getName() + " consumer cursor");
+        }
+        Files.move(tmp, cursorFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (subscription != null) {
+            subscription.unsubscribe();
+        }
+        runner.shutdownNow();
+        for (ExecutorService lane : lanes) {
+            lane.shutdownNow();
+        }
+    }
+}
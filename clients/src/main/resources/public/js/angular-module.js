@@ -34,14 +34,10 @@ app.controller('DemoAppController', function($http, $location, $uibModal) {
     };
 
     demoApp.getIOUs = () => $http.get(apiBaseURL + "orders")
-        .then((response) => demoApp.ious = Object.keys(response.data)
-            .map((key) => response.data[key].state.data)
-            .reverse());
+        .then((response) => demoApp.ious = response.data.reverse());
 
     demoApp.getMyIOUs = () => $http.get(apiBaseURL + "my-orders")
-        .then((response) => demoApp.myious = Object.keys(response.data)
-            .map((key) => response.data[key].state.data)
-            .reverse());
+        .then((response) => demoApp.myious = response.data.reverse());
 
     demoApp.getIOUs();
     demoApp.getMyIOUs();
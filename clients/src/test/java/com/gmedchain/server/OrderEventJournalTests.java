@@ -0,0 +1,243 @@
+package com.gmedchain.server;
+
+import com.gmedchain.common.Order;
+import com.gmedchain.contract.OrderContract;
+import com.gmedchain.state.OrderState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.contracts.TransactionState;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.testing.core.TestIdentity;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OrderEventJournalTests {
+    private static final TestIdentity buyer = new TestIdentity(new CordaX500Name("PartyA", "London", "GB"));
+    private static final TestIdentity seller = new TestIdentity(new CordaX500Name("PartyB", "New York", "US"));
+    private static final TestIdentity shipper = new TestIdentity(new CordaX500Name("PartyC", "Paris", "FR"));
+    private static final TestIdentity notary = new TestIdentity(new CordaX500Name("Notary", "London", "GB"));
+    /** Room for a few hundred events, so that a thousand span several segments with several index entries each. */
+    private static final int SEGMENT_BYTES = 64 * 1024;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static StateAndRef<OrderState> order(int status) {
+        Order order = new Order("SKU-" + status, "Gloves", 10f, 2, 1f, status, "1 Buyer St", "2 Seller Rd");
+        OrderState state = new OrderState(order, buyer.getParty(), seller.getParty(), shipper.getParty(),
+                buyer.getParty(), new UniqueIdentifier());
+        return new StateAndRef<>(new TransactionState<>(state, OrderContract.ID, notary.getParty()),
+                new StateRef(SecureHash.randomSHA256(), 0));
+    }
+
+    private static List<OrderEvent> readAll(OrderEventJournal.Reader reader) {
+        List<OrderEvent> events = new ArrayList<>();
+        for (OrderEvent event = reader.next(); event != null; event = reader.next()) {
+            events.add(event);
+        }
+        return events;
+    }
+
+    private static List<StateAndRef<OrderState>> append(OrderEventJournal journal, int count) {
+        List<StateAndRef<OrderState>> states = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StateAndRef<OrderState> state = order(i % 7);
+            states.add(state);
+            journal.append(i % 2 == 0 ? OrderEvent.Kind.PRODUCED : OrderEvent.Kind.CONSUMED, state, null);
+        }
+        return states;
+    }
+
+    private File[] segmentFiles(Path directory) {
+        return directory.toFile().listFiles((dir, name) -> name.endsWith(".journal"));
+    }
+
+    @Test
+    public void appendedEventsAreReadBackInOrder() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        Instant vaultTime = Instant.parse("2020-01-01T00:00:00Z");
+        try (OrderEventJournal journal = new OrderEventJournal(directory, SEGMENT_BYTES)) {
+            StateAndRef<OrderState> state = order(3);
+            assertEquals(0, journal.append(OrderEvent.Kind.PRODUCED, state, vaultTime));
+            assertEquals(1, journal.append(OrderEvent.Kind.CONSUMED, state, null));
+
+            List<OrderEvent> events = readAll(journal.readerAt(0));
+            assertEquals(2, events.size());
+            OrderEvent produced = events.get(0);
+            assertEquals(0, produced.getSequence());
+            assertEquals(OrderEvent.Kind.PRODUCED, produced.getKind());
+            assertEquals(vaultTime, produced.getVaultTime());
+            assertEquals(state.getState().getData().getLinearId().getId(), produced.getLinearId());
+            assertEquals(state.getRef().getTxhash(), produced.getTxId());
+            assertEquals(3, produced.getStatus());
+            assertEquals("SKU-3", produced.getProductSku());
+            assertEquals(shipper.getName().toString(), produced.getShipper());
+            assertEquals(OrderEvent.Kind.CONSUMED, events.get(1).getKind());
+            assertNull(events.get(1).getVaultTime());
+            assertEquals(journal.getLastTime(), events.get(1).getTime());
+        }
+    }
+
+    @Test
+    public void readerTailsEventsAppendedAfterIt() throws Exception {
+        try (OrderEventJournal journal = new OrderEventJournal(folder.newFolder().toPath(), SEGMENT_BYTES)) {
+            OrderEventJournal.Reader reader = journal.readerAt(journal.getNextSequence());
+            assertNull(reader.next());
+            journal.append(OrderEvent.Kind.PRODUCED, order(0), null);
+            assertEquals(0, reader.poll(1, TimeUnit.SECONDS).getSequence());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void eventsRollOverIntoNewSegmentsAndSurviveReopening() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        List<StateAndRef<OrderState>> states;
+        try (OrderEventJournal journal = new OrderEventJournal(directory, SEGMENT_BYTES)) {
+            states = append(journal, 1000);
+        }
+        assertTrue(segmentFiles(directory).length > 2);
+
+        try (OrderEventJournal journal = new OrderEventJournal(directory, SEGMENT_BYTES)) {
+            assertEquals(1000, journal.getNextSequence());
+            List<OrderEvent> events = readAll(journal.readerAt(0));
+            assertEquals(1000, events.size());
+            for (int i = 0; i < events.size(); i++) {
+                assertEquals(i, events.get(i).getSequence());
+                assertEquals(states.get(i).getRef().getTxhash(), events.get(i).getTxId());
+            }
+            assertEquals(1000, journal.append(OrderEvent.Kind.PRODUCED, order(0), null));
+        }
+    }
+
+    @Test
+    public void readersSeekBySequence() throws IOException {
+        try (OrderEventJournal journal = new OrderEventJournal(folder.newFolder().toPath(), SEGMENT_BYTES)) {
+            List<StateAndRef<OrderState>> states = append(journal, 1000);
+            for (long sequence : new long[]{0, 1, 63, 64, 65, 299, 300, 301, 777, 999}) {
+                OrderEvent event = journal.readerAt(sequence).next();
+                assertEquals(sequence, event.getSequence());
+                assertEquals(states.get((int) sequence).getRef().getTxhash(), event.getTxId());
+            }
+            assertNull(journal.readerAt(1000).next());
+            try {
+                journal.readerAt(1001);
+                fail("Seeking past the end of the journal should fail");
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void readersSeekByTime() throws Exception {
+        try (OrderEventJournal journal = new OrderEventJournal(folder.newFolder().toPath(), SEGMENT_BYTES)) {
+            for (int i = 0; i < 10; i++) {
+                append(journal, 100);
+                Thread.sleep(5);
+            }
+            List<OrderEvent> events = readAll(journal.readerAt(0));
+            for (int i : new int[]{0, 64, 100, 350, 701, 999}) {
+                Instant time = events.get(i).getTime();
+                OrderEvent found = journal.readerAt(time).next();
+                assertEquals(time, found.getTime());
+                // The first event at that time, wherever its segment or index entry is.
+                assertTrue(found.getSequence() == 0 || events.get((int) found.getSequence() - 1).getTime().isBefore(time));
+                assertTrue(found.getSequence() <= i);
+            }
+            assertEquals(0, journal.readerAt(Instant.EPOCH).next().getSequence());
+            assertNull(journal.readerAt(journal.getLastTime().plusMillis(1)).next());
+        }
+    }
+
+    @Test
+    public void recoveryDropsATornLastRecord() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        try (OrderEventJournal journal = new OrderEventJournal(directory, SEGMENT_BYTES)) {
+            append(journal, 500);
+        }
+        // Corrupt the payload of the last record, as a crash in the middle of writing it would.
+        File[] segments = segmentFiles(directory);
+        Arrays.sort(segments);
+        try (FileChannel channel = FileChannel.open(segments[segments.length - 1].toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            long position = 0;
+            long last = -1;
+            while (true) {
+                header.clear();
+                channel.read(header, position);
+                int length = header.getInt(0);
+                if (length <= 0) {
+                    break;
+                }
+                last = position;
+                position += 8 + length;
+            }
+            assertTrue(last >= 0);
+            ByteBuffer garbage = ByteBuffer.wrap(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF});
+            channel.write(garbage, last + 8 + 20);
+        }
+
+        try (OrderEventJournal journal = new OrderEventJournal(directory, SEGMENT_BYTES)) {
+            assertEquals(499, journal.getNextSequence());
+            assertEquals(499, readAll(journal.readerAt(0)).size());
+            StateAndRef<OrderState> state = order(5);
+            assertEquals(499, journal.append(OrderEvent.Kind.PRODUCED, state, null));
+            assertEquals(state.getRef().getTxhash(), journal.readerAt(499).next().getTxId());
+        }
+    }
+
+    @Test
+    public void retentionDeletesOnlyWhollyOlderSealedSegments() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        try (OrderEventJournal journal = new OrderEventJournal(directory, SEGMENT_BYTES)) {
+            append(journal, 1000);
+            int segments = segmentFiles(directory).length;
+            OrderEventJournal.Reader oldest = journal.readerAt(0);
+
+            assertEquals(0, journal.deleteSegmentsBefore(Instant.EPOCH));
+            assertEquals(0, journal.getFirstSequence());
+
+            assertEquals(segments - 1, journal.deleteSegmentsBefore(journal.getLastTime().plusMillis(1)));
+            assertEquals(1, segmentFiles(directory).length);
+            long first = journal.getFirstSequence();
+            assertTrue(first > 0);
+            assertEquals(1000 - first, readAll(journal.readerAt(first)).size());
+            try {
+                journal.readerAt(0);
+                fail("Seeking into a deleted segment should fail");
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+            try {
+                oldest.next();
+                fail("Reading from a deleted segment should fail");
+            } catch (IllegalStateException e) {
+                // Expected.
+            }
+        }
+        try (OrderEventJournal journal = new OrderEventJournal(directory, SEGMENT_BYTES)) {
+            assertEquals(1000, journal.getNextSequence());
+        }
+    }
+}
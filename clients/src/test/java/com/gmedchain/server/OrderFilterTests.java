@@ -0,0 +1,115 @@
+package com.gmedchain.server;
+
+import com.gmedchain.common.Types;
+import com.gmedchain.schema.OrderSchemaV1;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.CriteriaExpression;
+import net.corda.core.node.services.vault.QueryCriteria;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.getField;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OrderFilterTests {
+    private static final Vault.StateStatus STATUS = Vault.StateStatus.UNCONSUMED;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static QueryCriteria field(CriteriaExpression expression) {
+        return new QueryCriteria.VaultCustomQueryCriteria(expression, STATUS);
+    }
+
+    private static List<String> tokens(String filter) {
+        return OrderFilter.tokenize(filter).stream().map(OrderFilter.Token::toString).collect(Collectors.toList());
+    }
+
+    private static void assertRejected(String filter) {
+        try {
+            OrderFilter.compile(filter, STATUS);
+            fail("Filter should be rejected: " + filter);
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void tokenizerSeparatesOperatorsPunctuationAndStrings() {
+        assertEquals(Arrays.asList("price", ">=", "10", "AND", "(", "sku", "!=", "\"a b\"", "OR", "qty", "<", "3", ")"),
+                tokens("price>=10 AND (sku != 'a b' OR qty<3)"));
+        assertEquals(Arrays.asList("name", "in", "(", "\"(\"", ",", "\",\"", ",", "\"and\"", ")"),
+                tokens("name in (\"(\", ',', \"and\")"));
+    }
+
+    @Test
+    public void blankFilterMatchesEveryOrder() {
+        assertEquals(new QueryCriteria.VaultQueryCriteria(STATUS), OrderFilter.compile("  ", STATUS));
+        assertEquals(new QueryCriteria.VaultQueryCriteria(STATUS), OrderFilter.compile(null, STATUS));
+    }
+
+    @Test
+    public void valuesAreConvertedToTheColumnType() throws NoSuchFieldException {
+        assertEquals(field(Builder.equal(getField("status", OrderSchemaV1.PersistentOrder.class), Types.OrderTypes.Confirmed.ordinal())),
+                OrderFilter.compile("status = confirmed", STATUS));
+        assertEquals(field(Builder.between(getField("productPrice", OrderSchemaV1.PersistentOrder.class), 10f, 20.5f)),
+                OrderFilter.compile("price between 10 and 20.5", STATUS));
+        assertEquals(field(Builder.equal(getField("seller", OrderSchemaV1.PersistentOrder.class), "O=PartyB, L=New York, C=US")),
+                OrderFilter.compile("seller = \"O=PartyB,L=New York,C=US\"", STATUS));
+    }
+
+    @Test
+    public void andBindsTighterThanOr() throws NoSuchFieldException {
+        QueryCriteria qty = field(Builder.lessThan(getField("qty", OrderSchemaV1.PersistentOrder.class), 3));
+        QueryCriteria sku = field(Builder.equal(getField("productSKU", OrderSchemaV1.PersistentOrder.class), "A"));
+        QueryCriteria name = field(Builder.like(getField("productName", OrderSchemaV1.PersistentOrder.class), "G%"));
+        assertEquals(qty.or(sku.and(name)), OrderFilter.compile("qty < 3 OR sku = A AND name like 'G%'", STATUS));
+        assertEquals(qty.or(sku).and(name), OrderFilter.compile("(qty < 3 OR sku = A) AND name like 'G%'", STATUS));
+    }
+
+    @Test
+    public void quotedKeywordsAndPunctuationAreValues() throws NoSuchFieldException {
+        assertEquals(field(Builder.equal(getField("productName", OrderSchemaV1.PersistentOrder.class), "and")),
+                OrderFilter.compile("name = \"and\"", STATUS));
+        assertEquals(field(Builder.in(getField("productSKU", OrderSchemaV1.PersistentOrder.class), Arrays.asList("(", ",", "or"))),
+                OrderFilter.compile("sku in ('(', ',', 'or')", STATUS));
+        // A quoted "or" is not a disjunction, so it is left over after the first predicate.
+        assertRejected("sku = A 'or' sku = B");
+        // Nor can a field or operator be quoted.
+        assertRejected("'sku' = A");
+        assertRejected("sku '=' A");
+        assertRejected("sku in ('A' ')'");
+    }
+
+    @Test
+    public void timeConditionsCompareRecordedAndConsumedTimes() {
+        Instant from = Instant.parse("2020-01-01T00:00:00Z");
+        Instant to = Instant.parse("2020-02-01T00:00:00Z");
+        assertEquals(new QueryCriteria.VaultQueryCriteria(STATUS, null, null, null, null,
+                        new QueryCriteria.TimeCondition(QueryCriteria.TimeInstantType.CONSUMED, Builder.between(from, to))),
+                OrderFilter.compile("consumed between 2020-01-01T00:00:00Z and 2020-02-01T00:00:00Z", STATUS));
+        QueryCriteria within = OrderFilter.compile("recorded within 24h", STATUS);
+        assertTrue(within instanceof QueryCriteria.VaultQueryCriteria);
+        assertEquals(QueryCriteria.TimeInstantType.RECORDED,
+                ((QueryCriteria.VaultQueryCriteria) within).getTimeCondition().getType());
+    }
+
+    @Test
+    public void malformedFiltersAreRejected() {
+        assertRejected("colour = red");
+        assertRejected("price ~ 10");
+        assertRejected("price = ten");
+        assertRejected("status = Lost");
+        assertRejected("price between 10");
+        assertRejected("(price = 10");
+        assertRejected("price = 10)");
+        assertRejected("sku = 'A");
+        assertRejected("recorded within 3w");
+        assertRejected("recorded > yesterday");
+    }
+}
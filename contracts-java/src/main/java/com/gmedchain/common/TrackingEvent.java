@@ -0,0 +1,88 @@
+package com.gmedchain.common;
+
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.serialization.ConstructorForDeserialization;
+import net.corda.core.serialization.CordaSerializable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+
+/**
+ * A shipment tracking event (a scan, a hand-over, a temperature reading...) of one order, kept off ledger by the
+ * node that records it and anchored on ledger in batches by its Merkle root, see [TrackingProof].
+ */
+@CordaSerializable
+public class TrackingEvent {
+    private final UniqueIdentifier linearId;
+    private final Instant time;
+    private final String type;
+    private final String location;
+    private final String detail;
+
+    @ConstructorForDeserialization
+    public TrackingEvent(UniqueIdentifier linearId, Instant time, String type, String location, String detail) {
+        this.linearId = linearId;
+        this.time = time;
+        this.type = type;
+        this.location = location;
+        this.detail = detail;
+    }
+
+    /** The linearId of the order the event belongs to. */
+    public UniqueIdentifier getLinearId() {
+        return linearId;
+    }
+
+    public Instant getTime() {
+        return time;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * The Merkle leaf of the event as recorded under `eventId`. The time counts to the millisecond, as stored.
+     */
+    public SecureHash leafHash(long eventId) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            // Leaves are prefixed so that no leaf can pass for an inner node.
+            out.writeByte(0);
+            out.writeLong(eventId);
+            out.writeLong(linearId.getId().getMostSignificantBits());
+            out.writeLong(linearId.getId().getLeastSignificantBits());
+            out.writeLong(time.toEpochMilli());
+            writeString(out, type);
+            writeString(out, location);
+            writeString(out, detail);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return SecureHash.sha256(bytes.toByteArray());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TrackingEvent(linearId=" + linearId + ", time=" + time + ", type=" + type + ", location=" + location + ")";
+    }
+}
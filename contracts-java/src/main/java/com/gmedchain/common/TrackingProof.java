@@ -0,0 +1,141 @@
+package com.gmedchain.common;
+
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.serialization.ConstructorForDeserialization;
+import net.corda.core.serialization.CordaSerializable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Proof that a [TrackingEvent] is one of the events anchored by a transaction: the event, its position among the
+ * leaves of the anchored Merkle tree, and the sibling hashes from the leaf up to the root.
+ *
+ * Anyone holding the anchor transaction can check the proof with [verify] against the root of its
+ * [com.gmedchain.state.TrackingAnchorState], without the other events of the batch.
+ *
+ * The tree is binary over the leaves in event id order, padded with zero hashes to a power of two. Inner nodes are
+ * SHA-256 of 0x01 followed by their children, and leaves are prefixed with 0x00 (see [TrackingEvent.leafHash]), so
+ * no inner node can pass for a leaf or the other way round.
+ */
+@CordaSerializable
+public class TrackingProof {
+    private static final SecureHash PADDING = new SecureHash.SHA256(new byte[32]);
+    private static final byte NODE_PREFIX = 1;
+
+    private final long eventId;
+    private final TrackingEvent event;
+    private final int leafIndex;
+    private final List<SecureHash> path;
+    private final SecureHash root;
+    private final SecureHash anchorTxId;
+
+    @ConstructorForDeserialization
+    public TrackingProof(long eventId, TrackingEvent event, int leafIndex, List<SecureHash> path, SecureHash root, SecureHash anchorTxId) {
+        this.eventId = eventId;
+        this.event = event;
+        this.leafIndex = leafIndex;
+        this.path = path;
+        this.root = root;
+        this.anchorTxId = anchorTxId;
+    }
+
+    public long getEventId() {
+        return eventId;
+    }
+
+    public TrackingEvent getEvent() {
+        return event;
+    }
+
+    public int getLeafIndex() {
+        return leafIndex;
+    }
+
+    /** The sibling hashes from the leaf up, excluding the root. */
+    public List<SecureHash> getPath() {
+        return path;
+    }
+
+    public SecureHash getRoot() {
+        return root;
+    }
+
+    /** The transaction whose [com.gmedchain.state.TrackingAnchorState] carries [getRoot]. */
+    public SecureHash getAnchorTxId() {
+        return anchorTxId;
+    }
+
+    /**
+     * Whether the event hashes up to the root through the path.
+     */
+    public boolean verify() {
+        SecureHash node = event.leafHash(eventId);
+        int index = leafIndex;
+        for (SecureHash sibling : path) {
+            node = (index & 1) == 0 ? node(node, sibling) : node(sibling, node);
+            index >>>= 1;
+        }
+        return index == 0 && node.equals(root);
+    }
+
+    /**
+     * The root of the tree over `leaves`.
+     */
+    public static SecureHash root(List<SecureHash> leaves) {
+        List<SecureHash> level = padded(leaves);
+        while (level.size() > 1) {
+            level = parents(level);
+        }
+        return level.get(0);
+    }
+
+    /**
+     * The sibling hashes from the leaf at `leafIndex` of the tree over `leaves` up to, excluding, the root.
+     */
+    public static List<SecureHash> path(List<SecureHash> leaves, int leafIndex) {
+        if (leafIndex < 0 || leafIndex >= leaves.size()) {
+            throw new IndexOutOfBoundsException("Leaf " + leafIndex + " of " + leaves.size());
+        }
+        List<SecureHash> path = new ArrayList<>();
+        List<SecureHash> level = padded(leaves);
+        int index = leafIndex;
+        while (level.size() > 1) {
+            path.add(level.get(index ^ 1));
+            level = parents(level);
+            index >>>= 1;
+        }
+        return path;
+    }
+
+    private static List<SecureHash> padded(List<SecureHash> leaves) {
+        if (leaves.isEmpty()) {
+            throw new IllegalArgumentException("A Merkle tree needs at least one leaf.");
+        }
+        int size = Integer.highestOneBit(leaves.size());
+        if (size < leaves.size()) {
+            size <<= 1;
+        }
+        List<SecureHash> level = new ArrayList<>(size);
+        level.addAll(leaves);
+        level.addAll(Collections.nCopies(size - leaves.size(), PADDING));
+        return level;
+    }
+
+    private static List<SecureHash> parents(List<SecureHash> level) {
+        List<SecureHash> parents = new ArrayList<>(level.size() / 2);
+        for (int i = 0; i < level.size(); i += 2) {
+            parents.add(node(level.get(i), level.get(i + 1)));
+        }
+        return parents;
+    }
+
+    private static SecureHash node(SecureHash left, SecureHash right) {
+        byte[] bytes = new byte[65];
+        bytes[0] = NODE_PREFIX;
+        System.arraycopy(left.getBytes(), 0, bytes, 1, 32);
+        System.arraycopy(right.getBytes(), 0, bytes, 33, 32);
+        return SecureHash.sha256(bytes);
+    }
+}
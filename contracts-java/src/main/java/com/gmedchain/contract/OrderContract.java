@@ -1,19 +1,19 @@
 package com.gmedchain.contract;
 
+import com.gmedchain.common.Order;
 import com.gmedchain.state.OrderState;
 import com.gmedchain.common.Types;
 import com.sun.istack.NotNull;
 import net.corda.core.contracts.CommandData;
 import net.corda.core.contracts.CommandWithParties;
 import net.corda.core.contracts.Contract;
-import net.corda.core.contracts.ContractState;
 import net.corda.core.identity.Party;
 import net.corda.core.transactions.LedgerTransaction;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-
-import static net.corda.core.contracts.ContractsDSL.requireSingleCommand;
-import static net.corda.core.contracts.ContractsDSL.requireThat;
+import java.util.Objects;
 
 /**
  * A implementation of a Order smart contract.
@@ -32,89 +32,254 @@ public class OrderContract implements Contract {
     /**
      * The verify() function of all the states' contracts must not throw an exception for a transaction to be
      * considered valid.
+     *
+     * Every node runs this for every order transaction it signs or resolves, so the checks are plain conditions with
+     * constant messages: a valid transaction passes without allocating lambdas, streams or message strings.
      */
     @Override
     public void verify(@NotNull LedgerTransaction tx) throws IllegalArgumentException {
-        List<ContractState> inputs = tx.getInputStates();
-        List<ContractState> outputs = tx.getOutputStates();
-        List<CommandWithParties<CommandData>> commands = tx.getCommands();
-        CommandWithParties<Commands> command = requireSingleCommand(commands, Commands.class);
-        final OrderState outState = (OrderState) outputs.get(0);
+        final int inputs = tx.getInputs().size();
+        final CommandWithParties<CommandData> command = singleOrderCommand(tx.getCommands());
 
         // Generic constraints around the Order transaction.
-        requireThat(require -> {
-            require.using("Only one output state should be produced.", outputs.size() == 1);
-
-            require.using("The buyer, the seller and the shipper cannot be the same entity.",
-                    !outState.getBuyer().equals(outState.getSeller()) &&
-                            !outState.getBuyer().equals(outState.getShipper()));
-            require.using("Order contains at least 3 participants.", outState.getParticipants().size() > 2 );
-
-            // Order-specific state level constraints.
-            require.using("The product SKU must be provided.", !outState.getOrder().getProductSku().isEmpty());
-            require.using("The product name must be provided.", !outState.getOrder().getProductName().isEmpty());
-            require.using("The product price must be non-negative.", outState.getOrder().getProductPrice() > 0);
-            require.using("The product quantity must non-negative.", outState.getOrder().getQty() > 0);
-            require.using("The buyer address must be provided.", !outState.getOrder().getBuyerAddress().isEmpty());
-            require.using("The seller address must be provided.", !outState.getOrder().getSellerAddress().isEmpty());
-            require.using("The shipment price must non-negative.", outState.getOrder().getShippingCost() > 0);
-
-            return null;
-        });
-
-        if (command.getValue() instanceof Commands.Create) {
-            requireThat(require -> {
-                require.using("No inputs should be consumed when creating an order.", inputs.size() == 0);
-                require.using("The order status value must be 0(Ordered) for create order.", outState.getOrder().getStatus() == 0);
-                return null;
-            });
-        } else if (command.getValue() instanceof Commands.Confirm) {
-            requireThat(require -> {
-               require.using("The ownership of this order should be seller in confirm order.", outState.getOwner().equals(outState.getSeller()));
-               require.using("Only one input should be consumed when confirming an order.", inputs.size() == 1);
-               require.using("The order status value must be 1(Confirmed) for confirm order", outState.getOrder().getStatus() == 1);
-               return null;
-            });
-        } else if (command.getValue() instanceof Commands.ConfirmPickup) {
-            requireThat(require -> {
-                require.using("The ownership of this order should be seller in confirm order pickup.", outState.getOwner().equals(outState.getSeller()));
-                require.using("Only one input should be consumed when confirming pickup an order.", inputs.size() == 1);
-                require.using("The order status value must be 2(ConfirmPickup) for ConfirmPickup Order", outState.getOrder().getStatus() == 2);
-                return null;
-            });
-        } else if (command.getValue() instanceof Commands.Ship) {
-            requireThat(require -> {
-                require.using("The ownership of this order should be shipper in ship order", outState.getOwner().equals(outState.getShipper()));
-                require.using("Only one input should be consumed when shipping an order.", inputs.size() == 1);
-                require.using("The order status value must be 3(Shipped) for shipping an order", outState.getOrder().getStatus() == 3);
-                return null;
-            });
-        } else if (command.getValue() instanceof Commands.Delivery) {
-             requireThat(require -> {
-                require.using("The ownership of this order should be shipper in delivery order", outState.getOwner().equals(outState.getShipper()));
-                require.using("Only one input should be consumed when delivering an order.", inputs.size() == 1);
-                require.using("The order status value must be 4(Delivered) for delivering an order.", outState.getOrder().getStatus() == 4);
-                return null;
-            });
-        } else if (command.getValue() instanceof Commands.ConfirmDelivery) {
-            requireThat(require -> {
-                require.using("The ownership of this order should be buyer in confirm order delivery", outState.getOwner().equals(outState.getBuyer()));
-                require.using("Only one input should be consumed when delivering an order.", inputs.size() == 1);
-                require.using("The order status value must be 4(Delivered) for delivering an order.", outState.getOrder().getStatus() == 5);
-                return null;
-            });
+        require("Only one output state should be produced.", tx.getOutputs().size() == 1);
+        final OrderState outState = (OrderState) tx.getOutputs().get(0).getData();
+        require("The buyer, the seller and the shipper cannot be the same entity.",
+                !outState.getBuyer().equals(outState.getSeller()) &&
+                        !outState.getBuyer().equals(outState.getShipper()));
+        require("Order contains at least 3 participants.", outState.getParticipants().size() > 2);
+
+        // Order-specific state level constraints.
+        checkOrder(outState.getOrder(), null);
+
+        // A transition consumes the previous version of the same order and may change nothing but its status and
+        // owner; the signers are taken from that input, not from the output its proposer built.
+        final Commands step = (Commands) command.getValue();
+        final OrderState inState;
+        if (step instanceof Commands.Create) {
+            require("No inputs should be consumed when creating an order.", inputs == 0);
+            inState = null;
+        } else {
+            require("Only one input should be consumed when advancing an order.", inputs == 1);
+            require("The input should be an order.", tx.getInputs().get(0).getState().getData() instanceof OrderState);
+            inState = (OrderState) tx.getInputs().get(0).getState().getData();
+            require("The input and output must be the same order.", inState.getLinearId().equals(outState.getLinearId()));
+        }
+
+        // Each lifecycle step is owned by one party; only that party's signature is required. Extra signers are
+        // tolerated so that transactions signed by every participant remain valid on resolution.
+        final List<Party> requiredSigners = step.requiredSigners(inState == null ? outState : inState);
+        for (int i = 0; i < requiredSigners.size(); i++) {
+            require("The order must be signed by the party owning this step.",
+                    command.getSigners().contains(requiredSigners.get(i).getOwningKey()));
+        }
+        if (inState != null) {
+            require("The buyer, the seller and the shipper of an order cannot change.",
+                    inState.getBuyer().equals(outState.getBuyer()) && inState.getSeller().equals(outState.getSeller())
+                            && inState.getShipper().equals(outState.getShipper()));
+            require("The order terms cannot change apart from the status.", sameTerms(inState.getOrder(), outState.getOrder()));
+        }
+
+        final int status = outState.getOrder().getStatus();
+        if (step instanceof Commands.Compound) {
+            final Commands.Compound steps = (Commands.Compound) step;
+            require("The input order status must be the one the steps start from.", inState.getOrder().getStatus() == steps.from().ordinal());
+            require("The output order status must be the one the steps end at.", status == steps.to().ordinal());
+            require("The ownership of this order should be the owner of its last step.", outState.getOwner().equals(stepOwner(inState, status)));
+            return;
+        }
+        if (inState != null) {
+            require("The order must advance exactly one step from its input.", inState.getOrder().getStatus() + 1 == status);
+        }
+        if (step instanceof Commands.Create) {
+            require("The order status value must be 0(Ordered) for create order.", status == 0);
+        } else if (step instanceof Commands.Confirm) {
+            require("The ownership of this order should be seller in confirm order.", outState.getOwner().equals(outState.getSeller()));
+            require("The order status value must be 1(Confirmed) for confirm order", status == 1);
+        } else if (step instanceof Commands.ConfirmPickup) {
+            require("The ownership of this order should be seller in confirm order pickup.", outState.getOwner().equals(outState.getSeller()));
+            require("The order status value must be 2(ConfirmPickup) for ConfirmPickup Order", status == 2);
+        } else if (step instanceof Commands.Ship) {
+            require("The ownership of this order should be shipper in ship order", outState.getOwner().equals(outState.getShipper()));
+            require("The order status value must be 3(Shipped) for shipping an order", status == 3);
+        } else if (step instanceof Commands.Delivery) {
+            require("The ownership of this order should be shipper in delivery order", outState.getOwner().equals(outState.getShipper()));
+            require("The order status value must be 4(Delivered) for delivering an order.", status == 4);
+        } else if (step instanceof Commands.ConfirmDelivery) {
+            require("The ownership of this order should be buyer in confirm order delivery", outState.getOwner().equals(outState.getBuyer()));
+            require("The order status value must be 5(ConfirmDelivery) for confirming delivery of an order.", status == 5);
+        }
+    }
+
+    /**
+     * Whether two versions of an order agree on everything but the status.
+     */
+    private static boolean sameTerms(Order in, Order out) {
+        return Objects.equals(in.getProductSku(), out.getProductSku())
+                && Objects.equals(in.getProductName(), out.getProductName())
+                && Float.compare(in.getProductPrice(), out.getProductPrice()) == 0
+                && in.getQty() == out.getQty()
+                && Float.compare(in.getShippingCost(), out.getShippingCost()) == 0
+                && Objects.equals(in.getBuyerAddress(), out.getBuyerAddress())
+                && Objects.equals(in.getSellerAddress(), out.getSellerAddress());
+    }
+
+    /**
+     * The party that takes an order to `status` and owns it afterwards.
+     */
+    static Party stepOwner(OrderState state, int status) {
+        switch (Types.OrderTypes.values()[status]) {
+            case Ordered:
+            case ConfirmDelivery:
+                return state.getBuyer();
+            case Confirmed:
+            case ReadyForPickup:
+                return state.getSeller();
+            default:
+                return state.getShipper();
+        }
+    }
+
+    /**
+     * The one [Commands] command of the transaction, found without the intermediate lists of requireSingleCommand.
+     */
+    private static CommandWithParties<CommandData> singleOrderCommand(List<CommandWithParties<CommandData>> commands) {
+        CommandWithParties<CommandData> found = null;
+        for (int i = 0; i < commands.size(); i++) {
+            CommandWithParties<CommandData> command = commands.get(i);
+            if (command.getValue() instanceof Commands) {
+                require("Only one order command is allowed per transaction.", found == null);
+                found = command;
+            }
+        }
+        if (found == null) {
+            throw new IllegalStateException("Required " + Commands.class.getName() + " command");
+        }
+        return found;
+    }
+
+    /**
+     * Checks the order-level constraints of an [Order], independently of any transaction, so that off-ledger callers
+     * such as bulk import can reject invalid orders before starting a flow.
+     *
+     * @return the messages of the violated constraints, in the order [verify] checks them.
+     */
+    public static List<String> orderViolations(Order order) {
+        List<String> violations = new ArrayList<>();
+        checkOrder(order, violations);
+        return violations;
+    }
+
+    /**
+     * Adds the violated constraints of `order` to `violations`, or throws on the first one if `violations` is null.
+     */
+    private static void checkOrder(Order order, List<String> violations) {
+        check(violations, "The product SKU must be provided.", !isEmpty(order.getProductSku()));
+        check(violations, "The product name must be provided.", !isEmpty(order.getProductName()));
+        check(violations, "The product price must be non-negative.", order.getProductPrice() > 0);
+        check(violations, "The product quantity must non-negative.", order.getQty() > 0);
+        check(violations, "The buyer address must be provided.", !isEmpty(order.getBuyerAddress()));
+        check(violations, "The seller address must be provided.", !isEmpty(order.getSellerAddress()));
+        check(violations, "The shipment price must non-negative.", order.getShippingCost() > 0);
+    }
+
+    private static void check(List<String> violations, String requirement, boolean satisfied) {
+        if (satisfied) {
+            return;
+        }
+        if (violations == null) {
+            require(requirement, false);
         }
+        violations.add(requirement);
+    }
+
+    /**
+     * Same contract as [Requirements.using]: throws `IllegalArgumentException("Failed requirement: ...")`.
+     */
+    private static void require(String requirement, boolean satisfied) {
+        if (!satisfied) {
+            throw new IllegalArgumentException("Failed requirement: " + requirement);
+        }
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
     }
 
     /**
      * This contract only implements associated commands for OrderState.
+     *
+     * Each command names the parties that must sign it; the remaining participants only receive the transaction.
      */
     public interface Commands extends CommandData {
-        class Create implements Commands {}
-        class Confirm implements Commands {}
-        class ConfirmPickup implements Commands {}
-        class Ship implements Commands {}
-        class Delivery implements Commands {}
-        class ConfirmDelivery implements Commands {}
+        /**
+         * @param state the order the transaction consumes, or the new order for [Create].
+         * @return the parties whose signatures are required for this step.
+         */
+        List<Party> requiredSigners(OrderState state);
+
+        class Create implements Commands {
+            @Override public List<Party> requiredSigners(OrderState state) { return Collections.singletonList(state.getBuyer()); }
+        }
+        class Confirm implements Commands {
+            @Override public List<Party> requiredSigners(OrderState state) { return Collections.singletonList(state.getSeller()); }
+        }
+        class ConfirmPickup implements Commands {
+            @Override public List<Party> requiredSigners(OrderState state) { return Collections.singletonList(state.getSeller()); }
+        }
+        class Ship implements Commands {
+            @Override public List<Party> requiredSigners(OrderState state) { return Collections.singletonList(state.getShipper()); }
+        }
+        class Delivery implements Commands {
+            @Override public List<Party> requiredSigners(OrderState state) { return Collections.singletonList(state.getShipper()); }
+        }
+        class ConfirmDelivery implements Commands {
+            @Override public List<Party> requiredSigners(OrderState state) { return Collections.singletonList(state.getBuyer()); }
+        }
+
+        /**
+         * Several contiguous lifecycle steps taken in one transaction, so that a party owning consecutive steps (or
+         * parties handing the order over) need one signing and notarisation round instead of one per step.
+         *
+         * Every owner of a step after [from] up to [to] must sign; the output is owned by the owner of [to].
+         */
+        interface Compound extends Commands {
+            /** The status of the input order. */
+            Types.OrderTypes from();
+            /** The status of the output order. */
+            Types.OrderTypes to();
+
+            @Override
+            default List<Party> requiredSigners(OrderState state) {
+                List<Party> signers = new ArrayList<>(2);
+                for (int status = from().ordinal() + 1; status <= to().ordinal(); status++) {
+                    Party owner = stepOwner(state, status);
+                    if (!signers.contains(owner)) {
+                        signers.add(owner);
+                    }
+                }
+                return signers;
+            }
+        }
+        /** Confirm and ConfirmPickup, both by the seller. */
+        class ConfirmAndReadyForPickup implements Compound {
+            @Override public Types.OrderTypes from() { return Types.OrderTypes.Ordered; }
+            @Override public Types.OrderTypes to() { return Types.OrderTypes.ReadyForPickup; }
+        }
+        /** ConfirmPickup by the seller and Ship by the shipper, handing the order over to the shipper. */
+        class ReadyForPickupAndShip implements Compound {
+            @Override public Types.OrderTypes from() { return Types.OrderTypes.Confirmed; }
+            @Override public Types.OrderTypes to() { return Types.OrderTypes.Shipped; }
+        }
+        /** Ship and Delivery, both by the shipper. */
+        class ShipAndDeliver implements Compound {
+            @Override public Types.OrderTypes from() { return Types.OrderTypes.ReadyForPickup; }
+            @Override public Types.OrderTypes to() { return Types.OrderTypes.Delivered; }
+        }
+        /** Delivery by the shipper and ConfirmDelivery by the buyer, handing the order over to the buyer. */
+        class DeliverAndConfirmDelivery implements Compound {
+            @Override public Types.OrderTypes from() { return Types.OrderTypes.Shipped; }
+            @Override public Types.OrderTypes to() { return Types.OrderTypes.ConfirmDelivery; }
+        }
     }
 }
\ No newline at end of file
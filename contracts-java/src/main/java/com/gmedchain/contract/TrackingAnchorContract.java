@@ -0,0 +1,40 @@
+package com.gmedchain.contract;
+
+import com.gmedchain.state.TrackingAnchorState;
+import net.corda.core.contracts.CommandData;
+import net.corda.core.contracts.CommandWithParties;
+import net.corda.core.contracts.Contract;
+import net.corda.core.transactions.LedgerTransaction;
+
+import static net.corda.core.contracts.ContractsDSL.requireSingleCommand;
+import static net.corda.core.contracts.ContractsDSL.requireThat;
+
+/**
+ * Anchors batches of off-ledger tracking events.
+ *
+ * An anchoring transaction consumes nothing, produces one [TrackingAnchorState] of at least one event, carries a time
+ * window so that the notary dates it, and is signed by the recorder.
+ */
+public class TrackingAnchorContract implements Contract {
+    public static final String ID = "com.gmedchain.contract.TrackingAnchorContract";
+
+    @Override
+    public void verify(LedgerTransaction tx) throws IllegalArgumentException {
+        final CommandWithParties<Commands.Anchor> command = requireSingleCommand(tx.getCommands(), Commands.Anchor.class);
+        requireThat(require -> {
+            require.using("No inputs should be consumed when anchoring tracking events.", tx.getInputs().isEmpty());
+            require.using("Only one output state should be produced.", tx.getOutputs().size() == 1);
+            require.using("The output should be a tracking anchor.", tx.getOutputs().get(0).getData() instanceof TrackingAnchorState);
+            final TrackingAnchorState anchor = (TrackingAnchorState) tx.getOutputs().get(0).getData();
+            require.using("The anchor must cover at least one event.", anchor.getEventCount() > 0);
+            require.using("The anchoring transaction must have a time window.", tx.getTimeWindow() != null);
+            require.using("The anchor must be signed by the recorder.",
+                    command.getSigners().contains(anchor.getRecorder().getOwningKey()));
+            return null;
+        });
+    }
+
+    public interface Commands extends CommandData {
+        class Anchor implements Commands {}
+    }
+}
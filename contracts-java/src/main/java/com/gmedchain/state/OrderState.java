@@ -13,6 +13,7 @@ import net.corda.core.schemas.PersistentState;
 import net.corda.core.schemas.QueryableState;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static com.gmedchain.schema.OrderSchemaV1.*;
@@ -21,15 +22,22 @@ import static com.gmedchain.schema.OrderSchemaV1.*;
  * The state object recording Order agreements between associated parties.
  *
  * A state must implement [ContractState] or one of its descendants.
+ *
+ * The participants and supported schemas are asked for on every verification and vault write, so they are built once
+ * rather than on each call.
  */
 @BelongsToContract(OrderContract.class)
 public class OrderState implements LinearState, QueryableState {
+    private static final List<MappedSchema> SCHEMAS = Collections.singletonList(new OrderSchemaV1());
+
     private final Order order;
     private final Party buyer;
     private final Party seller;
     private final Party shipper;
     private  Party owner;
     private final UniqueIdentifier linearId;
+    // Not named after getParticipants(), so serialisation does not take it for a property.
+    private final List<AbstractParty> parties;
 
     /**
      * @param order the order including the order info.
@@ -47,6 +55,7 @@ public class OrderState implements LinearState, QueryableState {
         this.shipper = shipper;
         this.owner = owner;
         this.linearId = linearId;
+        this.parties = Collections.unmodifiableList(Arrays.asList(buyer, seller, shipper));
     }
 
     public Order getOrder() { return order; }
@@ -58,7 +67,7 @@ public class OrderState implements LinearState, QueryableState {
 
     @Override public UniqueIdentifier getLinearId() { return linearId; }
     @Override public List<AbstractParty> getParticipants() {
-        return Arrays.asList(buyer, seller, shipper);
+        return parties;
     }
 
     @Override public PersistentState generateMappedObject(MappedSchema schema) {
@@ -83,7 +92,7 @@ public class OrderState implements LinearState, QueryableState {
     }
 
     @Override public Iterable<MappedSchema> supportedSchemas() {
-        return Arrays.asList(new OrderSchemaV1());
+        return SCHEMAS;
     }
 
     @Override
@@ -0,0 +1,47 @@
+package com.gmedchain.state;
+
+import com.gmedchain.contract.TrackingAnchorContract;
+import net.corda.core.contracts.BelongsToContract;
+import net.corda.core.contracts.ContractState;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.Party;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The on-ledger anchor of a batch of off-ledger [com.gmedchain.common.TrackingEvent]s: only the Merkle root of the
+ * batch and its size. The notary's signature over the time window of the anchoring transaction dates the batch.
+ */
+@BelongsToContract(TrackingAnchorContract.class)
+public class TrackingAnchorState implements ContractState {
+    private final Party recorder;
+    private final SecureHash root;
+    private final int eventCount;
+
+    /**
+     * @param recorder the node that recorded the events and keeps them.
+     * @param root the Merkle root over the events, see [com.gmedchain.common.TrackingProof].
+     * @param eventCount the number of events in the batch.
+     */
+    public TrackingAnchorState(Party recorder, SecureHash root, int eventCount) {
+        this.recorder = recorder;
+        this.root = root;
+        this.eventCount = eventCount;
+    }
+
+    public Party getRecorder() { return recorder; }
+    public SecureHash getRoot() { return root; }
+    public int getEventCount() { return eventCount; }
+
+    @Override
+    public List<AbstractParty> getParticipants() {
+        return Collections.singletonList(recorder);
+    }
+
+    @Override
+    public String toString() {
+        return "TrackingAnchorState(recorder=" + recorder + ", root=" + root + ", eventCount=" + eventCount + ")";
+    }
+}
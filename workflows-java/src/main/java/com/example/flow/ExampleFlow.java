@@ -3,6 +3,7 @@ package com.example.flow;
 import co.paralleluniverse.fibers.Suspendable;
 import com.example.contract.IOUContract;
 import com.example.state.IOUState;
+import com.gmedchain.utils.FlowUtils;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import net.corda.core.contracts.Command;
@@ -24,8 +25,8 @@ import static net.corda.core.contracts.ContractsDSL.requireThat;
  *
  * In our simple example, the [Acceptor] always accepts a valid IOU.
  *
- * These flows have deliberately been implemented by using only the call() method for ease of understanding. In
- * practice we would recommend splitting up the various stages of the flow into sub-routines.
+ * The stages that do not talk to other nodes are split out of call(), so that the objects they build are not
+ * captured in the flow's checkpoints.
  *
  * All methods called within the [FlowLogic] sub-class need to be annotated with the @Suspendable annotation.
  */
@@ -76,18 +77,42 @@ public class ExampleFlow {
 
         /**
          * The flow logic is encapsulated within the call() method.
+         *
+         * Every suspension (sending, receiving, waiting for the notary) checkpoints the fibre's stack, so call() only
+         * holds what is needed afterwards: the session and the signed transactions as they come back. The state,
+         * builder and command are made in [proposal], whose frame is gone before the first suspension.
          */
         @Suspendable
         @Override
         public SignedTransaction call() throws FlowException {
-            // Obtain a reference to the notary we want to use.
-            final Party notary = getServiceHub().getNetworkMapCache().getNotaryIdentities().get(0);
+            // Stages 1 to 3.
+            final SignedTransaction partSignedTx = proposal();
 
+            // Stage 4.
+            progressTracker.setCurrentStep(GATHERING_SIGS);
+            // Send the state to the counterparty, and receive it back with their signature.
+            FlowSession otherPartySession = initiateFlow(otherParty);
+            final SignedTransaction fullySignedTx = subFlow(
+                    new CollectSignaturesFlow(partSignedTx, ImmutableSet.of(otherPartySession), CollectSignaturesFlow.Companion.tracker()));
+
+            // Stage 5.
+            progressTracker.setCurrentStep(FINALISING_TRANSACTION);
+            // Notarise and record the transaction in both parties' vaults.
+            return subFlow(new FinalityFlow(fullySignedTx, ImmutableSet.of(otherPartySession)));
+        }
+
+        /**
+         * Builds, verifies and signs the new IOU without suspending.
+         */
+        private SignedTransaction proposal() {
             // Stage 1.
             progressTracker.setCurrentStep(GENERATING_TRANSACTION);
             // Generate an unsigned transaction.
             Party me = getOurIdentity();
             IOUState iouState = new IOUState(iouValue, me, otherParty, new UniqueIdentifier());
+            // Obtain a reference to the notary we want to use: the state's share of the notaries in the network.
+            final Party notary = FlowUtils.selectNotary(iouState.getLinearId(),
+                    getServiceHub().getNetworkMapCache().getNotaryIdentities());
             final Command<IOUContract.Commands.Create> txCommand = new Command<>(
                     new IOUContract.Commands.Create(),
                     ImmutableList.of(iouState.getLender().getOwningKey(), iouState.getBorrower().getOwningKey()));
@@ -103,19 +128,7 @@ public class ExampleFlow {
             // Stage 3.
             progressTracker.setCurrentStep(SIGNING_TRANSACTION);
             // Sign the transaction.
-            final SignedTransaction partSignedTx = getServiceHub().signInitialTransaction(txBuilder);
-
-            // Stage 4.
-            progressTracker.setCurrentStep(GATHERING_SIGS);
-            // Send the state to the counterparty, and receive it back with their signature.
-            FlowSession otherPartySession = initiateFlow(otherParty);
-            final SignedTransaction fullySignedTx = subFlow(
-                    new CollectSignaturesFlow(partSignedTx, ImmutableSet.of(otherPartySession), CollectSignaturesFlow.Companion.tracker()));
-
-            // Stage 5.
-            progressTracker.setCurrentStep(FINALISING_TRANSACTION);
-            // Notarise and record the transaction in both parties' vaults.
-            return subFlow(new FinalityFlow(fullySignedTx, ImmutableSet.of(otherPartySession)));
+            return getServiceHub().signInitialTransaction(txBuilder);
         }
     }
 
@@ -147,8 +160,8 @@ public class ExampleFlow {
                     });
                 }
             }
-            final SignTxFlow signTxFlow = new SignTxFlow(otherPartySession, SignTransactionFlow.Companion.tracker());
-            final SecureHash txId = subFlow(signTxFlow).getId();
+            // Only the id of the signed transaction is kept across the wait for finality.
+            final SecureHash txId = subFlow(new SignTxFlow(otherPartySession, SignTransactionFlow.Companion.tracker())).getId();
 
             return subFlow(new ReceiveFinalityFlow(otherPartySession, txId));
         }
@@ -0,0 +1,106 @@
+package com.gmedchain.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.gmedchain.common.Order;
+import com.gmedchain.contract.OrderContract;
+import com.gmedchain.state.OrderState;
+import com.gmedchain.utils.FlowUtils;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.flows.FinalityFlow;
+import net.corda.core.flows.FlowException;
+import net.corda.core.flows.FlowLogic;
+import net.corda.core.flows.FlowSession;
+import net.corda.core.flows.InitiatedBy;
+import net.corda.core.flows.InitiatingFlow;
+import net.corda.core.flows.ReceiveFinalityFlow;
+import net.corda.core.flows.StartableByRPC;
+import net.corda.core.identity.Party;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Creates an order like [CreateOrderFlow], but with a caller-chosen externalId on its linearId, so that a client that
+ * retries a create, or re-imports a row, gets the order it already made instead of a second one.
+ *
+ * Returns the linearId of the order, new or existing. Only the buyer signs a create; the seller and the shipper
+ * receive the transaction through finality.
+ */
+public class CreateKeyedOrderFlow {
+    @InitiatingFlow
+    @StartableByRPC
+    public static class Initiator extends FlowLogic<UniqueIdentifier> {
+        private final Order order;
+        private final Party seller;
+        private final Party shipper;
+        private final String externalId;
+
+        public Initiator(Order order, Party seller, Party shipper, String externalId) {
+            this.order = order;
+            this.seller = seller;
+            this.shipper = shipper;
+            this.externalId = externalId;
+        }
+
+        @Suspendable
+        @Override
+        public UniqueIdentifier call() throws FlowException {
+            if (externalId == null || externalId.isEmpty()) {
+                throw new FlowException("A keyed order needs an externalId.");
+            }
+            final UniqueIdentifier existing = existing();
+            if (existing != null) {
+                return existing;
+            }
+            final SignedTransaction signedTx = proposal();
+            final List<FlowSession> sessions = Arrays.asList(initiateFlow(seller), initiateFlow(shipper));
+            final SignedTransaction createTx = subFlow(new FinalityFlow(signedTx, sessions));
+            return createTx.getTx().outputsOfType(OrderState.class).get(0).getLinearId();
+        }
+
+        /** The order this node already has under the externalId, in any version, or null. */
+        private UniqueIdentifier existing() {
+            final List<StateAndRef<OrderState>> states = getServiceHub().getVaultService().queryBy(
+                    OrderState.class,
+                    new QueryCriteria.LinearStateQueryCriteria(null, null, Collections.singletonList(externalId), Vault.StateStatus.ALL),
+                    new PageSpecification(1, 1)).getStates();
+            return states.isEmpty() ? null : states.get(0).getState().getData().getLinearId();
+        }
+
+        /**
+         * Builds and signs the create without suspending, so the builder is not checkpointed.
+         */
+        private SignedTransaction proposal() throws FlowException {
+            final Party me = getOurIdentity();
+            final UniqueIdentifier linearId = new UniqueIdentifier(externalId);
+            final Party notary = FlowUtils.selectNotary(linearId, getServiceHub().getNetworkMapCache().getNotaryIdentities());
+            final TransactionBuilder txBuilder = new TransactionBuilder(notary)
+                    .addOutputState(new OrderState(order, me, seller, shipper, me, linearId), OrderContract.ID)
+                    .addCommand(new OrderContract.Commands.Create(), me.getOwningKey());
+            txBuilder.verify(getServiceHub());
+            return getServiceHub().signInitialTransaction(txBuilder);
+        }
+    }
+
+    @InitiatedBy(Initiator.class)
+    public static class Responder extends FlowLogic<SignedTransaction> {
+        private final FlowSession session;
+
+        public Responder(FlowSession session) {
+            this.session = session;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            return subFlow(new ReceiveFinalityFlow(session));
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.gmedchain.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.gmedchain.common.TrackingEvent;
+import com.gmedchain.common.TrackingProof;
+import com.gmedchain.contract.TrackingAnchorContract;
+import com.gmedchain.service.TrackingEventService;
+import com.gmedchain.state.OrderState;
+import com.gmedchain.state.TrackingAnchorState;
+import com.gmedchain.utils.FlowUtils;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.TimeWindow;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.flows.FinalityFlow;
+import net.corda.core.flows.FlowException;
+import net.corda.core.flows.FlowLogic;
+import net.corda.core.flows.NotaryException;
+import net.corda.core.flows.StartableByRPC;
+import net.corda.core.flows.StartableByService;
+import net.corda.core.identity.Party;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Flows over the node's off-ledger shipment tracking events, see [TrackingEventService].
+ *
+ * None of them talks to the other parties of an order: recording stays local, and an anchor is only notarised.
+ */
+public class TrackingEventFlows {
+    /**
+     * Records tracking events of orders in this node's vault, returning their ids.
+     */
+    @StartableByRPC
+    public static class Record extends FlowLogic<List<Long>> {
+        private final List<TrackingEvent> events;
+
+        public Record(List<TrackingEvent> events) {
+            this.events = events;
+        }
+
+        @Suspendable
+        @Override
+        public List<Long> call() throws FlowException {
+            Set<UUID> orders = new HashSet<>();
+            for (TrackingEvent event : events) {
+                orders.add(event.getLinearId().getId());
+            }
+            if (orders.isEmpty()) {
+                return Collections.emptyList();
+            }
+            Vault.Page<OrderState> known = getServiceHub().getVaultService().queryBy(OrderState.class,
+                    new QueryCriteria.LinearStateQueryCriteria(null, new ArrayList<>(orders), null, Vault.StateStatus.UNCONSUMED),
+                    new PageSpecification(1, orders.size()));
+            for (StateAndRef<OrderState> order : known.getStates()) {
+                orders.remove(order.getState().getData().getLinearId().getId());
+            }
+            if (!orders.isEmpty()) {
+                throw new FlowException("Tracking events refer to unknown orders: " + orders);
+            }
+            try {
+                return getServiceHub().cordaService(TrackingEventService.class).record(events);
+            } catch (SQLException e) {
+                throw new FlowException("Could not record tracking events.", e);
+            }
+        }
+    }
+
+    /**
+     * Anchors the oldest unanchored tracking events, up to the service's batch size, by putting their Merkle root on
+     * ledger. Returns the notarised anchoring transaction, or null if there was nothing to anchor, another anchoring
+     * flow was running or the notary rejected the anchor.
+     *
+     * The batch is reserved in the node's table before notarisation, so nothing of it is kept in the checkpoints.
+     */
+    @StartableByRPC
+    @StartableByService
+    public static class Anchor extends FlowLogic<SignedTransaction> {
+        private static final Duration TIME_TOLERANCE = Duration.ofSeconds(30);
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            final TrackingEventService store = getServiceHub().cordaService(TrackingEventService.class);
+            if (!store.beginAnchoring()) {
+                return null;
+            }
+            try {
+                final SignedTransaction signedTx = proposal(store);
+                if (signedTx == null) {
+                    return null;
+                }
+                final SignedTransaction anchorTx;
+                try {
+                    anchorTx = subFlow(new FinalityFlow(signedTx, Collections.emptyList()));
+                } catch (NotaryException e) {
+                    // Not notarised, so the events can go into another anchor. The flow ends normally to keep that.
+                    getLogger().warn("The notary rejected tracking anchor " + signedTx.getId() + ": " + e.getMessage());
+                    store.release(signedTx.getId());
+                    return null;
+                }
+                final TrackingAnchorState anchor = anchorTx.getTx().outputsOfType(TrackingAnchorState.class).get(0);
+                store.markAnchored(anchorTx.getId(), anchor.getEventCount());
+                return anchorTx;
+            } catch (SQLException e) {
+                throw new FlowException("Could not anchor tracking events.", e);
+            } finally {
+                store.endAnchoring();
+            }
+        }
+
+        /**
+         * Reads the batch, builds and signs its anchor and reserves the events for it without suspending, so neither
+         * the leaves nor the event ids are checkpointed.
+         */
+        private SignedTransaction proposal(TrackingEventService store) throws SQLException {
+            List<Long> ids = new ArrayList<>();
+            List<SecureHash> leaves = new ArrayList<>();
+            store.unanchored(store.getAnchorBatchSize(), ids, leaves);
+            if (ids.isEmpty()) {
+                return null;
+            }
+            Party me = getOurIdentity();
+            // Anchors spread over the notaries like new orders do.
+            final Party notary = FlowUtils.selectNotary(new UniqueIdentifier(),
+                    getServiceHub().getNetworkMapCache().getNotaryIdentities());
+            final TransactionBuilder txBuilder = new TransactionBuilder(notary)
+                    .addOutputState(new TrackingAnchorState(me, TrackingProof.root(leaves), leaves.size()), TrackingAnchorContract.ID)
+                    .addCommand(new TrackingAnchorContract.Commands.Anchor(), me.getOwningKey())
+                    .setTimeWindow(TimeWindow.withTolerance(getServiceHub().getClock().instant(), TIME_TOLERANCE));
+            txBuilder.verify(getServiceHub());
+            final SignedTransaction signedTx = getServiceHub().signInitialTransaction(txBuilder);
+            store.reserve(ids, signedTx.getId());
+            return signedTx;
+        }
+    }
+
+    /**
+     * The inclusion proof of an anchored tracking event, checked against the root on ledger.
+     */
+    @StartableByRPC
+    public static class Prove extends FlowLogic<TrackingProof> {
+        private final long eventId;
+
+        public Prove(long eventId) {
+            this.eventId = eventId;
+        }
+
+        @Suspendable
+        @Override
+        public TrackingProof call() throws FlowException {
+            final TrackingProof proof;
+            try {
+                proof = getServiceHub().cordaService(TrackingEventService.class).prove(eventId);
+            } catch (SQLException e) {
+                throw new FlowException("Could not read tracking event " + eventId + ".", e);
+            } catch (IllegalArgumentException e) {
+                throw new FlowException(e.getMessage());
+            }
+            if (proof == null) {
+                throw new FlowException("Tracking event " + eventId + " is not anchored yet.");
+            }
+            final SignedTransaction anchorTx = getServiceHub().getValidatedTransactions().getTransaction(proof.getAnchorTxId());
+            if (anchorTx == null) {
+                throw new FlowException("The anchor " + proof.getAnchorTxId() + " of tracking event " + eventId + " is not recorded.");
+            }
+            final TrackingAnchorState anchor = anchorTx.getTx().outputsOfType(TrackingAnchorState.class).get(0);
+            if (!anchor.getRoot().equals(proof.getRoot()) || !proof.verify()) {
+                throw new FlowException("The stored events of anchor " + proof.getAnchorTxId() + " no longer match its root.");
+            }
+            return proof;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.gmedchain.schema;
+
+/**
+ * The family of schemas for the node-local tracking events.
+ */
+public class TrackingEventSchema { }
@@ -0,0 +1,74 @@
+package com.gmedchain.schema;
+
+import net.corda.core.schemas.MappedSchema;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.util.Collections;
+
+/**
+ * The table of [com.gmedchain.service.TrackingEventService]. It belongs to no state; the node creates it from the
+ * migration when it loads the CorDapp, and the service reads and writes it with plain SQL.
+ */
+public class TrackingEventSchemaV1 extends MappedSchema {
+    public TrackingEventSchemaV1() {
+        super(TrackingEventSchema.class, 1, Collections.singletonList(PersistentTrackingEvent.class));
+    }
+
+    @Override
+    public String getMigrationResource() {
+        return "tracking-event-schema-v1.changelog-master";
+    }
+
+    @Entity
+    @Table(name = "gmed_tracking_events", indexes = {
+            @Index(name = "gmed_tracking_events_linear_id", columnList = "linear_id"),
+            @Index(name = "gmed_tracking_events_anchor", columnList = "anchor_tx,leaf_index"),
+            @Index(name = "gmed_tracking_events_pending", columnList = "pending_tx")
+    })
+    public static class PersistentTrackingEvent {
+        @Id @Column(name = "event_id", nullable = false) private final long eventId;
+        @Column(name = "linear_id", length = 36, nullable = false) private final String linearId;
+        @Column(name = "event_time", nullable = false) private final long eventTime;
+        @Column(name = "event_type", length = 64) private final String eventType;
+        @Column(name = "location") private final String location;
+        @Column(name = "detail", length = 1024) private final String detail;
+        @Column(name = "leaf_hash", length = 64, nullable = false) private final String leafHash;
+        @Column(name = "pending_tx", length = 64) private final String pendingTx;
+        @Column(name = "anchor_tx", length = 64) private final String anchorTx;
+        @Column(name = "leaf_index") private final Integer leafIndex;
+
+        public PersistentTrackingEvent(long eventId, String linearId, long eventTime, String eventType, String location,
+                                       String detail, String leafHash, String pendingTx, String anchorTx, Integer leafIndex) {
+            this.eventId = eventId;
+            this.linearId = linearId;
+            this.eventTime = eventTime;
+            this.eventType = eventType;
+            this.location = location;
+            this.detail = detail;
+            this.leafHash = leafHash;
+            this.pendingTx = pendingTx;
+            this.anchorTx = anchorTx;
+            this.leafIndex = leafIndex;
+        }
+
+        // Default constructor required by hibernate.
+        public PersistentTrackingEvent() {
+            this(0, null, 0, null, null, null, null, null, null, null);
+        }
+
+        public long getEventId() { return eventId; }
+        public String getLinearId() { return linearId; }
+        public long getEventTime() { return eventTime; }
+        public String getEventType() { return eventType; }
+        public String getLocation() { return location; }
+        public String getDetail() { return detail; }
+        public String getLeafHash() { return leafHash; }
+        public String getPendingTx() { return pendingTx; }
+        public String getAnchorTx() { return anchorTx; }
+        public Integer getLeafIndex() { return leafIndex; }
+    }
+}
@@ -0,0 +1,283 @@
+package com.gmedchain.service;
+
+import com.gmedchain.common.TrackingEvent;
+import com.gmedchain.common.TrackingProof;
+import com.gmedchain.flow.TrackingEventFlows;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.cordapp.CordappConfig;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Node-local store of shipment [TrackingEvent]s, in its own table of the node database (see
+ * [com.gmedchain.schema.TrackingEventSchemaV1]), for events far too frequent to be order transitions on ledger.
+ *
+ * Every `tracking.anchorIntervalSeconds` (default 60) the service starts [TrackingEventFlows.Anchor], which puts the
+ * Merkle root of up to `tracking.anchorBatchSize` (default 10000) unanchored events on ledger in one notarised
+ * transaction; [prove] then gives the inclusion proof of any anchored event. The schedule starts with the first
+ * [record] after the node starts, since services cannot start flows while the node is still starting up.
+ *
+ * An anchor marks its events in two steps: [reserve] before notarisation ties them to the proposed transaction, and
+ * [markAnchored] after it makes that final. Reserved events are left out of later batches, so no event is anchored
+ * under two roots, and a flow replayed after notarisation marks the same events again harmlessly.
+ *
+ * The methods use the database transaction of the calling flow.
+ */
+@CordaService
+public class TrackingEventService extends SingletonSerializeAsToken {
+    private static final Logger logger = LoggerFactory.getLogger(TrackingEventService.class);
+    private static final String TABLE = "gmed_tracking_events";
+
+    private final AppServiceHub serviceHub;
+    private final long anchorIntervalSeconds;
+    private final int anchorBatchSize;
+    private final AtomicBoolean anchoring = new AtomicBoolean();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // Whether events may be waiting for an anchor; true at start-up since the table is not read until a flow runs.
+    private final AtomicBoolean unanchored = new AtomicBoolean(true);
+    private volatile boolean nextEventIdLoaded;
+    private long nextEventId;
+
+    public TrackingEventService(AppServiceHub serviceHub) {
+        this.serviceHub = serviceHub;
+        CordappConfig config = serviceHub.getAppContext().getConfig();
+        this.anchorIntervalSeconds = config.exists("tracking.anchorIntervalSeconds") ? config.getLong("tracking.anchorIntervalSeconds") : 60;
+        this.anchorBatchSize = config.exists("tracking.anchorBatchSize") ? config.getInt("tracking.anchorBatchSize") : 10000;
+    }
+
+    private void startScheduler() {
+        if (anchorIntervalSeconds <= 0 || !scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tracking-anchor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::anchorIfDue, anchorIntervalSeconds, anchorIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public int getAnchorBatchSize() {
+        return anchorBatchSize;
+    }
+
+    private void anchorIfDue() {
+        if (anchoring.get() || !unanchored.getAndSet(false)) {
+            return;
+        }
+        serviceHub.startFlow(new TrackingEventFlows.Anchor()).getReturnValue().then(result -> {
+            try {
+                if (result.get() != null) {
+                    // The batch may have been full and left more behind.
+                    unanchored.set(true);
+                }
+            } catch (Exception e) {
+                unanchored.set(true);
+                logger.warn("Anchoring tracking events failed", e);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Marks the start of an anchoring flow; false if another one is running on this node.
+     */
+    public boolean beginAnchoring() {
+        return anchoring.compareAndSet(false, true);
+    }
+
+    public void endAnchoring() {
+        anchoring.set(false);
+    }
+
+    /**
+     * Stores `events` and returns their ids, in order. Ids increase with recording order.
+     */
+    public List<Long> record(List<TrackingEvent> events) throws SQLException {
+        Connection connection = connection();
+        List<Long> ids = new ArrayList<>(events.size());
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + TABLE
+                + " (event_id, linear_id, event_time, event_type, location, detail, leaf_hash) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (TrackingEvent event : events) {
+                long id = nextEventId();
+                insert.setLong(1, id);
+                insert.setString(2, event.getLinearId().getId().toString());
+                insert.setLong(3, event.getTime().toEpochMilli());
+                insert.setString(4, event.getType());
+                insert.setString(5, event.getLocation());
+                insert.setString(6, event.getDetail());
+                insert.setString(7, event.leafHash(id).toString());
+                insert.addBatch();
+                ids.add(id);
+            }
+            insert.executeBatch();
+        }
+        unanchored.set(true);
+        startScheduler();
+        return ids;
+    }
+
+    /**
+     * Adds the ids and leaf hashes of up to `limit` unanchored and unreserved events, oldest first, to `eventIds` and
+     * `leaves`.
+     */
+    public void unanchored(int limit, List<Long> eventIds, List<SecureHash> leaves) throws SQLException {
+        try (PreparedStatement select = connection().prepareStatement("SELECT event_id, leaf_hash FROM " + TABLE
+                + " WHERE anchor_tx IS NULL AND pending_tx IS NULL ORDER BY event_id")) {
+            select.setMaxRows(limit);
+            try (ResultSet rows = select.executeQuery()) {
+                while (rows.next()) {
+                    eventIds.add(rows.getLong(1));
+                    leaves.add(SecureHash.parse(rows.getString(2)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reserves the events, in the order given, for the proposed anchor `anchorTxId`, taking them out of later batches.
+     *
+     * @throws IllegalStateException if any of them was anchored or reserved already; failing the calling flow rolls
+     * the reservations back.
+     */
+    public void reserve(List<Long> eventIds, SecureHash anchorTxId) throws SQLException {
+        int reserved = 0;
+        try (PreparedStatement update = connection().prepareStatement("UPDATE " + TABLE
+                + " SET pending_tx = ?, leaf_index = ? WHERE event_id = ? AND anchor_tx IS NULL AND pending_tx IS NULL")) {
+            for (int i = 0; i < eventIds.size(); i++) {
+                update.setString(1, anchorTxId.toString());
+                update.setInt(2, i);
+                update.setLong(3, eventIds.get(i));
+                update.addBatch();
+            }
+            for (int count : update.executeBatch()) {
+                reserved += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+            }
+        }
+        if (reserved != eventIds.size()) {
+            throw new IllegalStateException("Only " + reserved + " of " + eventIds.size() + " tracking events for anchor "
+                    + anchorTxId + " were still unanchored.");
+        }
+    }
+
+    /**
+     * Records that the events reserved for `anchorTxId` are anchored by it. Marking them again changes nothing.
+     *
+     * @throws IllegalStateException if the transaction does not anchor `eventCount` events.
+     */
+    public void markAnchored(SecureHash anchorTxId, int eventCount) throws SQLException {
+        Connection connection = connection();
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE " + TABLE + " SET anchor_tx = pending_tx WHERE pending_tx = ? AND anchor_tx IS NULL")) {
+            update.setString(1, anchorTxId.toString());
+            update.executeUpdate();
+        }
+        int anchored;
+        try (PreparedStatement count = connection.prepareStatement("SELECT COUNT(*) FROM " + TABLE + " WHERE anchor_tx = ?")) {
+            count.setString(1, anchorTxId.toString());
+            try (ResultSet row = count.executeQuery()) {
+                row.next();
+                anchored = row.getInt(1);
+            }
+        }
+        if (anchored != eventCount) {
+            throw new IllegalStateException(anchored + " tracking events are marked as anchored by " + anchorTxId
+                    + ", which anchors " + eventCount + ".");
+        }
+    }
+
+    /**
+     * Returns the events reserved for `anchorTxId` to later batches, once it is known that the notary rejected it.
+     */
+    public void release(SecureHash anchorTxId) throws SQLException {
+        try (PreparedStatement update = connection().prepareStatement(
+                "UPDATE " + TABLE + " SET pending_tx = NULL, leaf_index = NULL WHERE pending_tx = ? AND anchor_tx IS NULL")) {
+            update.setString(1, anchorTxId.toString());
+            update.executeUpdate();
+        }
+        unanchored.set(true);
+    }
+
+    /**
+     * The inclusion proof of an event, with the root recomputed from the leaves of its batch; null if the event is
+     * not anchored yet.
+     *
+     * @throws IllegalArgumentException if there is no such event.
+     */
+    public TrackingProof prove(long eventId) throws SQLException {
+        Connection connection = connection();
+        TrackingEvent event;
+        String anchorTx;
+        int leafIndex;
+        try (PreparedStatement select = connection.prepareStatement("SELECT linear_id, event_time, event_type, location, "
+                + "detail, anchor_tx, leaf_index FROM " + TABLE + " WHERE event_id = ?")) {
+            select.setLong(1, eventId);
+            try (ResultSet row = select.executeQuery()) {
+                if (!row.next()) {
+                    throw new IllegalArgumentException("There is no tracking event " + eventId + ".");
+                }
+                event = new TrackingEvent(new UniqueIdentifier(null, UUID.fromString(row.getString(1))),
+                        Instant.ofEpochMilli(row.getLong(2)), row.getString(3), row.getString(4), row.getString(5));
+                anchorTx = row.getString(6);
+                leafIndex = row.getInt(7);
+            }
+        }
+        if (anchorTx == null) {
+            return null;
+        }
+        List<SecureHash> leaves = new ArrayList<>();
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT leaf_hash FROM " + TABLE + " WHERE anchor_tx = ? ORDER BY leaf_index")) {
+            select.setString(1, anchorTx);
+            try (ResultSet rows = select.executeQuery()) {
+                while (rows.next()) {
+                    leaves.add(SecureHash.parse(rows.getString(1)));
+                }
+            }
+        }
+        return new TrackingProof(eventId, event, leafIndex, TrackingProof.path(leaves, leafIndex),
+                TrackingProof.root(leaves), SecureHash.parse(anchorTx));
+    }
+
+    private synchronized long nextEventId() {
+        return nextEventId++;
+    }
+
+    /**
+     * The calling flow's connection, reading the next event id on first use. The node creates the table.
+     */
+    private Connection connection() throws SQLException {
+        Connection connection = serviceHub.jdbcSession();
+        if (!nextEventIdLoaded) {
+            synchronized (this) {
+                if (!nextEventIdLoaded) {
+                    try (Statement statement = connection.createStatement();
+                         ResultSet max = statement.executeQuery("SELECT MAX(event_id) FROM " + TABLE)) {
+                        max.next();
+                        nextEventId = max.getLong(1) + 1;
+                    }
+                    nextEventIdLoaded = true;
+                }
+            }
+        }
+        return connection;
+    }
+}
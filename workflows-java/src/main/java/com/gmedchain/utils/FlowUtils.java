@@ -1,24 +1,37 @@
 package com.gmedchain.utils;
 
+import com.gmedchain.contract.OrderContract;
 import com.gmedchain.schema.OrderSchemaV1;
 import com.gmedchain.state.OrderState;
 import net.corda.core.contracts.StateAndRef;
 import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.flows.NotaryError;
+import net.corda.core.flows.NotaryException;
+import net.corda.core.identity.Party;
+import net.corda.core.node.services.StatesNotAvailableException;
 import net.corda.core.node.services.Vault;
 import net.corda.core.node.services.VaultService;
 import net.corda.core.node.services.vault.Builder;
 import net.corda.core.node.services.vault.CriteriaExpression;
 import net.corda.core.node.services.vault.FieldInfo;
 import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.utilities.NonEmptySet;
+
+import java.nio.ByteBuffer;
+import java.security.PublicKey;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static net.corda.core.node.services.vault.QueryCriteriaUtils.getField;
 
 public class FlowUtils {
     /**
-     * Retrieves state with the provided linearId from the local vault.
+     * Retrieves the current (unconsumed) state with the provided linearId from the local vault.
      */
     public static StateAndRef<OrderState> retrieveOrderState(UniqueIdentifier linearId, VaultService vaultService) throws NoSuchFieldException {
-        QueryCriteria.VaultQueryCriteria generalCriteria = new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.ALL);
+        QueryCriteria.VaultQueryCriteria generalCriteria = new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.UNCONSUMED);
         FieldInfo attributeLinearId = getField("linearId", OrderSchemaV1.PersistentOrder.class);
         CriteriaExpression orderIndex = Builder.equal(attributeLinearId, linearId.getId());
         QueryCriteria customCriteria = new QueryCriteria.VaultCustomQueryCriteria(orderIndex);
@@ -26,4 +39,85 @@ public class FlowUtils {
         Vault.Page<OrderState> results = vaultService.queryBy(OrderState.class, criteria);
         return results.getStates().get(0);
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieves the current state with the provided linearId and soft-locks it for the calling flow, so another flow
+     * on this node cannot pick the same input while this one collects signatures. Pass `getRunId().getUuid()` as
+     * the lock id; the lock is released when the flow ends.
+     *
+     * @throws StatesNotAvailableException if another flow already holds the state.
+     */
+    public static StateAndRef<OrderState> reserveOrderState(UniqueIdentifier linearId, VaultService vaultService, UUID lockId)
+            throws NoSuchFieldException, StatesNotAvailableException {
+        StateAndRef<OrderState> state = retrieveOrderState(linearId, vaultService);
+        vaultService.softLockReserve(lockId, NonEmptySet.of(state.getRef()));
+        return state;
+    }
+
+    /**
+     * Whether finality failed because the notary saw the input consumed by another transaction. The caller may
+     * retry with a freshly retrieved input.
+     */
+    public static boolean isNotaryConflict(Throwable error) {
+        return error instanceof NotaryException && ((NotaryException) error).getError() instanceof NotaryError.Conflict;
+    }
+
+    /**
+     * Chooses the notary for a new order by rendezvous hashing of its linearId over the given notaries (normally
+     * `getNetworkMapCache().getNotaryIdentities()`), so orders spread evenly across notaries and adding a notary only
+     * moves the share of new orders that it takes over.
+     *
+     * Only use this when issuing a state. Later transitions must keep the notary of their input state, see [notaryOf].
+     */
+    public static Party selectNotary(UniqueIdentifier linearId, List<Party> notaries) {
+        if (notaries.isEmpty()) {
+            throw new IllegalStateException("There is no notary in the network map.");
+        }
+        Party selected = null;
+        long selectedWeight = 0;
+        for (Party notary : notaries) {
+            SecureHash hash = SecureHash.sha256(linearId.getId() + "|" + notary.getName());
+            long weight = ByteBuffer.wrap(hash.getBytes()).getLong();
+            if (selected == null || Long.compareUnsigned(weight, selectedWeight) > 0
+                    || (weight == selectedWeight && notary.getName().toString().compareTo(selected.getName().toString()) < 0)) {
+                selected = notary;
+                selectedWeight = weight;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the notary a transaction consuming the state must use.
+     */
+    public static Party notaryOf(StateAndRef<?> state) {
+        return state.getState().getNotary();
+    }
+
+    /**
+     * Returns the signing keys to attach to the command: only the parties owning this lifecycle step. `state` is the
+     * input order, or the new order for a create.
+     */
+    public static List<PublicKey> requiredSigningKeys(OrderContract.Commands command, OrderState state) {
+        return command.requiredSigners(state).stream().map(Party::getOwningKey).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the required signers other than ourselves, i.e. the sessions to pass to [CollectSignaturesFlow].
+     * An empty list means the transaction can go straight to [FinalityFlow].
+     */
+    public static List<Party> counterpartySigners(OrderContract.Commands command, OrderState state, Party me) {
+        return command.requiredSigners(state).stream().filter(it -> !it.equals(me)).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the participants that do not sign and only receive the transaction through finality broadcast.
+     */
+    public static List<Party> observers(OrderContract.Commands command, OrderState state, Party me) {
+        List<Party> signers = command.requiredSigners(state);
+        return state.getParticipants().stream()
+                .map(it -> (Party) it)
+                .filter(it -> !it.equals(me) && !signers.contains(it))
+                .collect(Collectors.toList());
+    }
+}
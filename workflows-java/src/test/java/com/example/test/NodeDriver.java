@@ -7,6 +7,7 @@ import net.corda.core.identity.CordaX500Name;
 import net.corda.testing.driver.DriverParameters;
 import net.corda.testing.driver.NodeHandle;
 import net.corda.testing.driver.NodeParameters;
+import net.corda.testing.node.NotarySpec;
 import net.corda.testing.node.User;
 
 import java.util.List;
@@ -20,7 +21,12 @@ import static net.corda.testing.driver.Driver.driver;
 public class NodeDriver {
     public static void main(String[] args) {
         final User user = new User("user1", "test", ImmutableSet.of("ALL"));
-        driver(new DriverParameters().withWaitForAllNodesToFinish(true), dsl -> {
+        // Several non-validating notaries, as in deployNodes; new orders are spread over them.
+        final List<NotarySpec> notaries = ImmutableList.of(
+                new NotarySpec(new CordaX500Name("Notary", "London", "GB"), false),
+                new NotarySpec(new CordaX500Name("Notary2", "Frankfurt", "DE"), false),
+                new NotarySpec(new CordaX500Name("Notary3", "Zurich", "CH"), false));
+        driver(new DriverParameters().withWaitForAllNodesToFinish(true).withNotarySpecs(notaries), dsl -> {
                     List<CordaFuture<NodeHandle>> nodeFutures = ImmutableList.of(
                             dsl.startNode(new NodeParameters()
                                     .withProvidedName(new CordaX500Name("PartyA", "London", "GB"))
@@ -2,12 +2,14 @@ package com.example.test.flow;
 
 import com.example.flow.ExampleFlow;
 import com.example.state.IOUState;
+import com.gmedchain.test.flow.CheckpointMeter;
 import com.google.common.collect.ImmutableList;
 import net.corda.core.concurrent.CordaFuture;
 import net.corda.core.contracts.ContractState;
 import net.corda.core.contracts.StateAndRef;
 import net.corda.core.contracts.TransactionState;
 import net.corda.core.contracts.TransactionVerificationException;
+import net.corda.core.flows.FlowLogic;
 import net.corda.core.transactions.SignedTransaction;
 import net.corda.testing.node.MockNetwork;
 import net.corda.testing.node.MockNetworkParameters;
@@ -23,6 +25,7 @@ import java.util.List;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class IOUFlowTests {
     private MockNetwork network;
@@ -138,4 +141,17 @@ public class IOUFlowTests {
             });
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void bothSidesOfTheFlowCheckpoint() throws Exception {
+        CheckpointMeter meter = new CheckpointMeter(network, ImmutableList.of(a, b));
+        meter.run(a, new ExampleFlow.Initiator(1, b.getInfo().getLegalIdentities().get(0)));
+
+        // Generous bounds: they catch a flow that starts suspending in a loop or checkpointing its inputs.
+        for (Class<? extends FlowLogic<?>> flow : ImmutableList.<Class<? extends FlowLogic<?>>>of(ExampleFlow.Initiator.class, ExampleFlow.Acceptor.class)) {
+            CheckpointMeter.Stats stats = meter.statsOf(flow);
+            assertTrue(flow.getSimpleName() + " checkpoints:\n" + meter, stats.getWrites() > 0 && stats.getWrites() <= 10);
+            assertTrue(flow.getSimpleName() + " checkpoints:\n" + meter, stats.getMaxBytes() <= 64 * 1024);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.gmedchain.test.contract;
+
+import com.gmedchain.common.Order;
+import com.gmedchain.contract.OrderContract;
+import com.gmedchain.schema.OrderSchemaV1;
+import com.gmedchain.state.OrderState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.serialization.SerializationFactory;
+import net.corda.core.serialization.SerializedBytes;
+import net.corda.core.transactions.LedgerTransaction;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.testing.core.SerializationEnvironmentRule;
+import net.corda.testing.core.TestIdentity;
+import net.corda.testing.node.MockServices;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Allocation budgets of the contract and state code that runs on every order transaction.
+ *
+ * Each operation is warmed up, so the JIT has compiled it, and then measured with the thread's allocation counter;
+ * a test fails when the bytes allocated per operation exceed its budget.
+ */
+public class OrderAllocationTests {
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final int ITERATIONS = 20_000;
+    private static final int SERIALISATION_ITERATIONS = 2_000;
+
+    private static final long VERIFY_BUDGET = 256;
+    private static final long MAPPED_OBJECT_BUDGET = 2048;
+    private static final long SERIALISATION_BUDGET = 64 * 1024;
+
+    static private final TestIdentity buyer = new TestIdentity(new CordaX500Name("PartyA", "London", "GB"));
+    static private final TestIdentity seller = new TestIdentity(new CordaX500Name("PartyB", "New York", "US"));
+    static private final TestIdentity shipper = new TestIdentity(new CordaX500Name("PartyC", "Paris", "FR"));
+    static private final TestIdentity notary = new TestIdentity(new CordaX500Name("Notary", "London", "GB"));
+    static private final MockServices ledgerServices = new MockServices(asList("com.gmedchain.contract"), buyer);
+    static private final UniqueIdentifier linearId = new UniqueIdentifier();
+
+    @ClassRule
+    public static final SerializationEnvironmentRule testSerialization = new SerializationEnvironmentRule();
+
+    private static OrderState order(int status, TestIdentity owner) {
+        Order order = new Order("SKU-1", "Gloves", 10f, 2, 1f, status, "1 Buyer St", "2 Seller Rd");
+        return new OrderState(order, buyer.getParty(), seller.getParty(), shipper.getParty(), owner.getParty(), linearId);
+    }
+
+    @BeforeClass
+    public static void enableAllocationCounting() {
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Records `state` as the output of a transaction, to be the input of the step under test. The recording is not
+     * verified, so the input can be at any status.
+     */
+    private static StateAndRef<OrderState> recorded(OrderState state) {
+        SignedTransaction issued = ledgerServices.signInitialTransaction(new TransactionBuilder(notary.getParty())
+                .addOutputState(state, OrderContract.ID)
+                .addCommand(new OrderContract.Commands.Create(), buyer.getPublicKey()));
+        ledgerServices.recordTransactions(issued);
+        return issued.getTx().outRef(0);
+    }
+
+    private static LedgerTransaction transaction(OrderContract.Commands command, OrderState input, OrderState output, TestIdentity signer) {
+        TransactionBuilder builder = new TransactionBuilder(notary.getParty())
+                .addOutputState(output, OrderContract.ID)
+                .addCommand(command, signer.getPublicKey());
+        if (input != null) {
+            builder.addInputState(recorded(input));
+        }
+        return builder.toLedgerTransaction(ledgerServices);
+    }
+
+    /**
+     * The bytes `operation` allocates per run on this thread, once warmed up.
+     */
+    private static long bytesPerOperation(int iterations, Runnable operation) {
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        return (threads.getThreadAllocatedBytes(thread) - before) / iterations;
+    }
+
+    private static void assertWithinBudget(String operation, long budget, long allocated) {
+        assertTrue(operation + " allocated " + allocated + " bytes per run, over its budget of " + budget,
+                allocated <= budget);
+    }
+
+    private static void assertVerifyWithinBudget(OrderContract.Commands command, OrderState input, OrderState output, TestIdentity signer) {
+        LedgerTransaction tx = transaction(command, input, output, signer);
+        OrderContract contract = new OrderContract();
+        assertWithinBudget("verify(" + command.getClass().getSimpleName() + ")", VERIFY_BUDGET,
+                bytesPerOperation(ITERATIONS, () -> contract.verify(tx)));
+    }
+
+    @Test
+    public void verifyCreate() {
+        assertVerifyWithinBudget(new OrderContract.Commands.Create(), null, order(0, buyer), buyer);
+    }
+
+    @Test
+    public void verifyConfirm() {
+        assertVerifyWithinBudget(new OrderContract.Commands.Confirm(), order(0, buyer), order(1, seller), seller);
+    }
+
+    @Test
+    public void verifyConfirmPickup() {
+        assertVerifyWithinBudget(new OrderContract.Commands.ConfirmPickup(), order(1, seller), order(2, seller), seller);
+    }
+
+    @Test
+    public void verifyShip() {
+        assertVerifyWithinBudget(new OrderContract.Commands.Ship(), order(2, seller), order(3, shipper), shipper);
+    }
+
+    @Test
+    public void verifyDelivery() {
+        assertVerifyWithinBudget(new OrderContract.Commands.Delivery(), order(3, shipper), order(4, shipper), shipper);
+    }
+
+    @Test
+    public void verifyConfirmDelivery() {
+        assertVerifyWithinBudget(new OrderContract.Commands.ConfirmDelivery(), order(4, shipper), order(5, buyer), buyer);
+    }
+
+    @Test
+    public void participantsAndSchemasAreNotRebuilt() {
+        OrderState state = order(0, buyer);
+        assertWithinBudget("getParticipants", 0, bytesPerOperation(ITERATIONS, state::getParticipants));
+        assertWithinBudget("supportedSchemas", 0, bytesPerOperation(ITERATIONS, state::supportedSchemas));
+    }
+
+    @Test
+    public void generateMappedObject() {
+        OrderState state = order(0, buyer);
+        OrderSchemaV1 schema = new OrderSchemaV1();
+        assertWithinBudget("generateMappedObject", MAPPED_OBJECT_BUDGET,
+                bytesPerOperation(ITERATIONS, () -> state.generateMappedObject(schema)));
+    }
+
+    @Test
+    public void serialisation() {
+        OrderState state = order(0, buyer);
+        SerializationFactory factory = SerializationFactory.Companion.getDefaultFactory();
+        SerializedBytes<OrderState> bytes = factory.serialize(state, factory.getDefaultContext());
+        assertWithinBudget("serialize", SERIALISATION_BUDGET, bytesPerOperation(SERIALISATION_ITERATIONS,
+                () -> factory.serialize(state, factory.getDefaultContext())));
+        assertWithinBudget("deserialize", SERIALISATION_BUDGET, bytesPerOperation(SERIALISATION_ITERATIONS,
+                () -> factory.deserialize(bytes, OrderState.class, factory.getDefaultContext())));
+    }
+}
@@ -0,0 +1,227 @@
+package com.gmedchain.test.contract;
+
+import com.gmedchain.common.Order;
+import com.gmedchain.contract.OrderContract;
+import com.gmedchain.state.OrderState;
+import com.google.common.collect.ImmutableList;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.testing.core.TestIdentity;
+import net.corda.testing.node.MockServices;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static net.corda.testing.node.NodeTestUtils.ledger;
+
+public class OrderContractTests {
+    static private final MockServices ledgerServices = new MockServices(asList("com.gmedchain.contract"));
+    static private final TestIdentity buyer = new TestIdentity(new CordaX500Name("PartyA", "London", "GB"));
+    static private final TestIdentity seller = new TestIdentity(new CordaX500Name("PartyB", "New York", "US"));
+    static private final TestIdentity shipper = new TestIdentity(new CordaX500Name("PartyC", "Paris", "FR"));
+    static private final TestIdentity other = new TestIdentity(new CordaX500Name("PartyD", "Berlin", "DE"));
+    static private final UniqueIdentifier linearId = new UniqueIdentifier();
+
+    private static OrderState order(int status, TestIdentity owner) {
+        return order(status, owner, 10f, buyer, linearId);
+    }
+
+    private static OrderState order(int status, TestIdentity owner, float price, TestIdentity orderBuyer, UniqueIdentifier id) {
+        Order order = new Order("SKU-1", "Gloves", price, 2, 1f, status, "1 Buyer St", "2 Seller Rd");
+        return new OrderState(order, orderBuyer.getParty(), seller.getParty(), shipper.getParty(), owner.getParty(), id);
+    }
+
+    @Test
+    public void createNeedsOnlyTheBuyerSignature() {
+        ledger(ledgerServices, (ledger -> {
+            ledger.transaction(tx -> {
+                tx.output(OrderContract.ID, order(0, buyer));
+                tx.command(ImmutableList.of(seller.getPublicKey()), new OrderContract.Commands.Create());
+                tx.failsWith("The order must be signed by the party owning this step.");
+                return null;
+            });
+            ledger.transaction(tx -> {
+                tx.output(OrderContract.ID, order(0, buyer));
+                tx.command(ImmutableList.of(buyer.getPublicKey()), new OrderContract.Commands.Create());
+                tx.verifies();
+                return null;
+            });
+            return null;
+        }));
+    }
+
+    @Test
+    public void shipNeedsOnlyTheShipperSignature() {
+        ledger(ledgerServices, (ledger -> {
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(2, seller));
+                tx.output(OrderContract.ID, order(3, shipper));
+                tx.command(ImmutableList.of(buyer.getPublicKey(), seller.getPublicKey()), new OrderContract.Commands.Ship());
+                tx.failsWith("The order must be signed by the party owning this step.");
+                return null;
+            });
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(2, seller));
+                tx.output(OrderContract.ID, order(3, shipper));
+                tx.command(ImmutableList.of(shipper.getPublicKey()), new OrderContract.Commands.Ship());
+                tx.verifies();
+                return null;
+            });
+            return null;
+        }));
+    }
+
+    @Test
+    public void transactionsSignedByEveryParticipantRemainValid() {
+        ledger(ledgerServices, (ledger -> {
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(0, buyer));
+                tx.output(OrderContract.ID, order(1, seller));
+                tx.command(ImmutableList.of(buyer.getPublicKey(), seller.getPublicKey(), shipper.getPublicKey()), new OrderContract.Commands.Confirm());
+                tx.verifies();
+                return null;
+            });
+            return null;
+        }));
+    }
+
+    @Test
+    public void sellerConfirmsAndReadiesAnOrderInOneTransaction() {
+        ledger(ledgerServices, (ledger -> {
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(0, buyer));
+                tx.output(OrderContract.ID, order(2, seller));
+                tx.command(ImmutableList.of(seller.getPublicKey()), new OrderContract.Commands.ConfirmAndReadyForPickup());
+                tx.verifies();
+                return null;
+            });
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(1, seller));
+                tx.output(OrderContract.ID, order(2, seller));
+                tx.command(ImmutableList.of(seller.getPublicKey()), new OrderContract.Commands.ConfirmAndReadyForPickup());
+                tx.failsWith("The input order status must be the one the steps start from.");
+                return null;
+            });
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(0, buyer));
+                tx.output(OrderContract.ID, order(1, seller));
+                tx.command(ImmutableList.of(seller.getPublicKey()), new OrderContract.Commands.ConfirmAndReadyForPickup());
+                tx.failsWith("The output order status must be the one the steps end at.");
+                return null;
+            });
+            return null;
+        }));
+    }
+
+    @Test
+    public void compoundHandOffNeedsBothOwnersAndMovesOwnership() {
+        ledger(ledgerServices, (ledger -> {
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(1, seller));
+                tx.output(OrderContract.ID, order(3, shipper));
+                tx.command(ImmutableList.of(shipper.getPublicKey()), new OrderContract.Commands.ReadyForPickupAndShip());
+                tx.failsWith("The order must be signed by the party owning this step.");
+                return null;
+            });
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(1, seller));
+                tx.output(OrderContract.ID, order(3, seller));
+                tx.command(ImmutableList.of(seller.getPublicKey(), shipper.getPublicKey()), new OrderContract.Commands.ReadyForPickupAndShip());
+                tx.failsWith("The ownership of this order should be the owner of its last step.");
+                return null;
+            });
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(1, seller));
+                tx.output(OrderContract.ID, order(3, shipper));
+                tx.command(ImmutableList.of(seller.getPublicKey(), shipper.getPublicKey()), new OrderContract.Commands.ReadyForPickupAndShip());
+                tx.verifies();
+                return null;
+            });
+            return null;
+        }));
+    }
+
+    @Test
+    public void aStepCannotBeSkipped() {
+        ledger(ledgerServices, (ledger -> {
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(0, buyer));
+                tx.output(OrderContract.ID, order(5, buyer));
+                tx.command(ImmutableList.of(buyer.getPublicKey()), new OrderContract.Commands.ConfirmDelivery());
+                tx.failsWith("The order must advance exactly one step from its input.");
+                return null;
+            });
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(0, buyer));
+                tx.output(OrderContract.ID, order(3, shipper));
+                tx.command(ImmutableList.of(shipper.getPublicKey()), new OrderContract.Commands.Ship());
+                tx.failsWith("The order must advance exactly one step from its input.");
+                return null;
+            });
+            return null;
+        }));
+    }
+
+    @Test
+    public void aStepCannotRewriteTheOrder() {
+        ledger(ledgerServices, (ledger -> {
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(2, seller));
+                tx.output(OrderContract.ID, order(3, shipper, 1f, buyer, linearId));
+                tx.command(ImmutableList.of(shipper.getPublicKey()), new OrderContract.Commands.Ship());
+                tx.failsWith("The order terms cannot change apart from the status.");
+                return null;
+            });
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(2, seller));
+                tx.output(OrderContract.ID, order(3, shipper, 10f, other, linearId));
+                tx.command(ImmutableList.of(shipper.getPublicKey()), new OrderContract.Commands.Ship());
+                tx.failsWith("The buyer, the seller and the shipper of an order cannot change.");
+                return null;
+            });
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(2, seller));
+                tx.output(OrderContract.ID, order(3, shipper, 10f, buyer, new UniqueIdentifier()));
+                tx.command(ImmutableList.of(shipper.getPublicKey()), new OrderContract.Commands.Ship());
+                tx.failsWith("The input and output must be the same order.");
+                return null;
+            });
+            return null;
+        }));
+    }
+
+    @Test
+    public void theSignersOfAStepComeFromItsInput() {
+        ledger(ledgerServices, (ledger -> {
+            // The output names another buyer, who signs; the buyer of the input has not.
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(4, shipper));
+                tx.output(OrderContract.ID, order(5, other, 10f, other, linearId));
+                tx.command(ImmutableList.of(other.getPublicKey()), new OrderContract.Commands.ConfirmDelivery());
+                tx.failsWith("The order must be signed by the party owning this step.");
+                return null;
+            });
+            return null;
+        }));
+    }
+
+    @Test
+    public void compoundStepsCannotRewriteTheOrder() {
+        ledger(ledgerServices, (ledger -> {
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(1, seller));
+                tx.output(OrderContract.ID, order(3, shipper, 1f, buyer, linearId));
+                tx.command(ImmutableList.of(seller.getPublicKey(), shipper.getPublicKey()), new OrderContract.Commands.ReadyForPickupAndShip());
+                tx.failsWith("The order terms cannot change apart from the status.");
+                return null;
+            });
+            ledger.transaction(tx -> {
+                tx.input(OrderContract.ID, order(1, seller));
+                tx.output(OrderContract.ID, order(3, shipper, 10f, other, linearId));
+                tx.command(ImmutableList.of(seller.getPublicKey(), shipper.getPublicKey()), new OrderContract.Commands.ReadyForPickupAndShip());
+                tx.failsWith("The buyer, the seller and the shipper of an order cannot change.");
+                return null;
+            });
+            return null;
+        }));
+    }
+}
@@ -0,0 +1,68 @@
+package com.gmedchain.test.contract;
+
+import com.gmedchain.common.TrackingEvent;
+import com.gmedchain.common.TrackingProof;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.crypto.SecureHash;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrackingProofTests {
+    private static final UniqueIdentifier linearId = new UniqueIdentifier();
+    private static final SecureHash anchorTxId = SecureHash.sha256("anchor");
+
+    private static TrackingEvent event(int i) {
+        return new TrackingEvent(linearId, Instant.ofEpochMilli(1_000_000L + i), "scan", "Depot " + i, null);
+    }
+
+    @Test
+    public void everyEventOfEveryBatchSizeProvesAgainstTheRoot() {
+        for (int size = 1; size <= 9; size++) {
+            List<SecureHash> leaves = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                leaves.add(event(i).leafHash(i + 1));
+            }
+            SecureHash root = TrackingProof.root(leaves);
+            for (int i = 0; i < size; i++) {
+                TrackingProof proof = new TrackingProof(i + 1, event(i), i, TrackingProof.path(leaves, i), root, anchorTxId);
+                assertTrue("leaf " + i + " of " + size, proof.verify());
+            }
+        }
+    }
+
+    @Test
+    public void aChangedOrMisplacedEventDoesNotProve() {
+        List<SecureHash> leaves = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            leaves.add(event(i).leafHash(i + 1));
+        }
+        SecureHash root = TrackingProof.root(leaves);
+        List<SecureHash> path = TrackingProof.path(leaves, 2);
+        TrackingEvent changed = new TrackingEvent(linearId, event(2).getTime(), "scan", "Elsewhere", null);
+        assertFalse(new TrackingProof(3, changed, 2, path, root, anchorTxId).verify());
+        assertFalse(new TrackingProof(4, event(2), 2, path, root, anchorTxId).verify());
+        assertFalse(new TrackingProof(3, event(2), 3, path, root, anchorTxId).verify());
+        assertEquals(3, path.size());
+    }
+
+    @Test
+    public void innerNodesAreDomainSeparatedFromLeaves() {
+        SecureHash left = event(0).leafHash(1);
+        SecureHash right = event(1).leafHash(2);
+        byte[] node = new byte[65];
+        node[0] = 1;
+        System.arraycopy(left.getBytes(), 0, node, 1, 32);
+        System.arraycopy(right.getBytes(), 0, node, 33, 32);
+        assertEquals(SecureHash.sha256(node), TrackingProof.root(Arrays.asList(left, right)));
+        assertNotEquals(left.hashConcat(right), TrackingProof.root(Arrays.asList(left, right)));
+    }
+}
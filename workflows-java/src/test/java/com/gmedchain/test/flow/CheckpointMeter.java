@@ -0,0 +1,129 @@
+package com.gmedchain.test.flow;
+
+import kotlin.Pair;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.flows.FlowLogic;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.StartedMockNode;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Measures the checkpoints flows write while running on a [MockNetwork], by flow type.
+ *
+ * [run] steps the network one round at a time and after every round reads each node's checkpoint table. A checkpoint
+ * whose serialised bytes changed since the last round counts as one more checkpoint write by its flow. A flow that
+ * suspends several times within one round is seen once, so counts are a lower bound; sizes are exact.
+ *
+ * Use it to see what a flow change does to checkpoint I/O, e.g.:
+ *
+ *     CheckpointMeter meter = new CheckpointMeter(network, ImmutableList.of(a, b));
+ *     meter.run(a, new CreateOrderFlow.Initiator(order, seller, shipper));
+ *     System.out.println(meter);
+ */
+public class CheckpointMeter {
+    private static final int MAX_ROUNDS = 1000;
+
+    private final MockNetwork network;
+    private final List<StartedMockNode> nodes;
+    private final Map<String, Stats> byFlow = new TreeMap<>();
+    private final Map<String, SecureHash> lastSeen = new HashMap<>();
+
+    public CheckpointMeter(MockNetwork network, List<StartedMockNode> nodes) {
+        this.network = network;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Starts `flow` on `node` and runs the network until it finishes, sampling checkpoints after every round.
+     */
+    public <T> T run(StartedMockNode node, FlowLogic<T> flow) throws Exception {
+        CordaFuture<T> future = node.startFlow(flow);
+        sample();
+        for (int round = 0; !future.isDone() && round < MAX_ROUNDS; round++) {
+            network.runNetwork(1);
+            sample();
+        }
+        return future.get();
+    }
+
+    /**
+     * The checkpoint figures by flow class name, for every flow seen so far.
+     */
+    public Map<String, Stats> getStats() {
+        return byFlow;
+    }
+
+    public Stats statsOf(Class<? extends FlowLogic<?>> flowClass) {
+        return byFlow.getOrDefault(flowClass.getName(), new Stats());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void sample() {
+        for (StartedMockNode node : nodes) {
+            Map<String, String> flowOf = new HashMap<>();
+            for (Pair<FlowLogic<?>, CordaFuture<?>> running : node.findStateMachines((Class<FlowLogic<?>>) (Class<?>) FlowLogic.class)) {
+                flowOf.put(running.getFirst().getRunId().getUuid().toString(), running.getFirst().getClass().getName());
+            }
+            Map<String, byte[]> checkpoints = node.transaction(() -> checkpoints(node));
+            checkpoints.forEach((id, bytes) -> {
+                SecureHash hash = SecureHash.sha256(bytes);
+                if (!hash.equals(lastSeen.put(id, hash))) {
+                    byFlow.computeIfAbsent(flowOf.getOrDefault(id, "unknown"), name -> new Stats()).add(id, bytes.length);
+                }
+            });
+        }
+    }
+
+    private static Map<String, byte[]> checkpoints(StartedMockNode node) {
+        Map<String, byte[]> checkpoints = new HashMap<>();
+        try (PreparedStatement statement = node.getServices().jdbcSession()
+                .prepareStatement("SELECT checkpoint_id, checkpoint_value FROM node_checkpoints");
+             ResultSet rows = statement.executeQuery()) {
+            while (rows.next()) {
+                checkpoints.put(rows.getString(1), rows.getBytes(2));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read the checkpoints of " + node.getInfo().getLegalIdentities().get(0), e);
+        }
+        return checkpoints;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder(String.format("%-60s %8s %8s %10s %10s%n", "flow", "flows", "writes", "max bytes", "bytes"));
+        byFlow.forEach((flow, stats) -> report.append(String.format("%-60s %8d %8d %10d %10d%n",
+                flow, stats.getFlows(), stats.getWrites(), stats.getMaxBytes(), stats.getTotalBytes())));
+        return report.toString();
+    }
+
+    public static class Stats {
+        private final Set<String> flows = new HashSet<>();
+        private int writes;
+        private int maxBytes;
+        private long totalBytes;
+
+        private void add(String checkpointId, int bytes) {
+            flows.add(checkpointId);
+            writes++;
+            maxBytes = Math.max(maxBytes, bytes);
+            totalBytes += bytes;
+        }
+
+        /** The number of flows of this type seen checkpointing. */
+        public int getFlows() { return flows.size(); }
+        /** The number of distinct checkpoints written, over all those flows. */
+        public int getWrites() { return writes; }
+        public int getMaxBytes() { return maxBytes; }
+        public long getTotalBytes() { return totalBytes; }
+    }
+}
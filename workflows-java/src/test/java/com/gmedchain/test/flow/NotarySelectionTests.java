@@ -0,0 +1,53 @@
+package com.gmedchain.test.flow;
+
+import com.gmedchain.utils.FlowUtils;
+import com.google.common.collect.ImmutableList;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.testing.core.TestIdentity;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NotarySelectionTests {
+    static private final Party notary1 = new TestIdentity(new CordaX500Name("Notary", "London", "GB")).getParty();
+    static private final Party notary2 = new TestIdentity(new CordaX500Name("Notary2", "Frankfurt", "DE")).getParty();
+    static private final Party notary3 = new TestIdentity(new CordaX500Name("Notary3", "Zurich", "CH")).getParty();
+
+    @Test
+    public void selectionDoesNotDependOnNetworkMapOrder() {
+        for (int i = 0; i < 100; i++) {
+            UniqueIdentifier linearId = new UniqueIdentifier();
+            assertEquals(FlowUtils.selectNotary(linearId, ImmutableList.of(notary1, notary2, notary3)),
+                    FlowUtils.selectNotary(linearId, ImmutableList.of(notary3, notary1, notary2)));
+        }
+    }
+
+    @Test
+    public void ordersSpreadOverAllNotaries() {
+        List<Party> notaries = ImmutableList.of(notary1, notary2, notary3);
+        Map<Party, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            counts.merge(FlowUtils.selectNotary(new UniqueIdentifier(), notaries), 1, Integer::sum);
+        }
+        for (Party notary : notaries) {
+            assertTrue(notary + " got " + counts.get(notary), counts.getOrDefault(notary, 0) > 800);
+        }
+    }
+
+    @Test
+    public void addingANotaryOnlyMovesOrdersToTheNewNotary() {
+        for (int i = 0; i < 1000; i++) {
+            UniqueIdentifier linearId = new UniqueIdentifier();
+            Party before = FlowUtils.selectNotary(linearId, ImmutableList.of(notary1, notary2));
+            Party after = FlowUtils.selectNotary(linearId, ImmutableList.of(notary1, notary2, notary3));
+            assertTrue(after.equals(before) || after.equals(notary3));
+        }
+    }
+}